@@ -0,0 +1,75 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.benchmarks;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Base state for benchmarks working with generated synthetic corpus, the corpus is generated once
+ * per trial in a temporary folder and removed after the trial.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+@State(Scope.Benchmark)
+public abstract class AbstractCorpusBenchmark {
+
+  @Param( {"MANY_SMALL_FILES", "FEW_HUGE_FILES", "DIRECTIVE_DENSE_FILES"})
+  public SyntheticCorpus.Kind kind;
+
+  protected File baseFolder;
+  protected File sourceFolder;
+  protected File targetFolder;
+  protected List<File> files;
+
+  @Setup(Level.Trial)
+  public void setupCorpus() throws IOException {
+    this.baseFolder = Files.createTempDirectory("jcp-bench").toFile();
+    this.sourceFolder = new File(this.baseFolder, "src");
+    this.targetFolder = new File(this.baseFolder, "target");
+    this.files = SyntheticCorpus.generate(this.kind, this.sourceFolder, SyntheticCorpus.DEFAULT_SEED);
+  }
+
+  @TearDown(Level.Trial)
+  public void removeCorpus() throws IOException {
+    FileUtils.deleteDirectory(this.baseFolder);
+  }
+
+  protected PreprocessorContext makeContext() {
+    return SyntheticCorpus.makeContext(this.sourceFolder, this.targetFolder);
+  }
+
+  protected String makeRelativeName(final File file) {
+    return this.sourceFolder.toPath().relativize(file.toPath()).toString();
+  }
+}
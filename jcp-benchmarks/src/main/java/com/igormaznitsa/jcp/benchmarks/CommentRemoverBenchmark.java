@@ -0,0 +1,82 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.benchmarks;
+
+import com.igormaznitsa.jcp.context.CommentRemoverType;
+import com.igormaznitsa.jcp.removers.AbstractCommentRemover;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of comment removers over texts of the corpus.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommentRemoverBenchmark extends AbstractCorpusBenchmark {
+
+  @Param( {"KEEP_ALL", "REMOVE_C_STYLE", "REMOVE_JCP_ONLY"})
+  public CommentRemoverType removerType;
+
+  private List<String> texts;
+
+  @Setup
+  public void loadTexts() throws IOException {
+    this.texts = new ArrayList<>();
+    for (final File file : this.files) {
+      this.texts.add(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Benchmark
+  public void removeComments(final Blackhole blackhole) throws IOException {
+    for (final String text : this.texts) {
+      final StringWriter writer = new StringWriter(text.length());
+      AbstractCommentRemover
+          .makeCommentRemover(this.removerType, new StringReader(text), writer, false)
+          .process();
+      blackhole.consume(writer);
+    }
+  }
+}
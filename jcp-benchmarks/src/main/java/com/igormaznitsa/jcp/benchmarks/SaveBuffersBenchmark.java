@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.benchmarks;
+
+import com.igormaznitsa.jcp.containers.FileInfoContainer;
+import com.igormaznitsa.jcp.context.CommentRemoverType;
+import com.igormaznitsa.jcp.context.PreprocessingState;
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of saving of preprocessed buffers into files. The first invocation writes files, next
+ * invocations meet already existing files with the same content.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SaveBuffersBenchmark extends AbstractCorpusBenchmark {
+
+  @Param( {"KEEP_ALL", "REMOVE_C_STYLE"})
+  public CommentRemoverType removerType;
+
+  private List<PreprocessingState> states;
+  private List<File> outFiles;
+
+  @Setup
+  public void preprocessCorpus() throws IOException {
+    final PreprocessorContext context = makeContext();
+    context.setDryRun(true);
+    this.states = new ArrayList<>();
+    this.outFiles = new ArrayList<>();
+    for (final File file : this.files) {
+      final String name = makeRelativeName(file);
+      this.states.add(new FileInfoContainer(file, name, false)
+          .preprocessFileWithNotification(context, null, false));
+      this.outFiles.add(new File(this.targetFolder, name));
+    }
+  }
+
+  @Benchmark
+  public void saveBuffers(final Blackhole blackhole) throws IOException {
+    for (int i = 0; i < this.states.size(); i++) {
+      blackhole.consume(this.states.get(i).saveBuffersToFile(this.outFiles.get(i), this.removerType));
+    }
+  }
+}
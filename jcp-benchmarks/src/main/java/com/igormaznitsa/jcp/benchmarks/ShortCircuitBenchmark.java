@@ -0,0 +1,89 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.benchmarks;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.expression.Expression;
+import com.igormaznitsa.jcp.expression.ExpressionParser;
+import com.igormaznitsa.jcp.expression.ExpressionTree;
+import com.igormaznitsa.jcp.expression.Value;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of conditions with expensive function calls. The first two conditions are decided by their
+ * left operand and their function calls are skipped by short-circuit evaluation, the last one needs full
+ * calculation and is the baseline.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShortCircuitBenchmark {
+
+  @Param( {
+      "feature.b && strlen(str2java(long.text, true)) > 0",
+      "feature.a || strlen(str2java(long.text, true)) > 0",
+      "feature.a && strlen(str2java(long.text, true)) > 0"
+  })
+  public String condition;
+
+  @Param( {"10000"})
+  public int textLength;
+
+  private PreprocessorContext context;
+  private ExpressionTree tree;
+
+  @Setup
+  public void setup() throws IOException {
+    final File folder = new File(System.getProperty("java.io.tmpdir"));
+    this.context = SyntheticCorpus.makeContext(folder, folder);
+    final StringBuilder text = new StringBuilder(this.textLength);
+    while (text.length() < this.textLength) {
+      text.append("some \"quoted\" text\twith\\escapes\n");
+    }
+    this.context.setGlobalVariable("long.text", Value.valueOf(text.toString()));
+    this.tree = ExpressionParser.getInstance().parse(this.condition, this.context);
+  }
+
+  @Benchmark
+  public Value evalCondition() {
+    return Expression.evalTree(this.tree, this.context);
+  }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.benchmarks;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.logger.PreprocessorLogger;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generator of synthetic source corpora for benchmarks. All generated texts use the same set of global
+ * variables which are defined by {@link #makeContext(File, File)}, so that they can be preprocessed
+ * without errors. Generation is deterministic for the same seed.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+public final class SyntheticCorpus {
+
+  /**
+   * Default seed for random generator to make reproducible corpora.
+   */
+  public static final long DEFAULT_SEED = 0x4A435021L;
+
+  private static final PreprocessorLogger SILENT_LOGGER = new PreprocessorLogger() {
+    @Override
+    public void error(final String message) {
+    }
+
+    @Override
+    public void info(final String message) {
+    }
+
+    @Override
+    public void debug(final String message) {
+    }
+
+    @Override
+    public void warning(final String message) {
+    }
+  };
+
+  private SyntheticCorpus() {
+  }
+
+  /**
+   * Make context with all global variables used by generated texts. Logging is disabled.
+   *
+   * @param sourceFolder source folder, must not be null
+   * @param targetFolder target folder, must not be null
+   * @return prepared context, must not be null
+   */
+  public static PreprocessorContext makeContext(final File sourceFolder, final File targetFolder) {
+    final PreprocessorContext context = new PreprocessorContext(sourceFolder);
+    context.setPreprocessorLogger(SILENT_LOGGER);
+    context.setSources(Collections.singletonList(sourceFolder.getAbsolutePath()));
+    context.setTarget(targetFolder);
+    context.setGlobalVariable("feature.a", Value.BOOLEAN_TRUE);
+    context.setGlobalVariable("feature.b", Value.BOOLEAN_FALSE);
+    context.setGlobalVariable("level", Value.valueOf(3L));
+    context.setGlobalVariable("version", Value.valueOf("7.3.1"));
+    return context;
+  }
+
+  /**
+   * Generate source text.
+   *
+   * @param kind  kind of corpus defines density of directives, must not be null
+   * @param lines approximate number of lines
+   * @param seed  seed for random generator
+   * @return generated text, must not be null
+   */
+  public static String makeText(final Kind kind, final int lines, final long seed) {
+    final Random random = new Random(seed);
+    final StringBuilder buffer = new StringBuilder(lines * 48);
+    buffer.append("package com.igormaznitsa.synthetic;\n\n");
+    buffer.append("/**\n * Generated class.\n */\n");
+    buffer.append("public class Synthetic").append(seed & 0xFFFF).append(" {\n");
+
+    int line = 0;
+    int index = 0;
+    while (line < lines) {
+      final int generated;
+      if (random.nextInt(100) < kind.getDirectivePercent()) {
+        generated = appendDirectiveBlock(buffer, random, index);
+      } else {
+        generated = appendCode(buffer, random, index);
+      }
+      line += generated;
+      index++;
+    }
+    buffer.append("}\n");
+    return buffer.toString();
+  }
+
+  private static int appendCode(final StringBuilder buffer, final Random random,
+                                final int index) {
+    switch (random.nextInt(4)) {
+      case 0: {
+        buffer.append("  private int field").append(index).append(" = ").append(random.nextInt(1000))
+            .append("; // field ").append(index).append('\n');
+        return 1;
+      }
+      case 1: {
+        buffer.append("  /* block comment ").append(index).append(" */\n");
+        buffer.append("  public String method").append(index).append("() {\n");
+        buffer.append("    return \"text // not a comment ").append(index).append("\";\n");
+        buffer.append("  }\n");
+        return 4;
+      }
+      case 2: {
+        buffer.append("  /**\n   * Doc comment ").append(index).append("\n   */\n");
+        buffer.append("  public void run").append(index).append("() {\n");
+        buffer.append("    System.out.println(\"line ").append(index).append("\");\n");
+        buffer.append("  }\n");
+        return 6;
+      }
+      default: {
+        buffer.append('\n');
+        return 1;
+      }
+    }
+  }
+
+  private static int appendDirectiveBlock(final StringBuilder buffer, final Random random,
+                                          final int index) {
+    switch (random.nextInt(5)) {
+      case 0: {
+        buffer.append("//#if feature.a && level > ").append(random.nextInt(5)).append('\n');
+        buffer.append("  private static final String VERSION").append(index)
+            .append(" = \"/*$version$*/\";\n");
+        buffer.append("//#else\n");
+        buffer.append("//$  private static final String VERSION").append(index)
+            .append(" = \"none\";\n");
+        buffer.append("//#endif\n");
+        return 5;
+      }
+      case 1: {
+        buffer.append("//#local counter = ").append(index).append(" * 2 + level\n");
+        buffer.append("  private int value").append(index).append(" = /*$counter$*/;\n");
+        return 2;
+      }
+      case 2: {
+        buffer.append("//#ifdef feature.b\n");
+        buffer.append("  private boolean flag").append(index).append(" = true;\n");
+        buffer.append("//#if level == 3\n");
+        buffer.append("  private boolean nested").append(index).append(" = true;\n");
+        buffer.append("//#endif\n");
+        buffer.append("//#endif\n");
+        return 6;
+      }
+      case 3: {
+        buffer.append("//#local name = \"item").append(index).append("\" + \"_\" + level\n");
+        buffer.append("  private String name").append(index)
+            .append(" = \"/*$str2java(name, false)$*/\";\n");
+        buffer.append("//$$  // kept as is ").append(index).append('\n');
+        return 3;
+      }
+      default: {
+        buffer.append("  //#if !feature.b\n");
+        buffer.append("  /*-*/ private long removed").append(index).append(";\n");
+        buffer.append("  //#endif\n");
+        return 3;
+      }
+    }
+  }
+
+  /**
+   * Generate corpus files in a folder.
+   *
+   * @param kind   kind of corpus, must not be null
+   * @param folder folder to place files, must not be null
+   * @param seed   seed for random generator
+   * @return list of generated files, must not be null
+   * @throws IOException if any IO error
+   */
+  public static List<File> generate(final Kind kind, final File folder, final long seed)
+      throws IOException {
+    if (!folder.isDirectory() && !folder.mkdirs()) {
+      throw new IOException("Can't make folder: " + folder);
+    }
+    final List<File> result = new ArrayList<>();
+    for (int i = 0; i < kind.getFiles(); i++) {
+      final File file = new File(folder,
+          String.format(Locale.ROOT, "pkg%02d/Synthetic%05d.java", i % 16, i));
+      if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+        throw new IOException("Can't make folder: " + file.getParentFile());
+      }
+      Files.write(file.toPath(),
+          makeText(kind, kind.getLines(), seed + i).getBytes(StandardCharsets.UTF_8));
+      result.add(file);
+    }
+    return result;
+  }
+
+  /**
+   * Generate corpus on disk for manual experiments.
+   *
+   * @param args kind of corpus and target folder
+   * @throws IOException if any IO error
+   */
+  public static void main(final String... args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: SyntheticCorpus <MANY_SMALL_FILES|FEW_HUGE_FILES|DIRECTIVE_DENSE_FILES> <folder>");
+      System.exit(1);
+    }
+    final Kind kind = Kind.valueOf(args[0].toUpperCase(Locale.ROOT));
+    final List<File> files = generate(kind, new File(args[1]), DEFAULT_SEED);
+    System.out.println("Generated " + files.size() + " files in " + args[1]);
+  }
+
+  /**
+   * Kinds of synthetic corpora.
+   */
+  public enum Kind {
+    /**
+     * Many small files with few directives.
+     */
+    MANY_SMALL_FILES(2000, 60, 10),
+    /**
+     * Few huge files with few directives.
+     */
+    FEW_HUGE_FILES(4, 200_000, 10),
+    /**
+     * Files where most lines are directives or macroses.
+     */
+    DIRECTIVE_DENSE_FILES(100, 2000, 90);
+
+    private final int files;
+    private final int lines;
+    private final int directivePercent;
+
+    Kind(final int files, final int lines, final int directivePercent) {
+      this.files = files;
+      this.lines = lines;
+      this.directivePercent = directivePercent;
+    }
+
+    public int getFiles() {
+      return this.files;
+    }
+
+    public int getLines() {
+      return this.lines;
+    }
+
+    public int getDirectivePercent() {
+      return this.directivePercent;
+    }
+  }
+}
@@ -39,7 +39,9 @@ import com.igormaznitsa.jcp.cmdline.ExcludedFileExtensionsHandler;
 import com.igormaznitsa.jcp.cmdline.FileExtensionsHandler;
 import com.igormaznitsa.jcp.cmdline.GlobalVariableDefiningFileHandler;
 import com.igormaznitsa.jcp.cmdline.GlobalVariableHandler;
+import com.igormaznitsa.jcp.cmdline.HardLinksHandler;
 import com.igormaznitsa.jcp.cmdline.HelpHandler;
+import com.igormaznitsa.jcp.cmdline.IncrementalHandler;
 import com.igormaznitsa.jcp.cmdline.InCharsetHandler;
 import com.igormaznitsa.jcp.cmdline.KeepAttributesHandler;
 import com.igormaznitsa.jcp.cmdline.KeepCommentsHandler;
@@ -48,9 +50,16 @@ import com.igormaznitsa.jcp.cmdline.OutCharsetHandler;
 import com.igormaznitsa.jcp.cmdline.PreserveIndentDirectiveHandler;
 import com.igormaznitsa.jcp.cmdline.RemoveCommentsHandler;
 import com.igormaznitsa.jcp.cmdline.SourceDirectoryHandler;
+import com.igormaznitsa.jcp.cmdline.SyncTargetHandler;
+import com.igormaznitsa.jcp.cmdline.ThreadsHandler;
 import com.igormaznitsa.jcp.cmdline.UnknownAsFalseHandler;
 import com.igormaznitsa.jcp.cmdline.VerboseHandler;
+import com.igormaznitsa.jcp.containers.BinFileCache;
+import com.igormaznitsa.jcp.containers.DependencyIndex;
 import com.igormaznitsa.jcp.containers.FileInfoContainer;
+import com.igormaznitsa.jcp.containers.TextFileCache;
+import com.igormaznitsa.jcp.context.DependencyRecorder;
+import com.igormaznitsa.jcp.context.EvalFileCache;
 import com.igormaznitsa.jcp.context.PreprocessingState;
 import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.context.PreprocessorContextAware;
@@ -58,21 +67,44 @@ import com.igormaznitsa.jcp.directives.ExcludeIfDirectiveHandler;
 import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
 import com.igormaznitsa.jcp.exceptions.PreprocessorException;
 import com.igormaznitsa.jcp.expression.Expression;
+import com.igormaznitsa.jcp.expression.ExpressionTreeCache;
 import com.igormaznitsa.jcp.expression.Value;
 import com.igormaznitsa.jcp.expression.ValueType;
 import com.igormaznitsa.jcp.utils.AntPathMatcher;
+import com.igormaznitsa.jcp.utils.FileCopier;
 import com.igormaznitsa.jcp.utils.PreprocessorUtils;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import lombok.Data;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -85,6 +117,14 @@ import org.apache.commons.io.FilenameUtils;
  */
 public final class JcpPreprocessor {
 
+  /**
+   * Number of threads to copy copy-only files if concurrent preprocessing is not turned on.
+   *
+   * @since 7.3.1
+   */
+  public static final int DEFAULT_COPY_THREADS = Math.max(1, Integer.getInteger("jcp.copy.threads",
+      Math.min(4, Runtime.getRuntime().availableProcessors())));
+
   static final CommandLineHandler[] COMMAND_LINE_HANDLERS = new CommandLineHandler[] {
       new HelpHandler(),
       new InCharsetHandler(),
@@ -108,7 +148,11 @@ public final class JcpPreprocessor {
       new KeepAttributesHandler(),
       new ActionPreprocessorExtensionHandler(),
       new AllowMergeBlockLineHandler(),
-      new UnknownAsFalseHandler()
+      new UnknownAsFalseHandler(),
+      new ThreadsHandler(),
+      new IncrementalHandler(),
+      new HardLinksHandler(),
+      new SyncTargetHandler()
   };
   private static final String PROPERTY_JCP_BASE_DIR = "jcp.base.dir";
   private final PreprocessorContext context;
@@ -227,6 +271,10 @@ public final class JcpPreprocessor {
       this.context.logWarning("Source folder list is empty!");
     }
 
+    if (this.context.isSyncTarget() && !this.context.isDryRun() && !this.context.isClearTarget()) {
+      this.assertTargetNotOverlapsSources(srcFolders);
+    }
+
     final Collection<FileInfoContainer> filesToBePreprocessed =
         collectFilesToPreprocess(srcFolders, this.context.getExcludeFolders());
     this.context.addAllPreprocessedResources(filesToBePreprocessed);
@@ -240,16 +288,77 @@ public final class JcpPreprocessor {
     } else {
       this.context.logInfo("Dry run mode is ON");
     }
-    final Statistics stat = this.preprocessFiles(filesToBePreprocessed, true);
+    final DependencyIndex dependencyIndex = this.loadDependencyIndex();
+    final Statistics stat =
+        this.preprocessFiles(filesToBePreprocessed, dependencyIndex, true);
+    if (dependencyIndex != null) {
+      dependencyIndex.retainSources(filesToBePreprocessed.stream()
+          .map(x -> x.getSourceFile().getAbsoluteFile())
+          .collect(Collectors.toSet()));
+      dependencyIndex.save(new File(this.context.getTarget(), DependencyIndex.FILE_NAME));
+    }
+    if (this.context.isSyncTarget() && !this.context.isDryRun() && !this.context.isClearTarget()) {
+      this.syncTargetFolder();
+    }
 
     final long elapsedTime = System.currentTimeMillis() - timeStart;
+    if (this.context.isVerbose()) {
+      final ExpressionTreeCache expressionTreeCache = this.context.getExpressionTreeCache();
+      this.context.logForVerbose(String
+          .format("Expression cache: hits %d, misses %d, size %d", expressionTreeCache.getHits(),
+              expressionTreeCache.getMisses(), expressionTreeCache.size()));
+      final TextFileCache includeTextCache = this.context.getIncludeTextCache();
+      this.context.logForVerbose(String
+          .format("Include text cache: hits %d, misses %d, size %d", includeTextCache.getHits(),
+              includeTextCache.getMisses(), includeTextCache.size()));
+      final BinFileCache binFileCache = this.context.getBinFileCache();
+      this.context.logForVerbose(String
+          .format("Binfile cache: hits %d, misses %d, size %d", binFileCache.getHits(),
+              binFileCache.getMisses(), binFileCache.size()));
+      final EvalFileCache evalFileCache = this.context.getEvalFileCache();
+      this.context.logForVerbose(String
+          .format("Evalfile cache: hits %d, misses %d, size %d", evalFileCache.getHits(),
+              evalFileCache.getMisses(), evalFileCache.size()));
+    }
     this.context.logInfo("-----------------------------------------------------------------");
-    this.context.logInfo(String
-        .format("Preprocessed %d files, copied %d files, ignored %d files, elapsed time %d ms",
-            stat.getPreprocessed(), stat.getCopied(), stat.getExcluded(), elapsedTime));
+    if (dependencyIndex == null) {
+      this.context.logInfo(String
+          .format("Preprocessed %d files, copied %d files, ignored %d files, elapsed time %d ms",
+              stat.getPreprocessed(), stat.getCopied(), stat.getExcluded(), elapsedTime));
+    } else {
+      this.context.logInfo(String
+          .format(
+              "Preprocessed %d files, copied %d files, ignored %d files, unchanged %d files, elapsed time %d ms",
+              stat.getPreprocessed(), stat.getCopied(), stat.getExcluded(), stat.getUnchanged(),
+              elapsedTime));
+    }
     return stat;
   }
 
+  private DependencyIndex loadDependencyIndex() {
+    if (!this.context.isIncremental()) {
+      return null;
+    }
+    if (this.context.isDryRun()) {
+      this.context.logInfo("Incremental mode is ignored in dry run mode");
+      return null;
+    }
+
+    final File indexFile = new File(this.context.getTarget(), DependencyIndex.FILE_NAME);
+    final String fingerprint = DependencyIndex.makeFingerprint(this.context);
+    DependencyIndex result;
+    try {
+      result = DependencyIndex.load(indexFile, fingerprint);
+    } catch (IOException ex) {
+      this.context.logWarning("Can't load dependency index, all files will be preprocessed: " +
+          ex.getMessage());
+      result = new DependencyIndex(fingerprint);
+    }
+    this.context.logInfo(String.format("Incremental mode, loaded dependency index for %d files",
+        result.size()));
+    return result;
+  }
+
   private void processFileExclusion(final List<PreprocessingState.ExcludeIfInfo> foundExcludeIf) {
     final String DIRECTIVE_NAME = new ExcludeIfDirectiveHandler().getFullName();
 
@@ -288,6 +397,7 @@ public final class JcpPreprocessor {
 
       if (val.asBoolean()) {
         item.getFileInfoContainer().setExcluded(true);
+        item.getFileInfoContainer().dropCachedText(context);
         if (context.isVerbose()) {
           context.logForVerbose(String
               .format("File '%s' excluded for active '%s' condition", file.getAbsolutePath(),
@@ -300,24 +410,120 @@ public final class JcpPreprocessor {
 
   private List<PreprocessingState.ExcludeIfInfo> processGlobalDirectives(
       final Collection<FileInfoContainer> files) throws IOException {
+    final List<FileInfoContainer> filesToScan = files.stream()
+        .filter(x -> !(x.isExcludedFromPreprocessing() || x.isCopyOnly()))
+        .collect(Collectors.toList());
+
+    if (this.context.getThreads() > 1 && filesToScan.size() > 1
+        && this.isConcurrentModeAllowed("global phase")) {
+      return this.processGlobalDirectivesConcurrently(filesToScan, this.context.getThreads());
+    }
+
     final List<PreprocessingState.ExcludeIfInfo> result = new ArrayList<>();
-    for (final FileInfoContainer fileRef : files) {
-      if (!(fileRef.isExcludedFromPreprocessing() || fileRef.isCopyOnly())) {
-        final long startTime = System.currentTimeMillis();
-        result.addAll(fileRef.processGlobalDirectives(context, null));
-        final long elapsedTime = System.currentTimeMillis() - startTime;
-        if (context.isVerbose()) {
-          context.logForVerbose(String
-              .format("Global phase completed for file '%s', elapsed time %d ms ",
-                  PreprocessorUtils.getFilePath(fileRef.getSourceFile()), elapsedTime));
+    for (final FileInfoContainer fileRef : filesToScan) {
+      result.addAll(this.processGlobalDirectivesForFile(fileRef, this.context));
+    }
+    return result;
+  }
+
+  /**
+   * Process global directives through a pool of worker threads. Every file is scanned with its own
+   * clone of the context which records read and written global variables, then results are replayed
+   * in the file order. If a file has read a variable changed by a previous file or it changes special
+   * variables then it is scanned again sequentially with the main context, so that the result global
+   * variable table is the same as in sequential mode.
+   *
+   * @param files   files to be scanned, must not be null
+   * @param threads number of worker threads
+   * @return found exclude-if data in the file order
+   * @throws IOException if any IO error, the first error in file order is thrown
+   */
+  private List<PreprocessingState.ExcludeIfInfo> processGlobalDirectivesConcurrently(
+      final List<FileInfoContainer> files, final int threads) throws IOException {
+    this.context.logInfo(String.format("Concurrent global phase, threads: %d", threads));
+
+    final ExecutorService executor = makeWorkerPool(threads);
+    try {
+      final List<GlobalPhaseContext> fileContexts = new ArrayList<>();
+      final List<Future<List<PreprocessingState.ExcludeIfInfo>>> started = new ArrayList<>();
+      for (final FileInfoContainer fileRef : files) {
+        final GlobalPhaseContext fileContext = new GlobalPhaseContext(this.context);
+        fileContexts.add(fileContext);
+        started.add(
+            executor.submit(() -> this.processGlobalDirectivesForFile(fileRef, fileContext)));
+      }
+
+      final List<PreprocessingState.ExcludeIfInfo> result = new ArrayList<>();
+      final Set<String> changedVariables = new HashSet<>();
+      for (int i = 0; i < files.size(); i++) {
+        final FileInfoContainer fileRef = files.get(i);
+        final GlobalPhaseContext fileContext = fileContexts.get(i);
+
+        List<PreprocessingState.ExcludeIfInfo> fileResult = null;
+        Throwable error = null;
+        try {
+          fileResult = started.get(i).get();
+        } catch (ExecutionException ex) {
+          error = ex.getCause() == null ? ex : ex.getCause();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          started.forEach(x -> x.cancel(false));
+          throw new IOException("Interrupted during waiting for global phase", ex);
+        }
+
+        if (fileContext.isSpecialVariableWriter() || fileContext.isSharedResourceWriter()
+            || fileContext.dependsOn(changedVariables)) {
+          if (this.context.isVerbose()) {
+            this.context.logForVerbose(String
+                .format("Repeat global phase for file '%s' sequentially because it depends on changed"
+                        + " variables, changes special variables or shared resources",
+                    PreprocessorUtils.getFilePath(fileRef.getSourceFile())));
+          }
+          final DependencyRecorder recorder = new DependencyRecorder();
+          this.context.setDependencyRecorder(recorder);
+          try {
+            fileResult = this.processGlobalDirectivesForFile(fileRef, this.context);
+          } finally {
+            this.context.setDependencyRecorder(null);
+          }
+          recorder.getWrittenVariables().forEach(x -> changedVariables.add(x.getKey()));
+        } else if (error != null) {
+          started.forEach(x -> x.cancel(false));
+          throwAsUnchecked(error);
+        } else {
+          for (final Map.Entry<String, Value> variable : fileContext.getWrittenVariables()) {
+            if (variable.getValue() == null) {
+              this.context.removeGlobalVariable(variable.getKey());
+            } else {
+              this.context.setGlobalVariable(variable.getKey(), variable.getValue());
+            }
+            changedVariables.add(variable.getKey());
+          }
         }
+        result.addAll(fileResult);
       }
+      return result;
+    } finally {
+      this.shutdownWorkerPool(executor);
     }
-    return result;
   }
 
+  private List<PreprocessingState.ExcludeIfInfo> processGlobalDirectivesForFile(
+      final FileInfoContainer fileRef, final PreprocessorContext fileContext) throws IOException {
+    final long startTime = System.currentTimeMillis();
+    final List<PreprocessingState.ExcludeIfInfo> result =
+        fileRef.processGlobalDirectives(fileContext, null);
+    final long elapsedTime = System.currentTimeMillis() - startTime;
+    if (fileContext.isVerbose()) {
+      fileContext.logForVerbose(String
+          .format("Global phase completed for file '%s', elapsed time %d ms ",
+              PreprocessorUtils.getFilePath(fileRef.getSourceFile()), elapsedTime));
+    }
+    return result;
+  }
 
   private Statistics preprocessFiles(final Collection<FileInfoContainer> files,
+                                     final DependencyIndex dependencyIndex,
                                      final boolean notifyProcessors) throws IOException {
     if (notifyProcessors) {
       final List<PreprocessorContextAware> successfullyNotified = new ArrayList<>();
@@ -340,51 +546,53 @@ public final class JcpPreprocessor {
     int preprocessedCounter = 0;
     int copiedCounter = 0;
     int excludedCounter = 0;
+    int unchangedCounter = 0;
 
     Throwable error = null;
     try {
+      final FileCopier fileCopier =
+          new FileCopier(this.context.isKeepAttributes(), this.context.isHardLinks());
+      final List<FileInfoContainer> filesToCopy = new ArrayList<>();
+      final List<FileInfoContainer> filesToPreprocess = new ArrayList<>();
       for (final FileInfoContainer fileRef : files) {
-        if (fileRef.isExcludedFromPreprocessing()) {
-          excludedCounter++;
-        } else if (fileRef.isCopyOnly()) {
-          if (!context.isDryRun()) {
-            final File destinationFile =
-                this.context.createDestinationFileForPath(fileRef.makeTargetFilePathAsString());
-            boolean doCopy = true;
-
-            if (this.context.isDontOverwriteSameContent() &&
-                PreprocessorUtils.isFileContentEquals(fileRef.getSourceFile(), destinationFile)) {
-              doCopy = false;
-              if (this.context.isVerbose()) {
-                this.context.logForVerbose(String
-                    .format("Copy skipped because same content: %s -> {dst} %s",
-                        PreprocessorUtils.getFilePath(fileRef.getSourceFile()),
-                        fileRef.makeTargetFilePathAsString()));
-              }
-            }
-
-            if (doCopy) {
-              if (this.context.isVerbose()) {
-                this.context.logForVerbose(String.format("Copy file %s -> {dst} %s",
-                    PreprocessorUtils.getFilePath(fileRef.getSourceFile()),
-                    fileRef.makeTargetFilePathAsString()));
-              }
-              PreprocessorUtils.copyFile(fileRef.getSourceFile(), destinationFile,
-                  this.context.isKeepAttributes());
-              fileRef.getGeneratedResources().add(destinationFile);
-              copiedCounter++;
-            }
-          }
+        if (fileRef.isCopyOnly() && !fileRef.isExcludedFromPreprocessing()) {
+          filesToCopy.add(fileRef);
         } else {
-          final long startTime = System.currentTimeMillis();
-          fileRef.preprocessFileWithNotification(this.context, null, false);
-          final long elapsedTime = System.currentTimeMillis() - startTime;
-          if (this.context.isVerbose()) {
-            this.context.logForVerbose(String
-                .format("File preprocessing completed  '%s', elapsed time %d ms",
-                    PreprocessorUtils.getFilePath(fileRef.getSourceFile()), elapsedTime));
-          }
-          preprocessedCounter++;
+          filesToPreprocess.add(fileRef);
+        }
+      }
+
+      final List<FileProcessingResult> results =
+          this.copyFiles(filesToCopy, fileCopier, dependencyIndex);
+      if (this.context.getThreads() > 1 && filesToPreprocess.size() > 1
+          && this.isConcurrentModeAllowed("preprocessing")) {
+        results.addAll(this.preprocessFilesConcurrently(filesToPreprocess, fileCopier,
+            dependencyIndex, this.context.getThreads()));
+      } else {
+        for (final FileInfoContainer fileRef : filesToPreprocess) {
+          results.add(this.processFile(fileRef, this.context, fileCopier, dependencyIndex));
+        }
+      }
+      if (this.context.isHardLinks() && !filesToCopy.isEmpty() && !fileCopier.isHardLinks()) {
+        this.context.logWarning("Can't make hard links in target folder, files have been copied");
+      }
+
+      for (final FileProcessingResult result : results) {
+        switch (result) {
+          case EXCLUDED:
+            excludedCounter++;
+            break;
+          case COPIED:
+            copiedCounter++;
+            break;
+          case PREPROCESSED:
+            preprocessedCounter++;
+            break;
+          case UNCHANGED:
+            unchangedCounter++;
+            break;
+          default:
+            break;
         }
       }
     } catch (Throwable err) {
@@ -405,10 +613,283 @@ public final class JcpPreprocessor {
     return new Statistics(
         preprocessedCounter,
         copiedCounter,
-        excludedCounter
+        excludedCounter,
+        unchangedCounter
     );
   }
 
+  /**
+   * Check that files can be processed concurrently. Preprocessor extensions and comment text processors
+   * are external code which can change global variables or shared resources, such calls can't be detected
+   * during the global phase so that files are processed sequentially if any of them is provided.
+   *
+   * @param phase name of the processing phase to be logged, must not be null
+   * @return true if concurrent processing is allowed, false otherwise
+   */
+  private boolean isConcurrentModeAllowed(final String phase) {
+    if (this.context.getPreprocessorExtensions().isEmpty()
+        && this.context.getCommentTextProcessors().isEmpty()) {
+      return true;
+    }
+    this.context.logInfo("Concurrent " + phase + " is disabled because preprocessor extensions"
+        + " or comment text processors are provided");
+    return false;
+  }
+
+  /**
+   * Copy copy-only files. Copying doesn't change global state so that files are copied as a batch through
+   * a pool of worker threads, the number of threads is defined by concurrent preprocessing or by
+   * {@link #DEFAULT_COPY_THREADS}.
+   *
+   * @param files           copy-only files, must not be null
+   * @param fileCopier      copier of files, must not be null
+   * @param dependencyIndex dependency index for incremental mode, can be null
+   * @return results for all files in the same order as the files
+   * @throws IOException if any IO error, the first error in file order is thrown
+   */
+  private List<FileProcessingResult> copyFiles(final List<FileInfoContainer> files,
+                                               final FileCopier fileCopier,
+                                               final DependencyIndex dependencyIndex)
+      throws IOException {
+    final int threads = Math.min(files.size(),
+        this.context.getThreads() > 1 ? this.context.getThreads() : DEFAULT_COPY_THREADS);
+
+    final List<FileProcessingResult> result;
+    if (threads > 1 && !this.context.isDryRun()) {
+      final ExecutorService executor = makeWorkerPool(threads);
+      try {
+        final List<Future<FileProcessingResult>> started = new ArrayList<>();
+        for (final FileInfoContainer fileRef : files) {
+          started.add(executor.submit(
+              () -> this.processFile(fileRef, this.context, fileCopier, dependencyIndex)));
+        }
+        result = waitForResults(started);
+      } finally {
+        this.shutdownWorkerPool(executor);
+      }
+    } else {
+      result = new ArrayList<>();
+      for (final FileInfoContainer fileRef : files) {
+        result.add(this.processFile(fileRef, this.context, fileCopier, dependencyIndex));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Preprocess files through a pool of worker threads. Every file is processed with its own clone
+   * of the context, files which can change global state (detected during the global phase) work as barriers
+   * and they are processed in the main context only after completion of all previously started files,
+   * so that the result is the same as for sequential mode. It is not used if preprocessor extensions or
+   * comment text processors are provided.
+   *
+   * @param files           files to be processed, must not be null
+   * @param fileCopier      copier of copy-only files, must not be null
+   * @param dependencyIndex dependency index for incremental mode, can be null
+   * @param threads         number of worker threads
+   * @return results for all files in the same order as the files
+   * @throws IOException if any IO error, the first error in file order is thrown
+   */
+  private List<FileProcessingResult> preprocessFilesConcurrently(
+      final Collection<FileInfoContainer> files, final FileCopier fileCopier,
+      final DependencyIndex dependencyIndex, final int threads) throws IOException {
+    this.context.logInfo(String.format("Concurrent preprocessing, threads: %d", threads));
+
+    final ExecutorService executor = makeWorkerPool(threads);
+
+    final List<FileProcessingResult> result = new ArrayList<>();
+    try {
+      final List<Future<FileProcessingResult>> started = new ArrayList<>();
+      for (final FileInfoContainer fileRef : files) {
+        if (fileRef.isGlobalStateMutator()) {
+          result.addAll(waitForResults(started));
+          if (this.context.isVerbose()) {
+            this.context.logForVerbose(String
+                .format("File '%s' can change global state, it is processed sequentially",
+                    PreprocessorUtils.getFilePath(fileRef.getSourceFile())));
+          }
+          result.add(this.processFile(fileRef, this.context, fileCopier, dependencyIndex));
+        } else {
+          final PreprocessorContext fileContext = new PreprocessorContext(this.context);
+          fileContext.clearLocalVariables();
+          started.add(
+              executor.submit(
+                  () -> this.processFile(fileRef, fileContext, fileCopier, dependencyIndex)));
+        }
+      }
+      result.addAll(waitForResults(started));
+    } finally {
+      this.shutdownWorkerPool(executor);
+    }
+    return result;
+  }
+
+  private static ExecutorService makeWorkerPool(final int threads) {
+    final AtomicInteger threadCounter = new AtomicInteger();
+    return Executors.newFixedThreadPool(threads, runnable -> {
+      final Thread thread =
+          new Thread(runnable, "jcp-preprocess-worker-" + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  private void shutdownWorkerPool(final ExecutorService executor) {
+    executor.shutdown();
+    try {
+      while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+        this.context.logDebug("Waiting for completion of preprocessing workers");
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void throwAsUnchecked(final Throwable error) throws IOException {
+    if (error instanceof IOException) {
+      throw (IOException) error;
+    }
+    if (error instanceof RuntimeException) {
+      throw (RuntimeException) error;
+    }
+    if (error instanceof Error) {
+      throw (Error) error;
+    }
+    throw new IllegalStateException("Unexpected error during preprocessing", error);
+  }
+
+  private static List<FileProcessingResult> waitForResults(
+      final List<Future<FileProcessingResult>> futures) throws IOException {
+    final List<FileProcessingResult> result = new ArrayList<>();
+    Throwable error = null;
+    try {
+      for (final Future<FileProcessingResult> future : futures) {
+        if (error == null) {
+          try {
+            result.add(future.get());
+          } catch (ExecutionException ex) {
+            error = ex.getCause() == null ? ex : ex.getCause();
+            futures.forEach(x -> x.cancel(false));
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            futures.forEach(x -> x.cancel(false));
+            throw new IOException("Interrupted during waiting for preprocessing", ex);
+          }
+        }
+      }
+    } finally {
+      futures.clear();
+    }
+
+    if (error != null) {
+      throwAsUnchecked(error);
+    }
+    return result;
+  }
+
+  private FileProcessingResult processFile(final FileInfoContainer fileRef,
+                                           final PreprocessorContext fileContext,
+                                           final FileCopier fileCopier,
+                                           final DependencyIndex dependencyIndex)
+      throws IOException {
+    if (dependencyIndex == null) {
+      return this.processFile(fileRef, fileContext, fileCopier);
+    }
+
+    if (fileRef.isExcludedFromPreprocessing()) {
+      dependencyIndex.remove(fileRef.getSourceFile());
+      return FileProcessingResult.EXCLUDED;
+    }
+
+    final Optional<DependencyIndex.Entry> upToDate =
+        dependencyIndex.findUpToDate(fileRef, fileContext);
+    if (upToDate.isPresent()) {
+      final DependencyIndex.Entry entry = upToDate.get();
+      fileRef.dropCachedText(fileContext);
+      for (final Map.Entry<String, Value> variable : entry.getWrittenVariables()) {
+        if (variable.getValue() == null) {
+          fileContext.removeGlobalVariable(variable.getKey());
+        } else {
+          fileContext.setGlobalVariable(variable.getKey(), variable.getValue());
+        }
+      }
+      entry.getInputs().forEach(x -> fileRef.getIncludedSources().add(x.getFile()));
+      fileRef.getGeneratedResources().addAll(entry.getOutputs());
+      if (fileContext.isVerbose()) {
+        fileContext.logForVerbose(String.format("File '%s' is unchanged, skipped",
+            PreprocessorUtils.getFilePath(fileRef.getSourceFile())));
+      }
+      return FileProcessingResult.UNCHANGED;
+    }
+
+    final DependencyRecorder recorder = new DependencyRecorder();
+    final FileProcessingResult result;
+    if (fileRef.isCopyOnly()) {
+      // copying doesn't read variables, the context can be shared by copying threads
+      result = this.processFile(fileRef, fileContext, fileCopier);
+    } else {
+      fileContext.setDependencyRecorder(recorder);
+      try {
+        result = this.processFile(fileRef, fileContext, fileCopier);
+      } finally {
+        fileContext.setDependencyRecorder(null);
+      }
+    }
+    dependencyIndex.register(fileRef, recorder);
+    return result;
+  }
+
+  private FileProcessingResult processFile(final FileInfoContainer fileRef,
+                                           final PreprocessorContext fileContext,
+                                           final FileCopier fileCopier)
+      throws IOException {
+    FileProcessingResult result = FileProcessingResult.NONE;
+    if (fileRef.isExcludedFromPreprocessing()) {
+      result = FileProcessingResult.EXCLUDED;
+    } else if (fileRef.isCopyOnly()) {
+      if (!fileContext.isDryRun()) {
+        final File destinationFile =
+            fileContext.createDestinationFileForPath(fileRef.makeTargetFilePathAsString());
+        boolean doCopy = true;
+
+        if (fileContext.isDontOverwriteSameContent() &&
+            PreprocessorUtils.isFileContentEquals(fileRef.getSourceFile(), destinationFile)) {
+          doCopy = false;
+          fileRef.getGeneratedResources().add(destinationFile);
+          if (fileContext.isVerbose()) {
+            fileContext.logForVerbose(String
+                .format("Copy skipped because same content: %s -> {dst} %s",
+                    PreprocessorUtils.getFilePath(fileRef.getSourceFile()),
+                    fileRef.makeTargetFilePathAsString()));
+          }
+        }
+
+        if (doCopy) {
+          final boolean linked = fileCopier.copy(fileRef.getSourceFile(), destinationFile);
+          if (fileContext.isVerbose()) {
+            fileContext.logForVerbose(String.format("%s file %s -> {dst} %s",
+                linked ? "Link" : "Copy",
+                PreprocessorUtils.getFilePath(fileRef.getSourceFile()),
+                fileRef.makeTargetFilePathAsString()));
+          }
+          fileRef.getGeneratedResources().add(destinationFile);
+          result = FileProcessingResult.COPIED;
+        }
+      }
+    } else {
+      final long startTime = System.currentTimeMillis();
+      fileRef.preprocessFileWithNotification(fileContext, null, false);
+      final long elapsedTime = System.currentTimeMillis() - startTime;
+      if (fileContext.isVerbose()) {
+        fileContext.logForVerbose(String
+            .format("File preprocessing completed  '%s', elapsed time %d ms",
+                PreprocessorUtils.getFilePath(fileRef.getSourceFile()), elapsedTime));
+      }
+      result = FileProcessingResult.PREPROCESSED;
+    }
+    return result;
+  }
+
   private void createTargetFolder() throws IOException {
     final File target = context.getTarget();
 
@@ -431,7 +912,107 @@ public final class JcpPreprocessor {
   }
 
 
-  private Collection<FileInfoContainer> collectFilesToPreprocess(
+  /**
+   * Remove files which have not been produced during preprocessing from the target folder, unchanged
+   * files are not touched. Folders which become empty are removed too, the dependency index is kept.
+   *
+   * @throws IOException if any IO error
+   */
+  /**
+   * Check that the target folder is not a source folder, not placed in a source folder and doesn't contain a
+   * source folder. Sync of such target folder would remove source files and other files not made by preprocessing.
+   *
+   * @param sources source folders, must not be null
+   * @throws IOException if the target folder overlaps a source folder or paths can't be resolved
+   */
+  private void assertTargetNotOverlapsSources(final List<PreprocessorContext.SourceFolder> sources)
+      throws IOException {
+    final Path target = this.context.getTarget().getCanonicalFile().toPath();
+    for (final PreprocessorContext.SourceFolder sourceFolder : sources) {
+      final Path source = sourceFolder.getAsFile().getCanonicalFile().toPath();
+      if (source.startsWith(target) || target.startsWith(source)) {
+        throw new IOException(String.format(
+            "Target folder '%s' overlaps source folder '%s', it can't be synchronized", target,
+            source));
+      }
+    }
+  }
+
+  private void syncTargetFolder() throws IOException {
+    final Path targetFolder = this.context.getTarget().toPath().toAbsolutePath().normalize();
+    if (!Files.isDirectory(targetFolder)) {
+      return;
+    }
+
+    final Set<Path> producedFiles = this.context.findAllProducedFiles().stream()
+        .map(x -> x.toPath().toAbsolutePath().normalize())
+        .collect(Collectors.toCollection(HashSet::new));
+    producedFiles.add(targetFolder.resolve(DependencyIndex.FILE_NAME));
+
+    final class StaleFileRemover extends SimpleFileVisitor<Path> {
+      private final Deque<Boolean> removedInFolder = new ArrayDeque<>();
+      private int removedFiles;
+
+      private void markRemoved() {
+        if (!this.removedInFolder.isEmpty()) {
+          this.removedInFolder.pop();
+          this.removedInFolder.push(Boolean.TRUE);
+        }
+      }
+
+      @Override
+      public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+        this.removedInFolder.push(Boolean.FALSE);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs)
+          throws IOException {
+        if (!producedFiles.contains(file)) {
+          Files.delete(file);
+          this.removedFiles++;
+          this.markRemoved();
+          context.logForVerbose("Removed file which has not been produced: " + file);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(final Path dir, final IOException exc)
+          throws IOException {
+        if (exc != null) {
+          throw exc;
+        }
+        if (this.removedInFolder.pop()) {
+          final boolean empty;
+          try (final DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            empty = !stream.iterator().hasNext();
+          }
+          if (empty) {
+            Files.delete(dir);
+            this.markRemoved();
+          }
+        }
+        return FileVisitResult.CONTINUE;
+      }
+    }
+
+    // the target folder can be a link so that its content is walked
+    final List<Path> children = new ArrayList<>();
+    try (final DirectoryStream<Path> stream = Files.newDirectoryStream(targetFolder)) {
+      stream.forEach(children::add);
+    }
+    final StaleFileRemover remover = new StaleFileRemover();
+    for (final Path child : children) {
+      Files.walkFileTree(child, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, remover);
+    }
+    this.context.logInfo(
+        String.format("Target folder has been synchronized, removed %d files",
+            remover.removedFiles));
+  }
+
+  Collection<FileInfoContainer> collectFilesToPreprocess(
       final List<PreprocessorContext.SourceFolder> sources, final List<String> excluded)
       throws IOException {
     final Collection<FileInfoContainer> result = new ArrayList<>();
@@ -447,20 +1028,13 @@ public final class JcpPreprocessor {
         canonicalSourcePath += File.separator;
       }
 
-      for (final File file : findAllFiles(canonicalSourcePath, sourceFolder.getAsFile(),
-          antPathMatcher, excluded)) {
-        if (this.context.isFileExcludedByExtension(file)) {
-          this.context
-              .logForVerbose(String.format("File '%s' excluded by its extension", file.getPath()));
-        } else {
-          final String canonicalFilePath = file.getCanonicalPath();
-          final String canonicalRelativePath =
-              canonicalFilePath.substring(canonicalSourcePath.length());
-          final FileInfoContainer reference = new FileInfoContainer(file, canonicalRelativePath,
-              !this.context.isFileAllowedForPreprocessing(file));
-          result.add(reference);
-          this.context.logDebug("File added to preprocess list: " + reference);
-        }
+      for (final Map.Entry<String, File> found : findAllFiles(canonicalSourcePath,
+          sourceFolder.getAsFile(), antPathMatcher, excluded)) {
+        final File file = found.getValue();
+        final FileInfoContainer reference = new FileInfoContainer(file, found.getKey(),
+            !this.context.isFileAllowedForPreprocessing(file));
+        result.add(reference);
+        this.context.logDebug("File added to preprocess list: " + reference);
       }
     }
 
@@ -468,51 +1042,122 @@ public final class JcpPreprocessor {
   }
 
 
-  private Set<File> findAllFiles(
+  /**
+   * Find all files in a source folder through walk of its file tree. Excluded folders are not walked and files
+   * excluded by extension are not returned. Relative paths are made from walked paths, canonical paths are
+   * requested only for linked folders, their content and linked files.
+   *
+   * @param sourceCanonicalPath    canonical path of the source folder ended by separator
+   * @param sourceFolder           the source folder
+   * @param antPathMatcher         matcher of excluded folder patterns
+   * @param excludedFolderPatterns patterns of excluded folders
+   * @return found files with their canonical relative paths, sorted by the relative paths and walked paths
+   * @throws IOException if the file tree can't be walked
+   */
+  private List<Map.Entry<String, File>> findAllFiles(
       final String sourceCanonicalPath,
-      final File dir,
+      final File sourceFolder,
       final AntPathMatcher antPathMatcher,
       final List<String> excludedFolderPatterns
   ) throws IOException {
+    final List<Map.Entry<String, File>> result = new ArrayList<>();
+    final String normalizedBasePath = FilenameUtils.normalize(sourceCanonicalPath, true);
+    final Path sourcePath = sourceFolder.toPath();
+    final Set<String> linkedFolderChain = new HashSet<>();
 
-    final Set<File> result = new HashSet<>();
+    final class SourceTreeVisitor extends SimpleFileVisitor<Path> {
+      private final boolean linked;
 
-    this.context.logDebug("Looking for files in folder: " + dir);
+      SourceTreeVisitor(final boolean linked) {
+        this.linked = linked;
+      }
 
-    final File[] allowedFiles = dir.listFiles();
-    if (allowedFiles == null) {
-      this.context.logWarning("Can't find files in folder: " + dir);
-    } else {
-      final String normalizedBasePath = FilenameUtils.normalize(sourceCanonicalPath, true);
+      private void walkContent(final Path folder) throws IOException {
+        context.logDebug("Looking for files in folder: " + folder);
+        final List<Path> content = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+          stream.forEach(content::add);
+        } catch (IOException | DirectoryIteratorException ex) {
+          context.logWarning("Can't find files in folder: " + folder);
+          return;
+        }
+        for (final Path path : content) {
+          Files.walkFileTree(path, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, this);
+        }
+      }
 
-      for (final File file : allowedFiles) {
-        if (file.isDirectory()) {
-          final String folderPath = file.getCanonicalPath();
-          String excludedFolderPattern = null;
+      private String findPath(final Path path, final boolean canonical) throws IOException {
+        return canonical ? path.toFile().getCanonicalPath() :
+            sourceCanonicalPath + sourcePath.relativize(path);
+      }
 
-          if (!excludedFolderPatterns.isEmpty()) {
-            final String subPathInBase = folderPath.substring(normalizedBasePath.length());
+      private boolean isFolderAllowed(final Path folder, final boolean canonical)
+          throws IOException {
+        if (excludedFolderPatterns.isEmpty()) {
+          return true;
+        }
+        final String folderPath = this.findPath(folder, canonical);
+        final String subPathInBase = folderPath.substring(normalizedBasePath.length());
+        for (final String pattern : excludedFolderPatterns) {
+          if (antPathMatcher.match(pattern, subPathInBase)) {
+            context.logForVerbose(
+                String.format("Folder '%s' excluded by '%s'", folderPath, pattern));
+            return false;
+          }
+        }
+        return true;
+      }
 
-            for (final String pattern : excludedFolderPatterns) {
-              if (antPathMatcher.match(pattern, subPathInBase)) {
-                excludedFolderPattern = pattern;
-                break;
+      @Override
+      public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
+          throws IOException {
+        if (this.isFolderAllowed(dir, this.linked)) {
+          context.logDebug("Looking for files in folder: " + dir);
+          return FileVisitResult.CONTINUE;
+        }
+        return FileVisitResult.SKIP_SUBTREE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(final Path path, final BasicFileAttributes attrs)
+          throws IOException {
+        final boolean canonical = this.linked || attrs.isSymbolicLink();
+        if (attrs.isSymbolicLink() && Files.isDirectory(path)) {
+          if (this.isFolderAllowed(path, true)) {
+            final String linkedFolder = path.toFile().getCanonicalPath();
+            if (linkedFolderChain.add(linkedFolder)) {
+              try {
+                new SourceTreeVisitor(true).walkContent(path);
+              } finally {
+                linkedFolderChain.remove(linkedFolder);
               }
+            } else {
+              context.logWarning("Detected loop of linked folders: " + path);
             }
           }
-
-          if (excludedFolderPattern == null) {
-            result.addAll(
-                findAllFiles(sourceCanonicalPath, file, antPathMatcher, excludedFolderPatterns));
+        } else {
+          final File file = path.toFile();
+          if (context.isFileExcludedByExtension(file)) {
+            context.logForVerbose(
+                String.format("File '%s' excluded by its extension", file.getPath()));
           } else {
-            this.context.logForVerbose(
-                String.format("Folder '%s' excluded by '%s'", folderPath, excludedFolderPattern));
+            result.add(new AbstractMap.SimpleImmutableEntry<>(
+                this.findPath(path, canonical).substring(sourceCanonicalPath.length()), file));
           }
-        } else {
-          result.add(file);
         }
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed(final Path path, final IOException error) {
+        context.logWarning("Can't find files in folder: " + path);
+        return FileVisitResult.CONTINUE;
       }
     }
+
+    new SourceTreeVisitor(false).walkContent(sourcePath);
+    result.sort(Map.Entry.<String, File>comparingByKey()
+        .thenComparing(entry -> entry.getValue().getPath()));
     return result;
   }
 
@@ -592,10 +1237,108 @@ public final class JcpPreprocessor {
     return processedConfigFileList;
   }
 
+  /**
+   * Context for concurrent global phase, it records read and written global variables (also through
+   * its clones) to be replayed in the main context. Writes of special variables can't be replayed so that
+   * they interrupt processing of the file and the file is processed again sequentially. Shared resources
+   * (for instance opened XML documents) can't be replayed too, so their writers are processed again as well.
+   */
+  private static final class GlobalPhaseContext extends PreprocessorContext {
+    private final DependencyRecorder recorder = new DependencyRecorder();
+    private boolean specialVariableWriter;
+    private boolean sharedResourceWriter;
+
+    private GlobalPhaseContext(final PreprocessorContext context) {
+      super(context);
+      this.clearLocalVariables();
+      this.setDependencyRecorder(this.recorder);
+    }
+
+    boolean dependsOn(final Set<String> changedVariables) {
+      return this.recorder.getReadVariables().keySet().stream().anyMatch(changedVariables::contains);
+    }
+
+    boolean isSpecialVariableWriter() {
+      return this.specialVariableWriter || this.recorder.hasSpecialVariableWrites();
+    }
+
+    boolean isSharedResourceWriter() {
+      return this.sharedResourceWriter;
+    }
+
+    List<Map.Entry<String, Value>> getWrittenVariables() {
+      return this.recorder.getWrittenVariables();
+    }
+
+    private void assertNotSpecialVariable(final String name) {
+      final String normalized = PreprocessorUtils.normalizeVariableName(name);
+      if (normalized != null
+          && this.getMapVariableNameToSpecialVarProcessor().containsKey(normalized)) {
+        this.specialVariableWriter = true;
+        throw new IllegalStateException(
+            "Write of special variable '" + normalized + "' is postponed for sequential processing");
+      }
+    }
+
+    @Override
+    public PreprocessorContext setGlobalVariable(final String name, final Value value) {
+      this.assertNotSpecialVariable(name);
+      return super.setGlobalVariable(name, value);
+    }
+
+    @Override
+    public PreprocessorContext setLocalVariable(final String name, final Value value) {
+      this.assertNotSpecialVariable(name);
+      return super.setLocalVariable(name, value);
+    }
+
+    @Override
+    public void setSharedResource(final String name, final Object obj) {
+      this.sharedResourceWriter = true;
+      super.setSharedResource(name, obj);
+    }
+  }
+
+
+  private enum FileProcessingResult {
+    NONE,
+    EXCLUDED,
+    COPIED,
+    PREPROCESSED,
+    UNCHANGED
+  }
+
   @Data
   public static final class Statistics {
     private final int preprocessed;
     private final int copied;
     private final int excluded;
+    /**
+     * Number of files skipped in incremental mode because their inputs are unchanged.
+     *
+     * @since 7.3.1
+     */
+    private final int unchanged;
+
+    public Statistics(final int preprocessed, final int copied, final int excluded) {
+      this(preprocessed, copied, excluded, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param preprocessed number of preprocessed files
+     * @param copied       number of copied files
+     * @param excluded     number of excluded files
+     * @param unchanged    number of files skipped in incremental mode
+     * @since 7.3.1
+     */
+    public Statistics(final int preprocessed, final int copied, final int excluded,
+                      final int unchanged) {
+      this.preprocessed = preprocessed;
+      this.copied = copied;
+      this.excluded = excluded;
+      this.unchanged = unchanged;
+    }
   }
 }
@@ -84,6 +84,10 @@ public class PreprocessTask extends Task implements PreprocessorLogger, SpecialV
   private boolean allowWhitespaces = false;
   private boolean preserveIndents = false;
   private boolean dontOverwriteSameContent = false;
+  private int threads = 1;
+  private boolean incremental = false;
+  private boolean hardLinks = false;
+  private boolean syncTarget = false;
   private String actionPreprocessorExtensions = "";
   private Map<String, Value> antVariables = new HashMap<>();
 
@@ -152,6 +156,10 @@ public class PreprocessTask extends Task implements PreprocessorLogger, SpecialV
     }
 
     context.setDontOverwriteSameContent(this.isDontOverwriteSameContent());
+    context.setThreads(Math.max(1, this.getThreads()));
+    context.setIncremental(this.isIncremental());
+    context.setHardLinks(this.isHardLinks());
+    context.setSyncTarget(this.isSyncTarget());
     context.setClearTarget(this.isClearTarget());
     context.setDryRun(this.isDryRun());
     context.setAllowsBlocks(this.isAllowBlocks());
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.containers;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Bounded thread-safe cache of binary files encoded into text, keyed by normalized file path and encoding
+ * description. A cached text is returned only if modification time and size of the file are the same as during
+ * its encoding. The size of the cache is limited by number of chars in cached texts, the least recently used
+ * texts are removed first.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @see StampedFileCache
+ * @since 7.3.1
+ */
+public final class BinFileCache {
+
+  /**
+   * Default limit of chars in cached texts, can be changed by system property {@code jcp.binfile.cache.limit}.
+   */
+  public static final long DEFAULT_LIMIT =
+      Long.getLong("jcp.binfile.cache.limit", 32L * 1024L * 1024L);
+
+  private final StampedFileCache<String> cache;
+
+  public BinFileCache() {
+    this(DEFAULT_LIMIT);
+  }
+
+  public BinFileCache(final long limit) {
+    this.cache = new StampedFileCache<>(limit, String::length);
+  }
+
+  /**
+   * Find cached encoded text of a file or encode the file and place its text into the cache.
+   *
+   * @param file     the file to be encoded, must not be null
+   * @param encoding description of encoding, files encoded with different descriptions are cached separately,
+   *                 must not be null
+   * @param encoder  encoder of the file, must not be null
+   * @return encoded text of the file, must not be null
+   * @throws IOException if the file can't be read
+   */
+  public String findOrEncode(final File file, final String encoding, final Encoder encoder)
+      throws IOException {
+    requireNonNull(file, "File is null");
+    requireNonNull(encoding, "Encoding is null");
+    requireNonNull(encoder, "Encoder is null");
+    return this.cache.findOrLoad(file.toPath().toAbsolutePath().normalize(), encoding,
+        () -> encoder.encode(file));
+  }
+
+  public long getLimit() {
+    return this.cache.getLimit();
+  }
+
+  public int size() {
+    return this.cache.size();
+  }
+
+  public long getCachedChars() {
+    return this.cache.getCachedChars();
+  }
+
+  public long getHits() {
+    return this.cache.getHits();
+  }
+
+  public long getMisses() {
+    return this.cache.getMisses();
+  }
+
+  public void clear() {
+    this.cache.clear();
+  }
+
+  @Override
+  public String toString() {
+    return this.getClass().getSimpleName() + this.cache;
+  }
+
+  /**
+   * Encoder of a binary file into text.
+   */
+  @FunctionalInterface
+  public interface Encoder {
+    /**
+     * Encode file content.
+     *
+     * @param file the file to be encoded, must not be null
+     * @return encoded text, must not be null
+     * @throws IOException if the file can't be read
+     */
+    String encode(File file) throws IOException;
+  }
+}
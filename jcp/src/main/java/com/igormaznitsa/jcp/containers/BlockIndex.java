@@ -0,0 +1,244 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.containers;
+
+import static java.util.Objects.requireNonNull;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.directives.AbstractDirectiveHandler;
+import com.igormaznitsa.jcp.directives.DirectiveHandlerIndex;
+import com.igormaznitsa.jcp.directives.ElseDirectiveHandler;
+import com.igormaznitsa.jcp.directives.EndDirectiveHandler;
+import com.igormaznitsa.jcp.directives.EndIfDirectiveHandler;
+import com.igormaznitsa.jcp.directives.IfDefDirectiveHandler;
+import com.igormaznitsa.jcp.directives.IfDefinedDirectiveHandler;
+import com.igormaznitsa.jcp.directives.IfDirectiveHandler;
+import com.igormaznitsa.jcp.directives.IfNDefDirectiveHandler;
+import com.igormaznitsa.jcp.directives.WhileDirectiveHandler;
+import com.igormaznitsa.jcp.utils.PreprocessorUtils;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Index of block structure of a text which maps lines of {@code #if}, {@code #else} and {@code #while}
+ * directives to lines of their matching {@code #else}, {@code #endif} and {@code #end} directives, so
+ * that inactive blocks can be skipped without reading line by line.
+ * <p>
+ * A block is indexed only if walking through it in inactive state would not make anything but balanced
+ * changes of if and while stacks, i.e. it doesn't contain unknown directives, directives with bad
+ * arguments or directives which are executed in inactive blocks except block structure ones.
+ * If the block structure of the text is broken then nothing is indexed.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+public final class BlockIndex {
+
+  private static final int NO_JUMP = -1;
+
+  private final boolean allowWhitespaces;
+  private final DirectiveHandlerIndex handlerIndex;
+  private final int[] jumps;
+
+  private BlockIndex(final boolean allowWhitespaces, final DirectiveHandlerIndex handlerIndex,
+                     final int[] jumps) {
+    this.allowWhitespaces = allowWhitespaces;
+    this.handlerIndex = handlerIndex;
+    this.jumps = jumps;
+  }
+
+  /**
+   * Build index for text lines.
+   *
+   * @param text    text lines, must not be null, lines without directive char are not decoded
+   * @param context preprocessor context which defines directive handlers and directive format, must not be null
+   * @return built index, must not be null
+   */
+  public static BlockIndex build(final LineStore text, final PreprocessorContext context) {
+    requireNonNull(text, "Text is null");
+    final boolean allowWhitespaces = context.isAllowWhitespaces();
+    final DirectiveHandlerIndex handlerIndex = context.getDirectiveHandlerIndex();
+
+    final int[] jumps = new int[text.size()];
+    Arrays.fill(jumps, NO_JUMP);
+    boolean hasJumps = false;
+
+    final Deque<Block> blocks = new ArrayDeque<>();
+    for (int i = 0; i < text.size(); i++) {
+      final LineKind kind = text.contains(i, '#') ?
+          findLineKind(text.getLine(i), allowWhitespaces, handlerIndex) : LineKind.TEXT;
+      final Block top = blocks.peek();
+      switch (kind) {
+        case TEXT:
+          break;
+        case UNSAFE: {
+          if (top != null) {
+            top.segmentUnsafe = true;
+            top.unsafe = true;
+          }
+        }
+        break;
+        case IF:
+        case WHILE: {
+          blocks.push(new Block(kind, i));
+        }
+        break;
+        case ELSE: {
+          if (top == null || top.kind != LineKind.IF) {
+            return makeEmpty(allowWhitespaces, handlerIndex);
+          }
+          hasJumps |= top.closeSegment(jumps, i);
+        }
+        break;
+        case ENDIF:
+        case END: {
+          if (top == null || top.kind != (kind == LineKind.ENDIF ? LineKind.IF : LineKind.WHILE)) {
+            return makeEmpty(allowWhitespaces, handlerIndex);
+          }
+          hasJumps |= top.closeSegment(jumps, i);
+          blocks.pop();
+          final Block parent = blocks.peek();
+          if (parent != null && top.unsafe) {
+            parent.segmentUnsafe = true;
+            parent.unsafe = true;
+          }
+        }
+        break;
+        default:
+          throw new IllegalStateException("Unexpected line kind: " + kind);
+      }
+    }
+
+    if (!blocks.isEmpty() || !hasJumps) {
+      return makeEmpty(allowWhitespaces, handlerIndex);
+    }
+    return new BlockIndex(allowWhitespaces, handlerIndex, jumps);
+  }
+
+  private static BlockIndex makeEmpty(final boolean allowWhitespaces,
+                                      final DirectiveHandlerIndex handlerIndex) {
+    return new BlockIndex(allowWhitespaces, handlerIndex, null);
+  }
+
+  private static LineKind findLineKind(final String line, final boolean allowWhitespaces,
+                                       final DirectiveHandlerIndex handlerIndex) {
+    final String leftTrimmed = PreprocessorUtils.leftTrim(line);
+    final int marker = LineClassifier.findMarker(leftTrimmed, allowWhitespaces);
+    if (!FileInfoContainer.isJcpDirectiveLine(leftTrimmed, marker)) {
+      return LineKind.TEXT;
+    }
+    final String directive = FileInfoContainer.extractHashPrefixedDirective(leftTrimmed, marker);
+    final AbstractDirectiveHandler handler = handlerIndex.find(directive);
+    if (handler == null) {
+      return LineKind.UNSAFE;
+    }
+    if (!handler.isPreprocessingPhaseAllowed()) {
+      return LineKind.TEXT;
+    }
+    if (!FileInfoContainer.checkDirectiveArgumentRoughly(handler,
+        PreprocessorUtils.extractTail(handler.getName(), directive))) {
+      return LineKind.UNSAFE;
+    }
+    if (handler.executeOnlyWhenExecutionAllowed()) {
+      return LineKind.TEXT;
+    }
+
+    final Class<?> handlerClass = handler.getClass();
+    if (handlerClass == IfDirectiveHandler.class
+        || handlerClass == IfDefinedDirectiveHandler.class
+        || handlerClass == IfDefDirectiveHandler.class
+        || handlerClass == IfNDefDirectiveHandler.class) {
+      return LineKind.IF;
+    } else if (handlerClass == ElseDirectiveHandler.class) {
+      return LineKind.ELSE;
+    } else if (handlerClass == EndIfDirectiveHandler.class) {
+      return LineKind.ENDIF;
+    } else if (handlerClass == WhileDirectiveHandler.class) {
+      return LineKind.WHILE;
+    } else if (handlerClass == EndDirectiveHandler.class) {
+      return LineKind.END;
+    } else {
+      return LineKind.UNSAFE;
+    }
+  }
+
+  /**
+   * Check that the index is built for the same directive format and directive handlers as
+   * provided by a context.
+   *
+   * @param context the context to be checked, must not be null
+   * @return true if the index can be used for the context
+   */
+  public boolean isCompatible(final PreprocessorContext context) {
+    if (context.isAllowWhitespaces() != this.allowWhitespaces) {
+      return false;
+    }
+    return this.handlerIndex.hasSameHandlers(context.getDirectiveHandlerIndex());
+  }
+
+  /**
+   * Find line of matching directive for block structure directive.
+   *
+   * @param lineIndex index of line contains {@code #if}, {@code #else} or {@code #while} directive
+   * @return index of line contains matching {@code #else}, {@code #endif} or {@code #end} directive, -1 if
+   * the block can't be skipped
+   */
+  public int findJumpTarget(final int lineIndex) {
+    if (this.jumps == null || lineIndex < 0 || lineIndex >= this.jumps.length) {
+      return NO_JUMP;
+    }
+    return this.jumps[lineIndex];
+  }
+
+  private enum LineKind {
+    TEXT,
+    UNSAFE,
+    IF,
+    ELSE,
+    ENDIF,
+    WHILE,
+    END
+  }
+
+  private static final class Block {
+    private final LineKind kind;
+    private int segmentStart;
+    private boolean segmentUnsafe;
+    private boolean unsafe;
+
+    private Block(final LineKind kind, final int line) {
+      this.kind = kind;
+      this.segmentStart = line;
+    }
+
+    private boolean closeSegment(final int[] jumps, final int line) {
+      final boolean result = !this.segmentUnsafe;
+      if (result) {
+        jumps[this.segmentStart] = line;
+      }
+      this.segmentStart = line;
+      this.segmentUnsafe = false;
+      return result;
+    }
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.containers;
+
+import com.igormaznitsa.jcp.directives.AbstractDirectiveHandler;
+import com.igormaznitsa.jcp.directives.DirectiveHandlerIndex;
+import com.igormaznitsa.jcp.expression.ExpressionTree;
+import com.igormaznitsa.jcp.expression.ExpressionTreeCache;
+import com.igormaznitsa.jcp.utils.MacroTemplate;
+import com.igormaznitsa.jcp.utils.PreprocessorUtils;
+import java.util.Arrays;
+
+/**
+ * Decoded form of a text line: the line without leading whitespaces, its indent, position of comment
+ * marker and, for directive lines, the directive handler and its argument. Parsed expressions and
+ * macros of the line are attached to the decoded line during its processing, so that lines processed
+ * many times (for instance in a while loop) are not decoded and parsed again.
+ * <p>
+ * Decoded lines can be shared between threads, attached data is replaced as a whole and a lost
+ * update just leads to parsing of the same expression once again.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @see TextFileDataContainer#findDecodedLine(int, com.igormaznitsa.jcp.context.PreprocessorContext, boolean)
+ * @since 7.3.1
+ */
+public final class DecodedLine {
+
+  private static final int MAX_EXPRESSIONS = 8;
+  private static final LineExpression[] NO_EXPRESSIONS = new LineExpression[0];
+
+  private final String line;
+  private final String leftTrimmed;
+  private final String prefix;
+  private final int marker;
+  private final String directive;
+  private final AbstractDirectiveHandler handler;
+  private final String directiveTail;
+  private final boolean directiveArgumentValid;
+
+  private volatile MacroTemplate macroTemplate;
+  private volatile LineExpression[] expressions = NO_EXPRESSIONS;
+
+  private DecodedLine(final String line, final String leftTrimmed, final String prefix, final int marker,
+                      final String directive, final AbstractDirectiveHandler handler,
+                      final String directiveTail, final boolean directiveArgumentValid) {
+    this.line = line;
+    this.leftTrimmed = leftTrimmed;
+    this.prefix = prefix;
+    this.marker = marker;
+    this.directive = directive;
+    this.handler = handler;
+    this.directiveTail = directiveTail;
+    this.directiveArgumentValid = directiveArgumentValid;
+  }
+
+  /**
+   * Decode a text line.
+   *
+   * @param line             the text line, must not be null
+   * @param allowWhitespaces true if whitespaces are allowed between comment and directive chars
+   * @param handlerIndex     index to find directive handlers, must not be null
+   * @return decoded line, must not be null
+   */
+  static DecodedLine decode(final String line, final boolean allowWhitespaces,
+                            final DirectiveHandlerIndex handlerIndex) {
+    final String leftTrimmed = PreprocessorUtils.leftTrim(line);
+
+    final String prefix;
+    if (leftTrimmed.isEmpty()) {
+      prefix = line;
+    } else {
+      final int numberOfSpacesAtTheLineBeginning = line.indexOf(leftTrimmed);
+      prefix = numberOfSpacesAtTheLineBeginning > 0 ?
+          line.substring(0, numberOfSpacesAtTheLineBeginning) : "";
+    }
+
+    final int marker = LineClassifier.findMarker(leftTrimmed, allowWhitespaces);
+    if (!FileInfoContainer.isJcpDirectiveLine(leftTrimmed, marker)) {
+      return new DecodedLine(line, leftTrimmed, prefix, marker, null, null, null, false);
+    }
+
+    final String directive = FileInfoContainer.extractHashPrefixedDirective(leftTrimmed, marker);
+    final AbstractDirectiveHandler handler = handlerIndex.find(directive);
+    if (handler == null) {
+      return new DecodedLine(line, leftTrimmed, prefix, marker, directive, null, null, false);
+    }
+    final String tail = PreprocessorUtils.extractTail(handler.getName(), directive);
+    return new DecodedLine(line, leftTrimmed, prefix, marker, directive, handler, tail,
+        FileInfoContainer.checkDirectiveArgumentRoughly(handler, tail));
+  }
+
+  public String getLine() {
+    return this.line;
+  }
+
+  public String getLeftTrimmed() {
+    return this.leftTrimmed;
+  }
+
+  public String getPrefix() {
+    return this.prefix;
+  }
+
+  public int getMarker() {
+    return this.marker;
+  }
+
+  public boolean isDirective() {
+    return this.directive != null;
+  }
+
+  /**
+   * Get directive text after the directive prefix.
+   *
+   * @return the directive text or null if the line is not directive
+   */
+  public String getDirective() {
+    return this.directive;
+  }
+
+  /**
+   * Get handler of the directive.
+   *
+   * @return the handler or null if the line is not directive or the directive is unknown
+   */
+  public AbstractDirectiveHandler getHandler() {
+    return this.handler;
+  }
+
+  /**
+   * Get rest of the directive after the directive name.
+   *
+   * @return the directive argument or null if there is no handler for the line
+   */
+  public String getDirectiveTail() {
+    return this.directiveTail;
+  }
+
+  public boolean isDirectiveArgumentValid() {
+    return this.directiveArgumentValid;
+  }
+
+  /**
+   * Get macros of the line without leading whitespaces.
+   *
+   * @param allowWhitespaces true if whitespaces are allowed in macros
+   * @return the macro template of the left trimmed line, must not be null
+   */
+  public MacroTemplate findMacroTemplate(final boolean allowWhitespaces) {
+    MacroTemplate result = this.macroTemplate;
+    if (result == null || result.isAllowWhitespaces() != allowWhitespaces) {
+      result = MacroTemplate.parse(this.leftTrimmed, allowWhitespaces);
+      this.macroTemplate = result;
+    }
+    return result;
+  }
+
+  /**
+   * Find parsed tree of an expression met in the line.
+   *
+   * @param expression the expression text, must not be null
+   * @return the parsed tree or null if it has not been attached to the line
+   * @see #putExpressionTree(String, ExpressionTree)
+   */
+  public ExpressionTree findExpressionTree(final String expression) {
+    for (final LineExpression e : this.expressions) {
+      if (e.text.equals(expression)) {
+        return e.tree;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Attach parsed tree of an expression met in the line. Only trees which depend just on expression
+   * text are attached and only few expressions can be attached to a line.
+   *
+   * @param expression the expression text, must not be null
+   * @param tree       the parsed tree of the expression, must not be null
+   */
+  public void putExpressionTree(final String expression, final ExpressionTree tree) {
+    final LineExpression[] current = this.expressions;
+    if (current.length < MAX_EXPRESSIONS && ExpressionTreeCache.isCacheable(expression)) {
+      final LineExpression[] changed = Arrays.copyOf(current, current.length + 1);
+      changed[current.length] = new LineExpression(expression, tree);
+      this.expressions = changed;
+    }
+  }
+
+  private static final class LineExpression {
+    private final String text;
+    private final ExpressionTree tree;
+
+    private LineExpression(final String text, final ExpressionTree tree) {
+      this.text = text;
+      this.tree = tree;
+    }
+  }
+}
@@ -0,0 +1,431 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.containers;
+
+import static java.util.Objects.requireNonNull;
+
+import com.igormaznitsa.jcp.InfoHelper;
+import com.igormaznitsa.jcp.context.DependencyRecorder;
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.expression.ValueType;
+import com.igormaznitsa.jcp.utils.PreprocessorUtils;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import lombok.Data;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * Persistent index of dependencies of preprocessed files, it is used by incremental mode to detect
+ * files which don't need to be preprocessed again. The index keeps for every file its source stamp,
+ * stamps of all included files, read global variables with their values, changed global variables
+ * and produced files. The index is saved as a text file in the target folder.
+ * Methods can be called from different threads during preprocessing.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+public final class DependencyIndex {
+
+  /**
+   * Name of the index file in the target folder.
+   */
+  public static final String FILE_NAME = ".jcp-dependencies";
+
+  private static final String HEADER = "#jcp-dependency-index 1";
+  private static final String NONE = "-";
+
+  private final String fingerprint;
+  private final Map<File, Entry> entries = new ConcurrentHashMap<>();
+
+  /**
+   * Create empty index.
+   *
+   * @param fingerprint fingerprint of preprocessing options, must not be null
+   */
+  public DependencyIndex(final String fingerprint) {
+    this.fingerprint = requireNonNull(fingerprint);
+  }
+
+  /**
+   * Make fingerprint of context options which affect result of preprocessing of any file.
+   *
+   * @param context preprocessor context, must not be null
+   * @return fingerprint of options, must not be null
+   */
+  public static String makeFingerprint(final PreprocessorContext context) {
+    final String options = String.join("\n",
+        InfoHelper.getVersion(),
+        context.getSources().stream().map(PreprocessorContext.SourceFolder::getAsString)
+            .collect(Collectors.joining(File.pathSeparator)),
+        PreprocessorUtils.getFilePath(context.getTarget()),
+        context.getSourceEncoding().name(),
+        context.getTargetEncoding().name(),
+        context.getEol(),
+        context.getKeepComments().name(),
+        Boolean.toString(context.isKeepLines()),
+        Boolean.toString(context.isAllowWhitespaces()),
+        Boolean.toString(context.isPreserveIndents()),
+        Boolean.toString(context.isAllowsBlocks()),
+        Boolean.toString(context.isCareForLastEol()),
+        Boolean.toString(context.isUnknownVariableAsFalse()),
+        Boolean.toString(context.isKeepAttributes())
+    );
+    return DigestUtils.md5Hex(options.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Load index from a file. If the file doesn't exist or it has been made for another fingerprint
+   * then empty index is returned.
+   *
+   * @param file        index file, must not be null
+   * @param fingerprint fingerprint of current options, must not be null
+   * @return loaded index, must not be null
+   * @throws IOException if any IO error or the file has wrong format
+   */
+  public static DependencyIndex load(final File file, final String fingerprint)
+      throws IOException {
+    final DependencyIndex result = new DependencyIndex(fingerprint);
+    if (!file.isFile()) {
+      return result;
+    }
+
+    try (final BufferedReader reader = Files.newBufferedReader(file.toPath(),
+        StandardCharsets.UTF_8)) {
+      if (!HEADER.equals(reader.readLine())) {
+        return result;
+      }
+      final String[] fingerprintLine = split(reader.readLine());
+      if (fingerprintLine.length != 2 || !fingerprint.equals(fingerprintLine[1])) {
+        return result;
+      }
+
+      Entry entry = null;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        final String[] fields = split(line);
+        switch (fields[0]) {
+          case "file": {
+            entry = new Entry(FileStamp.decode(fields, 1), Boolean.parseBoolean(fields[5]));
+            result.put(entry);
+          }
+          break;
+          case "input": {
+            requireEntry(entry).getInputs().add(FileStamp.decode(fields, 1));
+          }
+          break;
+          case "read": {
+            requireEntry(entry).getReadVariables().put(decode(fields[1]), decodeValue(fields[2]));
+          }
+          break;
+          case "write": {
+            requireEntry(entry).getWrittenVariables().add(
+                new AbstractMap.SimpleImmutableEntry<>(decode(fields[1]), decodeValue(fields[2])));
+          }
+          break;
+          case "output": {
+            requireEntry(entry).getOutputs().add(new File(decode(fields[1])));
+          }
+          break;
+          default:
+            throw new IOException("Unexpected record in dependency index: " + fields[0]);
+        }
+      }
+    } catch (IndexOutOfBoundsException | IllegalArgumentException ex) {
+      throw new IOException("Wrong format of dependency index: " + file, ex);
+    }
+    return result;
+  }
+
+  private static Entry requireEntry(final Entry entry) throws IOException {
+    if (entry == null) {
+      throw new IOException("Dependency index record without file");
+    }
+    return entry;
+  }
+
+  private static String[] split(final String line) {
+    return line == null ? new String[0] : line.split(" ");
+  }
+
+  private static String encode(final String text) {
+    return URLEncoder.encode(text, StandardCharsets.UTF_8);
+  }
+
+  private static String decode(final String text) {
+    return URLDecoder.decode(text, StandardCharsets.UTF_8);
+  }
+
+  private static String encodeValue(final Value value) {
+    return value == null ? NONE : encode(value.getType().name() + ':' + value);
+  }
+
+  private static Value decodeValue(final String text) {
+    if (NONE.equals(text)) {
+      return null;
+    }
+    final String decoded = decode(text);
+    final int separator = decoded.indexOf(':');
+    final String body = decoded.substring(separator + 1);
+    switch (ValueType.valueOf(decoded.substring(0, separator))) {
+      case BOOLEAN:
+        return Value.valueOf(Boolean.valueOf(body));
+      case INT:
+        return Value.valueOf(Long.valueOf(body));
+      case FLOAT:
+        return Value.valueOf(Float.valueOf(body));
+      case STRING:
+        return Value.valueOf(body);
+      default:
+        throw new IllegalArgumentException("Unsupported value type: " + decoded);
+    }
+  }
+
+  /**
+   * Save the index into a file, the file is replaced atomically if possible.
+   *
+   * @param file target file, must not be null
+   * @throws IOException if any IO error
+   */
+  public void save(final File file) throws IOException {
+    final File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+    try (final Writer writer = new BufferedWriter(
+        Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8))) {
+      writer.write(HEADER);
+      writer.write('\n');
+      writer.write("fingerprint " + this.fingerprint + '\n');
+      for (final Entry entry : new TreeMap<>(this.entries).values()) {
+        writer.write("file " + entry.getSource().encode() + ' ' + entry.isCopyOnly() + '\n');
+        for (final FileStamp input : entry.getInputs()) {
+          writer.write("input " + input.encode() + '\n');
+        }
+        for (final Map.Entry<String, Value> read : entry.getReadVariables().entrySet()) {
+          writer.write("read " + encode(read.getKey()) + ' ' + encodeValue(read.getValue()) + '\n');
+        }
+        for (final Map.Entry<String, Value> write : entry.getWrittenVariables()) {
+          writer.write(
+              "write " + encode(write.getKey()) + ' ' + encodeValue(write.getValue()) + '\n');
+        }
+        for (final File output : entry.getOutputs()) {
+          writer.write("output " + encode(output.getAbsolutePath()) + '\n');
+        }
+      }
+    }
+    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  public String getFingerprint() {
+    return this.fingerprint;
+  }
+
+  public int size() {
+    return this.entries.size();
+  }
+
+  /**
+   * Find entry for a source file.
+   *
+   * @param sourceFile source file, must not be null
+   * @return found entry or empty
+   */
+  public Optional<Entry> find(final File sourceFile) {
+    return Optional.ofNullable(this.entries.get(sourceFile.getAbsoluteFile()));
+  }
+
+  /**
+   * Find entry for a file only if the file doesn't need preprocessing. It checks that the source and all
+   * included files are not changed, all produced files exist and all read global variables have the same values.
+   *
+   * @param fileContainer file container, must not be null
+   * @param context       preprocessor context with current global variables, must not be null
+   * @return found up-to-date entry or empty if the file must be preprocessed
+   * @throws IOException if any IO error during check
+   */
+  public Optional<Entry> findUpToDate(final FileInfoContainer fileContainer,
+                                      final PreprocessorContext context) throws IOException {
+    final Entry entry = this.entries.get(fileContainer.getSourceFile().getAbsoluteFile());
+    if (entry == null || entry.isCopyOnly() != fileContainer.isCopyOnly()) {
+      return Optional.empty();
+    }
+    for (final File output : entry.getOutputs()) {
+      if (!output.isFile()) {
+        return Optional.empty();
+      }
+    }
+    for (final Map.Entry<String, Value> read : entry.getReadVariables().entrySet()) {
+      if (!Objects.equals(encodeValue(read.getValue()),
+          encodeValue(context.getGlobalVarTable().get(read.getKey())))) {
+        return Optional.empty();
+      }
+    }
+    if (entry.getSource().isChanged()) {
+      return Optional.empty();
+    }
+    for (final FileStamp input : entry.getInputs()) {
+      if (input.isChanged()) {
+        return Optional.empty();
+      }
+    }
+    return Optional.of(entry);
+  }
+
+  /**
+   * Register dependencies of a processed file. Files with volatile result or without produced files are
+   * removed from the index.
+   *
+   * @param fileContainer processed file, must not be null
+   * @param recorder      recorder of dependencies used during processing, must not be null
+   * @throws IOException if any IO error during calculation of file stamps
+   */
+  public void register(final FileInfoContainer fileContainer, final DependencyRecorder recorder)
+      throws IOException {
+    final File sourceFile = fileContainer.getSourceFile().getAbsoluteFile();
+    if (recorder.isVolatile() || fileContainer.getGeneratedResources().isEmpty()) {
+      this.entries.remove(sourceFile);
+    } else {
+      final Entry entry = new Entry(FileStamp.of(sourceFile), fileContainer.isCopyOnly());
+      for (final File input : fileContainer.getIncludedSources()) {
+        entry.getInputs().add(FileStamp.of(input.getAbsoluteFile()));
+      }
+      entry.getReadVariables().putAll(recorder.getReadVariables());
+      entry.getWrittenVariables().addAll(recorder.getWrittenVariables());
+      fileContainer.getGeneratedResources()
+          .forEach(x -> entry.getOutputs().add(x.getAbsoluteFile()));
+      this.entries.put(sourceFile, entry);
+    }
+  }
+
+  void put(final Entry entry) {
+    this.entries.put(entry.getSource().getFile().getAbsoluteFile(), entry);
+  }
+
+  /**
+   * Remove entry for a source file.
+   *
+   * @param sourceFile source file, must not be null
+   */
+  public void remove(final File sourceFile) {
+    this.entries.remove(sourceFile.getAbsoluteFile());
+  }
+
+  /**
+   * Remove all entries for files which are not among the sources.
+   *
+   * @param sourceFiles current source files, must not be null
+   */
+  public void retainSources(final Set<File> sourceFiles) {
+    this.entries.keySet().removeIf(x -> !sourceFiles.contains(x));
+  }
+
+  /**
+   * Dependencies of a processed file.
+   */
+  @Data
+  public static final class Entry {
+    private final FileStamp source;
+    private final boolean copyOnly;
+    private final List<FileStamp> inputs = new ArrayList<>();
+    private final Map<String, Value> readVariables = new LinkedHashMap<>();
+    private final List<Map.Entry<String, Value>> writtenVariables = new ArrayList<>();
+    private final List<File> outputs = new ArrayList<>();
+  }
+
+  /**
+   * Stamp of a file state, the file content hash is calculated only if size or modification time changed.
+   */
+  @Data
+  public static final class FileStamp {
+    private final File file;
+    private final long length;
+    private final long lastModified;
+    private final String hash;
+
+    /**
+     * Make stamp for current file state.
+     *
+     * @param file file, must not be null
+     * @return file stamp, must not be null
+     * @throws IOException if any IO error
+     */
+    public static FileStamp of(final File file) throws IOException {
+      return new FileStamp(file, file.length(), file.lastModified(), calcHash(file));
+    }
+
+    private static String calcHash(final File file) throws IOException {
+      try (final InputStream inputStream = Files.newInputStream(file.toPath())) {
+        return DigestUtils.md5Hex(inputStream);
+      }
+    }
+
+    private static FileStamp decode(final String[] fields, final int offset) {
+      return new FileStamp(
+          new File(DependencyIndex.decode(fields[offset])),
+          Long.parseLong(fields[offset + 1]),
+          Long.parseLong(fields[offset + 2]),
+          fields[offset + 3]);
+    }
+
+    private String encode() {
+      return DependencyIndex.encode(this.file.getAbsolutePath()) + ' ' + this.length + ' ' +
+          this.lastModified + ' ' + this.hash;
+    }
+
+    /**
+     * Check that the file has been changed or removed.
+     *
+     * @return true if the file content is changed or the file is not found
+     * @throws IOException if any IO error
+     */
+    public boolean isChanged() throws IOException {
+      if (!this.file.isFile()) {
+        return true;
+      }
+      if (this.file.length() == this.length && this.file.lastModified() == this.lastModified) {
+        return false;
+      }
+      return !this.hash.equals(calcHash(this.file));
+    }
+  }
+}
@@ -48,7 +48,10 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 
 /**
  * The class is one from the main classes in the preprocessor because it describes a preprocessing file and contains business logic for the process
@@ -91,6 +94,21 @@ public class FileInfoContainer {
    * The flag shows that the file has been excluded from preprocessing and it will not be preprocessed and copied
    */
   private boolean excludedFromPreprocessing;
+  /**
+   * The flag shows that the file contains directives which can change global state during preprocessing,
+   * it is detected during the global phase.
+   *
+   * @since 7.3.1
+   */
+  private boolean globalStateMutator;
+  /**
+   * Text of the source file read during the global phase, it is reused by the preprocessing phase to avoid second read of the file.
+   *
+   * @since 7.3.1
+   */
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private transient TextFileDataContainer cachedText;
   /**
    * The destination directory for the file
    */
@@ -149,27 +167,43 @@ public class FileInfoContainer {
    */
   public static boolean isDoubleDollarPrefixed(final String line,
                                                final boolean allowedWhitespaces) {
-    if (allowedWhitespaces) {
+    return isDoubleDollarPrefixed(line, LineClassifier.findMarker(line, allowedWhitespaces));
+  }
+
+  private static boolean isDoubleDollarPrefixed(final String line, final int marker) {
+    if (marker == LineClassifier.USE_REGEX) {
       return DIRECTIVE_TWO_DOLLARS_PREFIXED.matcher(line).matches();
     } else {
-      return line.startsWith("//$$");
+      return LineClassifier.isMarker(line, marker, "$$");
     }
   }
 
   public static boolean isDollarBlockPrefixed(final String line, final boolean allowedWhitespaces) {
-    if (allowedWhitespaces) {
+    return isDollarBlockPrefixed(line, LineClassifier.findMarker(line, allowedWhitespaces),
+        allowedWhitespaces);
+  }
+
+  private static boolean isDollarBlockPrefixed(final String line, final int marker,
+                                               final boolean allowedWhitespaces) {
+    if (marker == LineClassifier.USE_REGEX) {
       return DIRECTIVE_SINGLE_DOLLAR_BLOCK_PREFIXED.matcher(line).matches();
     } else {
-      return line.startsWith("//$\"\"\"");
+      return LineClassifier.isMarker(line, marker, allowedWhitespaces ? "$\"" : "$\"\"\"");
     }
   }
 
   public static boolean isDoubleDollarBlockPrefixed(final String line,
                                                     final boolean allowedWhitespaces) {
-    if (allowedWhitespaces) {
+    return isDoubleDollarBlockPrefixed(line, LineClassifier.findMarker(line, allowedWhitespaces),
+        allowedWhitespaces);
+  }
+
+  private static boolean isDoubleDollarBlockPrefixed(final String line, final int marker,
+                                                     final boolean allowedWhitespaces) {
+    if (marker == LineClassifier.USE_REGEX) {
       return DIRECTIVE_SINGLE_DOLLAR_BLOCK_PREFIXED.matcher(line).matches();
     } else {
-      return line.startsWith("//$$\"\"\"");
+      return LineClassifier.isMarker(line, marker, allowedWhitespaces ? "$\"" : "$$\"\"\"");
     }
   }
 
@@ -183,10 +217,14 @@ public class FileInfoContainer {
    */
   public static boolean isSingleDollarPrefixed(final String line,
                                                final boolean allowedWhitespaces) {
-    if (allowedWhitespaces) {
+    return isSingleDollarPrefixed(line, LineClassifier.findMarker(line, allowedWhitespaces));
+  }
+
+  private static boolean isSingleDollarPrefixed(final String line, final int marker) {
+    if (marker == LineClassifier.USE_REGEX) {
       return DIRECTIVE_SINGLE_DOLLAR_PREFIXED.matcher(line).matches();
     } else {
-      return line.startsWith("//$");
+      return LineClassifier.isMarker(line, marker, "$");
     }
   }
 
@@ -212,10 +250,14 @@ public class FileInfoContainer {
    * @since 7.0.6
    */
   public static boolean isJcpDirectiveLine(final String line, final boolean allowWhitespaces) {
-    if (allowWhitespaces) {
+    return isJcpDirectiveLine(line, LineClassifier.findMarker(line, allowWhitespaces));
+  }
+
+  static boolean isJcpDirectiveLine(final String line, final int marker) {
+    if (marker == LineClassifier.USE_REGEX) {
       return DIRECTIVE_HASH_PREFIXED.matcher(line).matches();
     } else {
-      return line.startsWith(AbstractDirectiveHandler.DIRECTIVE_PREFIX);
+      return LineClassifier.isMarker(line, marker, "#");
     }
   }
 
@@ -291,10 +333,12 @@ public class FileInfoContainer {
           }
 
           leftTrimmedString = PreprocessorUtils.leftTrim(nonTrimmedProcessingString);
+          final int marker =
+              LineClassifier.findMarker(leftTrimmedString, context.isAllowWhitespaces());
 
-          if (isHashPrefixed(leftTrimmedString, context)) {
+          if (isHashPrefixed(leftTrimmedString, marker, context)) {
             switch (processDirective(context, activeState,
-                this.extractHashPrefixedDirective(leftTrimmedString, context))) {
+                extractHashPrefixedDirective(leftTrimmedString, marker))) {
               case PROCESSED:
               case READ_NEXT_LINE:
               case SHOULD_BE_COMMENTED:
@@ -322,18 +366,22 @@ public class FileInfoContainer {
             new FilePositionInfo(lastIf.getFile(), lastIf.getNextStringIndex())}, null);
       }
 
+      if (stateInUse == null) {
+        this.cacheText(context, activeState.getRootTextContainer());
+      }
       return activeState.popAllExcludeIfInfoData();
     } finally {
       activeState.setGlobalPhase(false);
     }
   }
 
-  private boolean isHashPrefixed(final String line, final PreprocessorContext context) {
+  private boolean isHashPrefixed(final String line, final int marker,
+                                 final PreprocessorContext context) {
     final boolean allowedWhitespaces = context.isAllowWhitespaces();
-    final boolean result = isJcpDirectiveLine(line, allowedWhitespaces);
+    final boolean result = isJcpDirectiveLine(line, marker);
     if (!allowedWhitespaces) {
       if (context.getPreprocessingState().isGlobalPhase() && !result && line.startsWith("// ") &&
-          DIRECTIVE_HASH_PREFIXED.matcher(line).matches()) {
+          isJcpDirectiveLine(line, true)) {
         final TextFileDataContainer textContainer =
             context.getPreprocessingState().getCurrentIncludeFileContainer();
         String lineInfo = "<NONE>";
@@ -347,9 +395,8 @@ public class FileInfoContainer {
     return result;
   }
 
-  private String extractHashPrefixedDirective(final String line,
-                                              final PreprocessorContext context) {
-    if (context.isAllowWhitespaces()) {
+  static String extractHashPrefixedDirective(final String line, final int marker) {
+    if (marker == LineClassifier.USE_REGEX) {
       final Matcher matcher = DIRECTIVE_HASH_PREFIXED.matcher(line);
       if (matcher.find()) {
         return matcher.group(1);
@@ -358,16 +405,17 @@ public class FileInfoContainer {
             "Unexpected situation, directive is not found, contact developer! (" + line + ')');
       }
     } else {
-      return PreprocessorUtils.extractTail(AbstractDirectiveHandler.DIRECTIVE_PREFIX, line);
+      return line.substring(marker + 1);
     }
   }
 
   private String extractDoubleDollarPrefixedDirective(
       final String line,
+      final int marker,
       final boolean block,
       final PreprocessorContext context) {
     String tail;
-    if (context.isAllowWhitespaces()) {
+    if (marker == LineClassifier.USE_REGEX) {
       final Matcher matcher = block ? DIRECTIVE_TWO_DOLLARS_BLOCK_PREFIXED.matcher(line) :
           DIRECTIVE_TWO_DOLLARS_PREFIXED.matcher(line);
       if (matcher.find()) {
@@ -378,11 +426,7 @@ public class FileInfoContainer {
                 ')');
       }
     } else {
-      if (block) {
-        tail = PreprocessorUtils.extractTail("//$$\"\"\"", line);
-      } else {
-        tail = PreprocessorUtils.extractTail("//$$", line);
-      }
+      tail = line.substring(marker + (block ? 5 : 2));
     }
 
     if (context.isPreserveIndents()) {
@@ -392,10 +436,11 @@ public class FileInfoContainer {
   }
 
   private String extractSingleDollarPrefixedDirective(final String line,
+                                                      final int marker,
                                                       final boolean block,
                                                       final PreprocessorContext context) {
     String tail;
-    if (context.isAllowWhitespaces()) {
+    if (marker == LineClassifier.USE_REGEX) {
       final Matcher matcher = block ? DIRECTIVE_SINGLE_DOLLAR_BLOCK_PREFIXED.matcher(line) :
           DIRECTIVE_SINGLE_DOLLAR_PREFIXED.matcher(line);
       if (matcher.find()) {
@@ -406,11 +451,13 @@ public class FileInfoContainer {
                 ')');
       }
     } else {
+      final int prefixLength;
       if (block) {
-        tail = PreprocessorUtils.extractTail("//$\"\"\"", line);
+        prefixLength = context.isAllowWhitespaces() ? 2 : 4;
       } else {
-        tail = PreprocessorUtils.extractTail("//$", line);
+        prefixLength = 1;
       }
+      tail = line.substring(marker + prefixLength);
     }
 
     if (context.isPreserveIndents()) {
@@ -490,7 +537,11 @@ public class FileInfoContainer {
           text = results.stream().collect(Collectors.joining(context.getEol()));
         }
       }
-      resettablePrinter.print(text + (lastEol ? context.getEol() : ""));
+      if (lastEol) {
+        resettablePrinter.println(text, context.getEol());
+      } else {
+        resettablePrinter.print(text);
+      }
     }
   }
 
@@ -592,25 +643,15 @@ public class FileInfoContainer {
             }
           }
 
-          leftTrimmedString = PreprocessorUtils.leftTrim(rawString);
-
-          final String stringPrefix;
-          if (leftTrimmedString.isEmpty()) {
-            stringPrefix = rawString;
-          } else {
-            final int numberOfSpacesAtTheLineBeginning = rawString.indexOf(leftTrimmedString);
-
-            if (numberOfSpacesAtTheLineBeginning > 0) {
-              stringPrefix = rawString.substring(0, numberOfSpacesAtTheLineBeginning);
-            } else {
-              stringPrefix = "";
-            }
-          }
+          final DecodedLine decodedLine = state.decodeLastReadLine(context);
+          leftTrimmedString = decodedLine.getLeftTrimmed();
+          final String stringPrefix = decodedLine.getPrefix();
 
           String stringToBeProcessed = leftTrimmedString;
           final boolean doPrintEol = presentedNextLine || !context.isCareForLastEol();
+          final int marker = decodedLine.getMarker();
 
-          if (isHashPrefixed(stringToBeProcessed, context)) {
+          if (decodedLine.isDirective()) {
             this.flushTextBufferForRemovedComments(
                 context,
                 firstUncommentLine,
@@ -618,9 +659,10 @@ public class FileInfoContainer {
                 textPieces,
                 thePrinter);
             firstBlockLineIndex = null;
-            final String extractedDirective =
-                extractHashPrefixedDirective(stringToBeProcessed, context);
-            switch (this.processDirective(context, state, extractedDirective)) {
+            final String extractedDirective = decodedLine.getDirective();
+            switch (this.processDirective(context, state, extractedDirective,
+                decodedLine.getHandler(), decodedLine.getDirectiveTail(),
+                decodedLine.isDirectiveArgumentValid())) {
               case PROCESSED:
               case READ_NEXT_LINE: {
                 if (context.isKeepLines()) {
@@ -654,24 +696,27 @@ public class FileInfoContainer {
           if (state.isDirectiveCanBeProcessed() &&
               !state.getPreprocessingFlags()
                   .contains(PreprocessingFlag.TEXT_OUTPUT_DISABLED)) {
-            final boolean startsWithTwoDollars =
-                isDoubleDollarPrefixed(leftTrimmedString, context.isAllowWhitespaces());
+            final boolean startsWithTwoDollars = isDoubleDollarPrefixed(leftTrimmedString, marker);
 
             if (!startsWithTwoDollars) {
               stringToBeProcessed = PreprocessorUtils.processMacroses(leftTrimmedString, context);
             }
+            final int processedMarker = startsWithTwoDollars ? marker :
+                LineClassifier.findMarker(stringToBeProcessed, context.isAllowWhitespaces());
 
             if (startsWithTwoDollars) {
               // Output the tail of the string to the output stream without comments and macros
-              String text = extractDoubleDollarPrefixedDirective(leftTrimmedString, false, context);
+              String text =
+                  extractDoubleDollarPrefixedDirective(leftTrimmedString, marker, false, context);
               Map.Entry<String, String> indentText =
                   Map.entry(context.isPreserveIndents() ? stringPrefix : "", text);
               final boolean firstLineSet = firstUncommentLine.compareAndSet(null, indentText);
 
               if (context.isAllowsBlocks() &&
-                  isDoubleDollarBlockPrefixed(leftTrimmedString, context.isAllowWhitespaces())) {
+                  isDoubleDollarBlockPrefixed(leftTrimmedString, marker,
+                      context.isAllowWhitespaces())) {
                 text =
-                    extractDoubleDollarPrefixedDirective(leftTrimmedString, true, context);
+                    extractDoubleDollarPrefixedDirective(leftTrimmedString, marker, true, context);
                 indentText = Map.entry(context.isPreserveIndents() ? stringPrefix : "", text);
 
                 if (firstLineSet) {
@@ -705,18 +750,19 @@ public class FileInfoContainer {
                     thePrinter);
                 firstBlockLineIndex = null;
               }
-            } else if (isSingleDollarPrefixed(stringToBeProcessed, context.isAllowWhitespaces())) {
+            } else if (isSingleDollarPrefixed(stringToBeProcessed, processedMarker)) {
               // Output the tail of the string to the output stream without comments
-              String text =
-                  extractSingleDollarPrefixedDirective(stringToBeProcessed, false, context);
+              String text = extractSingleDollarPrefixedDirective(stringToBeProcessed,
+                  processedMarker, false, context);
               Map.Entry<String, String> indentText =
                   Map.entry(context.isPreserveIndents() ? stringPrefix : "", text);
               final boolean firstLineSet = firstUncommentLine.compareAndSet(null, indentText);
 
               if (context.isAllowsBlocks() &&
-                  isDollarBlockPrefixed(stringToBeProcessed, context.isAllowWhitespaces())) {
-                text =
-                    extractSingleDollarPrefixedDirective(stringToBeProcessed, true, context);
+                  isDollarBlockPrefixed(stringToBeProcessed, processedMarker,
+                      context.isAllowWhitespaces())) {
+                text = extractSingleDollarPrefixedDirective(stringToBeProcessed, processedMarker,
+                    true, context);
                 indentText = Map.entry(context.isPreserveIndents() ? stringPrefix : "", text);
 
                 if (firstLineSet) {
@@ -854,8 +900,8 @@ public class FileInfoContainer {
     return state;
   }
 
-  private boolean checkDirectiveArgumentRoughly(final AbstractDirectiveHandler directive,
-                                                final String rest) {
+  static boolean checkDirectiveArgumentRoughly(final AbstractDirectiveHandler directive,
+                                               final String rest) {
     final DirectiveArgumentType argument = directive.getArgumentType();
 
     boolean result;
@@ -896,39 +942,104 @@ public class FileInfoContainer {
       final PreprocessorContext context,
       final PreprocessingState stateInUse,
       final String directiveString) {
+    final AbstractDirectiveHandler handler =
+        context.getDirectiveHandlerIndex().find(directiveString);
+    if (handler == null) {
+      return this.processDirective(context, stateInUse, directiveString, null, null, false);
+    }
+    final String restOfString = PreprocessorUtils.extractTail(handler.getName(), directiveString);
+    return this.processDirective(context, stateInUse, directiveString, handler, restOfString,
+        checkDirectiveArgumentRoughly(handler, restOfString));
+  }
+
+  private AfterDirectiveProcessingBehaviour processDirective(
+      final PreprocessorContext context,
+      final PreprocessingState stateInUse,
+      final String directiveString,
+      final AbstractDirectiveHandler handler,
+      final String restOfString,
+      final boolean argumentValid) {
     final boolean executionEnabled = stateInUse.isDirectiveCanBeProcessed();
     final boolean firstPass = stateInUse.isGlobalPhase();
 
-    for (final AbstractDirectiveHandler handler : context.getDirectiveHandlers()) {
-      final String name = handler.getName();
-      if (directiveString.startsWith(name)) {
-        if ((firstPass && !handler.isGlobalPhaseAllowed()) ||
-            (!firstPass && !handler.isPreprocessingPhaseAllowed())) {
-          return AfterDirectiveProcessingBehaviour.READ_NEXT_LINE;
-        }
+    if (handler == null) {
+      throw context.makeException("Unknown preprocessor directive [" + directiveString + ']',
+          null);
+    }
 
-        final boolean allowedForExecution =
-            executionEnabled || !handler.executeOnlyWhenExecutionAllowed();
+    if (firstPass && handler.isGlobalStateMutator()) {
+      this.globalStateMutator = true;
+    }
+    if ((firstPass && !handler.isGlobalPhaseAllowed()) ||
+        (!firstPass && !handler.isPreprocessingPhaseAllowed())) {
+      return AfterDirectiveProcessingBehaviour.READ_NEXT_LINE;
+    }
 
-        final String restOfString = PreprocessorUtils.extractTail(name, directiveString);
-        if (checkDirectiveArgumentRoughly(handler, restOfString)) {
-          if (allowedForExecution) {
-            return handler.execute(restOfString, context);
-          } else {
-            return context.isKeepLines() ? AfterDirectiveProcessingBehaviour.SHOULD_BE_COMMENTED :
-                AfterDirectiveProcessingBehaviour.PROCESSED;
-          }
-        } else {
-          throw context.makeException(
-              "Detected bad argument for " + AbstractDirectiveHandler.DIRECTIVE_PREFIX +
-                  handler.getName(), null);
-        }
+    final boolean allowedForExecution =
+        executionEnabled || !handler.executeOnlyWhenExecutionAllowed();
+
+    if (argumentValid) {
+      if (allowedForExecution) {
+        return handler.execute(restOfString, context);
+      } else {
+        return context.isKeepLines() ? AfterDirectiveProcessingBehaviour.SHOULD_BE_COMMENTED :
+            AfterDirectiveProcessingBehaviour.PROCESSED;
       }
+    } else {
+      throw context.makeException(
+          "Detected bad argument for " + AbstractDirectiveHandler.DIRECTIVE_PREFIX +
+              handler.getName(), null);
     }
-    throw context.makeException("Unknown preprocessor directive [" + directiveString + ']', null);
   }
 
   public void setExcluded(final boolean flag) {
     excludedFromPreprocessing = flag;
   }
+
+  /**
+   * Keep text of the source file read during the global phase to be reused by the preprocessing phase.
+   * The text is not kept if the text cache limit of the context is reached.
+   *
+   * @param context the context which limits the text cache, must not be null
+   * @param text    the read text of the source file, can be null
+   * @see PreprocessorContext#getTextCacheLimit()
+   * @since 7.3.1
+   */
+  public synchronized void cacheText(final PreprocessorContext context,
+                                     final TextFileDataContainer text) {
+    this.dropCachedText(context);
+    if (text != null && !this.excludedFromPreprocessing
+        && context.reserveCachedText(text.getTextLength())) {
+      this.cachedText = text;
+    }
+  }
+
+  /**
+   * Take the cached text of the source file, the cache is cleared.
+   *
+   * @param context the context which limits the text cache, must not be null
+   * @return text container positioned to the first line or null if there is no cached text
+   * @since 7.3.1
+   */
+  public synchronized TextFileDataContainer takeCachedText(final PreprocessorContext context) {
+    final TextFileDataContainer result = this.cachedText;
+    if (result == null) {
+      return null;
+    }
+    this.dropCachedText(context);
+    return new TextFileDataContainer(result, 0);
+  }
+
+  /**
+   * Drop the cached text of the source file and release its space in the text cache.
+   *
+   * @param context the context which limits the text cache, must not be null
+   * @since 7.3.1
+   */
+  public synchronized void dropCachedText(final PreprocessorContext context) {
+    if (this.cachedText != null) {
+      context.releaseCachedText(this.cachedText.getTextLength());
+      this.cachedText = null;
+    }
+  }
 }
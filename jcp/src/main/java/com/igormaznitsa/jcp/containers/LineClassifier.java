@@ -0,0 +1,98 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.igormaznitsa.jcp.containers;
+
+/**
+ * Hand-written classifier of source lines, it finds position of JCP marker chars (like {@code #} or {@code $})
+ * after line comment prefix in one pass without regular expressions.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+final class LineClassifier {
+
+  /**
+   * The line is not started by line comment.
+   */
+  static final int NOT_COMMENT = -1;
+  /**
+   * The line contains line terminator chars and must be processed by regular expressions.
+   */
+  static final int USE_REGEX = -2;
+
+  private LineClassifier() {
+  }
+
+  private static boolean isRegexWhitespace(final char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+  }
+
+  private static boolean isLineTerminator(final char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  /**
+   * Find position of the first char after line comment prefix.
+   *
+   * @param line               text line, must not be null
+   * @param allowedWhitespaces if true then whitespaces are allowed before and after line comment prefix
+   * @return position of the first char after comment and whitespaces, {@link #NOT_COMMENT} if the line is not comment line,
+   * {@link #USE_REGEX} if the line can't be classified without regular expressions
+   */
+  static int findMarker(final String line, final boolean allowedWhitespaces) {
+    if (!allowedWhitespaces) {
+      return line.startsWith("//") ? 2 : NOT_COMMENT;
+    }
+
+    final int length = line.length();
+    int index = 0;
+    while (index < length && isRegexWhitespace(line.charAt(index))) {
+      index++;
+    }
+    if (!line.startsWith("//", index)) {
+      return NOT_COMMENT;
+    }
+    index += 2;
+    while (index < length && isRegexWhitespace(line.charAt(index))) {
+      index++;
+    }
+    for (int i = index; i < length; i++) {
+      if (isLineTerminator(line.charAt(i))) {
+        return USE_REGEX;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Check that a marker found in line starts with prefix.
+   *
+   * @param line   text line, must not be null
+   * @param marker position returned by {@link #findMarker(String, boolean)}
+   * @param prefix expected prefix, must not be null
+   * @return true if the marker position is valid and starts with the prefix
+   */
+  static boolean isMarker(final String line, final int marker, final String prefix) {
+    return marker >= 0 && line.startsWith(prefix, marker);
+  }
+}
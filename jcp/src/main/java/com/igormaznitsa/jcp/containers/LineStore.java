@@ -0,0 +1,252 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.containers;
+
+import static java.util.Objects.requireNonNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact store of text lines. All chars of a text are kept in one array together with bounds of lines,
+ * if all chars of the text are in the Latin-1 range then they are kept as bytes. Strings of lines are made
+ * only on request.
+ * <p>
+ * Lines are split by {@code \n} and {@code \r\n}, a single {@code \r} is a part of a line. The last line is
+ * not added if it is empty.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+public final class LineStore {
+
+  private static final int[] NO_BOUNDS = new int[0];
+
+  private final byte[] latin1;
+  private final char[] chars;
+  private final int[] bounds;
+  private final int size;
+  private final long textLength;
+  private final boolean endedByNextLine;
+
+  private LineStore(final byte[] latin1, final char[] chars, final int[] bounds,
+                    final int size, final boolean endedByNextLine) {
+    this.latin1 = latin1;
+    this.chars = chars;
+    this.bounds = bounds.length == size * 2 ? bounds : Arrays.copyOf(bounds, size * 2);
+    this.size = size;
+    long length = 0L;
+    for (int i = 0; i < size; i++) {
+      length += bounds[i * 2 + 1] - bounds[i * 2];
+    }
+    this.textLength = length;
+    this.endedByNextLine = endedByNextLine;
+  }
+
+  private static LineStore make(final char[] content, final int contentLength, final int[] bounds,
+                                final int size, final boolean endedByNextLine) {
+    boolean latin1Only = true;
+    for (int i = 0; i < contentLength && latin1Only; i++) {
+      latin1Only = content[i] <= 0xFF;
+    }
+    if (latin1Only) {
+      final byte[] latin1 = new byte[contentLength];
+      for (int i = 0; i < contentLength; i++) {
+        latin1[i] = (byte) content[i];
+      }
+      return new LineStore(latin1, null, bounds, size, endedByNextLine);
+    } else {
+      return new LineStore(null,
+          content.length == contentLength ? content : Arrays.copyOf(content, contentLength),
+          bounds, size, endedByNextLine);
+    }
+  }
+
+  private static int[] addLine(final int[] bounds, final int size, final int start,
+                               final int end) {
+    final int[] result = bounds.length == size * 2 ?
+        Arrays.copyOf(bounds, Math.max(64, bounds.length * 2)) : bounds;
+    result[size * 2] = start;
+    result[size * 2 + 1] = end;
+    return result;
+  }
+
+  /**
+   * Split text into lines.
+   *
+   * @param content buffer contains the text, must not be null and can be kept by the store
+   * @param length  number of chars of the text in the buffer
+   * @return store of lines of the text, must not be null
+   */
+  public static LineStore split(final char[] content, final int length) {
+    requireNonNull(content, "Content is null");
+    int[] bounds = NO_BOUNDS;
+    int size = 0;
+    int lineStart = 0;
+    for (int i = 0; i < length; i++) {
+      if (content[i] == '\n') {
+        bounds = addLine(bounds, size++, lineStart,
+            i > lineStart && content[i - 1] == '\r' ? i - 1 : i);
+        lineStart = i + 1;
+      }
+    }
+    final int lastLineEnd =
+        length > lineStart && content[length - 1] == '\r' ? length - 1 : length;
+    if (lastLineEnd > lineStart) {
+      bounds = addLine(bounds, size++, lineStart, lastLineEnd);
+    }
+    return make(content, length, bounds, size, length > 0 && content[length - 1] == '\n');
+  }
+
+  /**
+   * Split Latin-1 text into lines without decoding.
+   *
+   * @param latin1 buffer contains the text as Latin-1 bytes, must not be null and can be kept by the store
+   * @param length number of bytes of the text in the buffer
+   * @return store of lines of the text, must not be null
+   * @see #split(char[], int)
+   */
+  public static LineStore splitLatin1(final byte[] latin1, final int length) {
+    requireNonNull(latin1, "Content is null");
+    int[] bounds = NO_BOUNDS;
+    int size = 0;
+    int lineStart = 0;
+    for (int i = 0; i < length; i++) {
+      if (latin1[i] == '\n') {
+        bounds = addLine(bounds, size++, lineStart,
+            i > lineStart && latin1[i - 1] == '\r' ? i - 1 : i);
+        lineStart = i + 1;
+      }
+    }
+    final int lastLineEnd =
+        length > lineStart && latin1[length - 1] == '\r' ? length - 1 : length;
+    if (lastLineEnd > lineStart) {
+      bounds = addLine(bounds, size++, lineStart, lastLineEnd);
+    }
+    return new LineStore(latin1.length == length ? latin1 : Arrays.copyOf(latin1, length), null,
+        bounds, size, length > 0 && latin1[length - 1] == '\n');
+  }
+
+  /**
+   * Make store for already split lines.
+   *
+   * @param lines           text lines, must not be null
+   * @param endedByNextLine true if the text is ended by next line char
+   * @return store of the lines, must not be null
+   */
+  public static LineStore of(final String[] lines, final boolean endedByNextLine) {
+    requireNonNull(lines, "Lines are null");
+    int length = 0;
+    for (final String line : lines) {
+      length += requireNonNull(line, "Line is null").length();
+    }
+    final char[] content = new char[length];
+    final int[] bounds = new int[lines.length * 2];
+    int position = 0;
+    for (int i = 0; i < lines.length; i++) {
+      final String line = lines[i];
+      line.getChars(0, line.length(), content, position);
+      bounds[i * 2] = position;
+      position += line.length();
+      bounds[i * 2 + 1] = position;
+    }
+    return make(content, length, bounds, lines.length, endedByNextLine);
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  public boolean isEndedByNextLine() {
+    return this.endedByNextLine;
+  }
+
+  /**
+   * Get number of chars in all lines.
+   *
+   * @return number of chars in lines without line separators
+   */
+  public long getTextLength() {
+    return this.textLength;
+  }
+
+  /**
+   * Make string of a line.
+   *
+   * @param index index of the line
+   * @return the line text, must not be null
+   * @throws IndexOutOfBoundsException if there is no such line
+   */
+  public String getLine(final int index) {
+    final int start = this.findStart(index);
+    final int length = this.bounds[index * 2 + 1] - start;
+    return this.latin1 == null ? new String(this.chars, start, length) :
+        new String(this.latin1, start, length, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Check that a line contains a char, without making string of the line.
+   *
+   * @param index index of the line
+   * @param chr   char to be found
+   * @return true if the line contains the char
+   * @throws IndexOutOfBoundsException if there is no such line
+   */
+  public boolean contains(final int index, final char chr) {
+    final int end = this.bounds[index * 2 + 1];
+    if (this.latin1 == null) {
+      for (int i = this.findStart(index); i < end; i++) {
+        if (this.chars[i] == chr) {
+          return true;
+        }
+      }
+    } else if (chr <= 0xFF) {
+      final byte value = (byte) chr;
+      for (int i = this.findStart(index); i < end; i++) {
+        if (this.latin1[i] == value) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Make strings for all lines.
+   *
+   * @return array of lines, must not be null
+   */
+  public String[] toArray() {
+    final String[] result = new String[this.size];
+    for (int i = 0; i < this.size; i++) {
+      result[i] = this.getLine(i);
+    }
+    return result;
+  }
+
+  private int findStart(final int index) {
+    if (index < 0 || index >= this.size) {
+      throw new IndexOutOfBoundsException("Line index out of bound [" + index + ']');
+    }
+    return this.bounds[index * 2];
+  }
+}
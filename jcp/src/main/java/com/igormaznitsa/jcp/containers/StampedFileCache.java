@@ -0,0 +1,216 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.containers;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded thread-safe cache of values made from files, keyed by file path and variant of the value. A cached
+ * value is returned only if modification time and size of the file are the same as during its load. The size
+ * of the cache is limited by number of chars in cached values, the least recently used values are removed first.
+ *
+ * @param <V> type of cached values
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+public final class StampedFileCache<V> {
+
+  private final long limit;
+  private final ToLongFunction<V> charCounter;
+  private final Map<Key, Entry<V>> cache = new LinkedHashMap<>(16, 0.75f, true);
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private long cachedChars;
+
+  /**
+   * Constructor.
+   *
+   * @param limit       max number of chars in cached values, zero disables the cache
+   * @param charCounter counter of chars in a value, must not be null
+   */
+  public StampedFileCache(final long limit, final ToLongFunction<V> charCounter) {
+    if (limit < 0L) {
+      throw new IllegalArgumentException("Limit must not be negative: " + limit);
+    }
+    this.limit = limit;
+    this.charCounter = requireNonNull(charCounter, "Char counter is null");
+  }
+
+  /**
+   * Find cached value made from a file or load the value and place it into the cache.
+   *
+   * @param path    path of the file, used as key and to check the file stamp, must not be null
+   * @param variant variant of the value, values of different variants are cached separately, must not be null
+   * @param loader  loader of the value, must not be null
+   * @return the value, must not be null
+   * @throws IOException if the file can't be read
+   */
+  public V findOrLoad(final Path path, final Object variant, final Loader<V> loader)
+      throws IOException {
+    requireNonNull(path, "Path is null");
+    requireNonNull(variant, "Variant is null");
+    requireNonNull(loader, "Loader is null");
+    if (this.limit == 0L) {
+      return loader.load();
+    }
+
+    final Key key = new Key(path, variant);
+    final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    final long modified = attributes.lastModifiedTime().toMillis();
+    final long size = attributes.size();
+
+    final Entry<V> found;
+    synchronized (this.cache) {
+      found = this.cache.get(key);
+    }
+    if (found != null && found.modified == modified && found.size == size) {
+      this.hits.incrementAndGet();
+      return found.value;
+    }
+
+    this.misses.incrementAndGet();
+    final V value = loader.load();
+    final long chars = this.charCounter.applyAsLong(value);
+    if (chars <= this.limit) {
+      synchronized (this.cache) {
+        final Entry<V> replaced = this.cache.put(key, new Entry<>(modified, size, chars, value));
+        if (replaced != null) {
+          this.cachedChars -= replaced.chars;
+        }
+        this.cachedChars += chars;
+        final Iterator<Entry<V>> iterator = this.cache.values().iterator();
+        while (this.cachedChars > this.limit && iterator.hasNext()) {
+          this.cachedChars -= iterator.next().chars;
+          iterator.remove();
+        }
+      }
+    }
+    return value;
+  }
+
+  public long getLimit() {
+    return this.limit;
+  }
+
+  public int size() {
+    synchronized (this.cache) {
+      return this.cache.size();
+    }
+  }
+
+  public long getCachedChars() {
+    synchronized (this.cache) {
+      return this.cachedChars;
+    }
+  }
+
+  public long getHits() {
+    return this.hits.get();
+  }
+
+  public long getMisses() {
+    return this.misses.get();
+  }
+
+  public void clear() {
+    synchronized (this.cache) {
+      this.cache.clear();
+      this.cachedChars = 0L;
+    }
+    this.hits.set(0L);
+    this.misses.set(0L);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("(size=%d, chars=%d, limit=%d, hits=%d, misses=%d)",
+        this.size(), this.getCachedChars(), this.limit, this.getHits(), this.getMisses());
+  }
+
+  /**
+   * Loader of a value from a file.
+   *
+   * @param <V> type of loaded value
+   */
+  @FunctionalInterface
+  public interface Loader<V> {
+    /**
+     * Load value.
+     *
+     * @return loaded value, must not be null
+     * @throws IOException if the file can't be read
+     */
+    V load() throws IOException;
+  }
+
+  private static final class Key {
+    private final Path path;
+    private final Object variant;
+
+    private Key(final Path path, final Object variant) {
+      this.path = path;
+      this.variant = variant;
+    }
+
+    @Override
+    public boolean equals(final Object that) {
+      if (this == that) {
+        return true;
+      }
+      if (that instanceof Key) {
+        final Key thatKey = (Key) that;
+        return this.path.equals(thatKey.path) && this.variant.equals(thatKey.variant);
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.path, this.variant);
+    }
+  }
+
+  private static final class Entry<V> {
+    private final long modified;
+    private final long size;
+    private final long chars;
+    private final V value;
+
+    private Entry(final long modified, final long size, final long chars, final V value) {
+      this.modified = modified;
+      this.size = size;
+      this.chars = chars;
+      this.value = value;
+    }
+  }
+}
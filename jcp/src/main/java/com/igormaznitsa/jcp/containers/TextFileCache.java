@@ -0,0 +1,106 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.containers;
+
+import static java.util.Objects.requireNonNull;
+
+import com.igormaznitsa.jcp.utils.PreprocessorUtils;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bounded thread-safe cache of texts of files keyed by canonical file path and charset. A cached text is
+ * returned only if modification time and size of the file are the same as during its read. Cached line stores
+ * are immutable and shared between text containers. The size of the cache is limited by number of chars in
+ * cached texts, the least recently used texts are removed first.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @see StampedFileCache
+ * @since 7.3.1
+ */
+public final class TextFileCache {
+
+  /**
+   * Default limit of chars in cached texts, can be changed by system property {@code jcp.include.cache.limit}.
+   */
+  public static final long DEFAULT_LIMIT =
+      Long.getLong("jcp.include.cache.limit", 8L * 1024L * 1024L);
+
+  private final StampedFileCache<LineStore> cache;
+
+  public TextFileCache() {
+    this(DEFAULT_LIMIT);
+  }
+
+  public TextFileCache(final long limit) {
+    this.cache = new StampedFileCache<>(limit, LineStore::getTextLength);
+  }
+
+  /**
+   * Find cached text of a file or read the file and place its text into the cache.
+   *
+   * @param file    the file to be read, must not be null
+   * @param charset the file encoding, if null then UTF-8 is used
+   * @return lines of the file, must not be null
+   * @throws IOException if the file can't be read
+   */
+  public LineStore findOrRead(final File file, final Charset charset) throws IOException {
+    requireNonNull(file, "File is null");
+    if (this.cache.getLimit() == 0L) {
+      return PreprocessorUtils.readWholeTextFileIntoLineStore(file, charset);
+    }
+    final Charset encoding = charset == null ? StandardCharsets.UTF_8 : charset;
+    return this.cache.findOrLoad(file.getCanonicalFile().toPath(), encoding,
+        () -> PreprocessorUtils.readWholeTextFileIntoLineStore(file, encoding));
+  }
+
+  public long getLimit() {
+    return this.cache.getLimit();
+  }
+
+  public int size() {
+    return this.cache.size();
+  }
+
+  public long getCachedChars() {
+    return this.cache.getCachedChars();
+  }
+
+  public long getHits() {
+    return this.cache.getHits();
+  }
+
+  public long getMisses() {
+    return this.cache.getMisses();
+  }
+
+  public void clear() {
+    this.cache.clear();
+  }
+
+  @Override
+  public String toString() {
+    return this.getClass().getSimpleName() + this.cache;
+  }
+}
@@ -21,6 +21,8 @@
 
 package com.igormaznitsa.jcp.containers;
 
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.directives.DirectiveHandlerIndex;
 import java.io.File;
 import java.util.Objects;
 
@@ -31,7 +33,7 @@ import java.util.Objects;
  */
 public final class TextFileDataContainer {
 
-  private final String[] text;
+  private final LineStore text;
   private final boolean fileEndedByNextLine;
   private final File file;
 
@@ -40,13 +42,41 @@ public final class TextFileDataContainer {
    */
   private boolean autoFlush = true;
   private int nextStringIndex;
+  private String lastReadLine;
+  private BlockIndex blockIndex;
+  private DecodedLine[] decodedLines;
+  private boolean decodedLinesAllowWhitespaces;
+  private DirectiveHandlerIndex decodedLinesHandlerIndex;
 
   public TextFileDataContainer(final TextFileDataContainer item, final int stringIndex) {
     this(item.file, item.text, item.fileEndedByNextLine, stringIndex);
+    this.blockIndex = item.blockIndex;
+    this.decodedLines = item.decodedLines;
+    this.decodedLinesAllowWhitespaces = item.decodedLinesAllowWhitespaces;
+    this.decodedLinesHandlerIndex = item.decodedLinesHandlerIndex;
   }
 
   public TextFileDataContainer(final File currentFile, final String[] text,
                                final boolean fileEndedByNextLine, final int stringIndex) {
+    this(currentFile, LineStore.of(Objects.requireNonNull(text, "Text is null"),
+        fileEndedByNextLine), fileEndedByNextLine, stringIndex);
+  }
+
+  /**
+   * Make container for text kept in line store.
+   *
+   * @param currentFile the file of the text, must not be null
+   * @param text        lines of the text, must not be null
+   * @param stringIndex index of the next line to be read
+   * @since 7.3.1
+   */
+  public TextFileDataContainer(final File currentFile, final LineStore text,
+                               final int stringIndex) {
+    this(currentFile, text, text.isEndedByNextLine(), stringIndex);
+  }
+
+  private TextFileDataContainer(final File currentFile, final LineStore text,
+                                final boolean fileEndedByNextLine, final int stringIndex) {
     Objects.requireNonNull(currentFile, "File is null");
     Objects.requireNonNull(text, "Text is null");
     this.file = currentFile;
@@ -65,9 +95,76 @@ public final class TextFileDataContainer {
 
 
   public String[] getText() {
-    return this.text.clone();
+    return this.text.toArray();
+  }
+
+
+  /**
+   * Get number of chars in all lines of the text.
+   *
+   * @return number of chars in the text without line separators
+   * @since 7.3.1
+   */
+  public long getTextLength() {
+    return this.text.getTextLength();
   }
 
+  /**
+   * Get index of block structure of the text, it is built during the first call.
+   *
+   * @param context the preprocessor context to build the index, must not be null
+   * @return the block index for the text and the context, must not be null
+   * @since 7.3.1
+   */
+  public BlockIndex findBlockIndex(final PreprocessorContext context) {
+    BlockIndex result = this.blockIndex;
+    if (result == null || !result.isCompatible(context)) {
+      result = BlockIndex.build(this.text, context);
+      this.blockIndex = result;
+    }
+    return result;
+  }
+
+  /**
+   * Get decoded form of a text line. Decoded lines can be kept to be reused if the line is processed
+   * again, the store of decoded lines is allocated during the first request to keep a line.
+   *
+   * @param lineIndex index of the line
+   * @param context   the preprocessor context which defines directive format and handlers, must not be null
+   * @param keep      true if the decoded line should be kept for next requests
+   * @return decoded line, must not be null
+   * @since 7.3.1
+   */
+  public DecodedLine findDecodedLine(final int lineIndex, final PreprocessorContext context,
+                                     final boolean keep) {
+    final boolean allowWhitespaces = context.isAllowWhitespaces();
+    final DirectiveHandlerIndex handlerIndex = context.getDirectiveHandlerIndex();
+
+    DecodedLine[] lines = this.decodedLines;
+    if (lines != null && (this.decodedLinesAllowWhitespaces != allowWhitespaces
+        || !this.decodedLinesHandlerIndex.hasSameHandlers(handlerIndex))) {
+      lines = null;
+      this.decodedLines = null;
+    }
+
+    DecodedLine result = lines == null ? null : lines[lineIndex];
+    if (result == null) {
+      final String line =
+          lineIndex == this.getLastReadStringIndex() && this.lastReadLine != null ?
+              this.lastReadLine : this.text.getLine(lineIndex);
+      result = DecodedLine.decode(line, allowWhitespaces, handlerIndex);
+      if (keep) {
+        if (lines == null) {
+          lines = new DecodedLine[this.text.size()];
+          this.decodedLinesAllowWhitespaces = allowWhitespaces;
+          this.decodedLinesHandlerIndex = handlerIndex;
+          this.decodedLines = lines;
+        }
+        lines[lineIndex] = result;
+      }
+    }
+    return result;
+  }
 
   public File getFile() {
     return this.file;
@@ -78,15 +175,21 @@ public final class TextFileDataContainer {
   }
 
   public boolean isPresentedNextLineOnReadString() {
-    return this.nextStringIndex < this.text.length || fileEndedByNextLine;
+    return this.nextStringIndex < this.text.size() || fileEndedByNextLine;
   }
 
 
   public String nextLine() {
-    if (this.nextStringIndex >= this.text.length) {
+    if (this.nextStringIndex >= this.text.size()) {
+      this.lastReadLine = null;
       return null;
     } else {
-      return this.text[this.nextStringIndex++];
+      final int index = this.nextStringIndex++;
+      final DecodedLine[] decoded = this.decodedLines;
+      final DecodedLine decodedLine = decoded == null ? null : decoded[index];
+      this.lastReadLine =
+          decodedLine == null ? this.text.getLine(index) : decodedLine.getLine();
+      return this.lastReadLine;
     }
   }
 
@@ -99,7 +202,7 @@ public final class TextFileDataContainer {
   }
 
   public void setNextStringIndex(final int index) {
-    if (index < 0 || index >= text.length) {
+    if (index < 0 || index >= this.text.size()) {
       throw new IndexOutOfBoundsException("String index out of bound [" + index + ']');
     }
     this.nextStringIndex = index;
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.context;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+
+import com.igormaznitsa.jcp.expression.Value;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Recorder of dependencies of a preprocessing file, it collects global variables read by the file
+ * (together with their values at the moment of the first read) and global variables changed by the file.
+ * A file is marked as volatile if its result can't be reproduced only by its inputs and global variables,
+ * for instance if it uses current time or calls preprocessor extensions.
+ * A recorder can have a parent recorder, reads of variables not changed by the child and volatility
+ * are passed to the parent, so that a cloned context reports its real reads to the context it was cloned from.
+ * An instance is not thread safe and should be used with only one context.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+public final class DependencyRecorder {
+
+  private static final Set<String> STABLE_SPECIAL_VARIABLES;
+
+  static {
+    final Set<String> stable =
+        new HashSet<>(new JCPSpecialVariableProcessor().getVariableNames());
+    stable.remove(JCPSpecialVariableProcessor.VAR_TIME);
+    stable.remove(JCPSpecialVariableProcessor.VAR_DATE);
+    STABLE_SPECIAL_VARIABLES = stable;
+  }
+
+  private final Map<String, Value> readVariables = new LinkedHashMap<>();
+  private final Map<String, Value> writtenVariables = new LinkedHashMap<>();
+  private final List<Map.Entry<String, Value>> writeLog = new ArrayList<>();
+  private final DependencyRecorder parent;
+  private boolean volatileResult;
+  private boolean specialVariableWrites;
+
+  public DependencyRecorder() {
+    this(null);
+  }
+
+  /**
+   * Make recorder which passes reads and volatility to a parent recorder.
+   *
+   * @param parent parent recorder, can be null
+   */
+  public DependencyRecorder(final DependencyRecorder parent) {
+    this.parent = parent;
+  }
+
+  /**
+   * Register read of a variable.
+   *
+   * @param normalizedName normalized name of the variable, must not be null
+   * @param special        true if the name belongs to a special variable
+   * @param globalValue    current value of global variable, can be null if not defined
+   */
+  void registerRead(final String normalizedName, final boolean special, final Value globalValue) {
+    if (this.parent != null && !this.writtenVariables.containsKey(normalizedName)) {
+      this.parent.registerRead(normalizedName, special, globalValue);
+    }
+    if (special) {
+      if (!STABLE_SPECIAL_VARIABLES.contains(normalizedName)) {
+        this.volatileResult = true;
+      }
+    } else if (!this.readVariables.containsKey(normalizedName)
+        && !this.writtenVariables.containsKey(normalizedName)) {
+      this.readVariables.put(normalizedName, globalValue);
+    }
+  }
+
+  /**
+   * Register write of a global variable.
+   *
+   * @param normalizedName normalized name of the variable, must not be null
+   * @param value          new value, null if the variable has been removed
+   */
+  void registerWrite(final String normalizedName, final Value value) {
+    this.writtenVariables.put(normalizedName, value);
+    this.writeLog.add(new AbstractMap.SimpleImmutableEntry<>(normalizedName, value));
+  }
+
+  /**
+   * Register write of a special variable, it is passed to the parent recorder.
+   *
+   * @param normalizedName normalized name of the special variable, must not be null
+   */
+  void registerSpecialVariableWrite(final String normalizedName) {
+    this.specialVariableWrites = true;
+    if (this.parent != null) {
+      this.parent.registerSpecialVariableWrite(normalizedName);
+    }
+  }
+
+  /**
+   * Check that the recorded file (or its clones) has written special variables.
+   *
+   * @return true if there was any write of special variables
+   */
+  public boolean hasSpecialVariableWrites() {
+    return this.specialVariableWrites;
+  }
+
+  /**
+   * Mark the recorded file as one which result can't be reproduced.
+   */
+  public void markVolatile() {
+    this.volatileResult = true;
+    if (this.parent != null) {
+      this.parent.markVolatile();
+    }
+  }
+
+  /**
+   * Check that the recorded file result can't be reproduced by its inputs.
+   *
+   * @return true if the file must be preprocessed during every start
+   */
+  public boolean isVolatile() {
+    return this.volatileResult;
+  }
+
+  /**
+   * Get read global variables with their values at the moment of the first read.
+   *
+   * @return map of variable names and values, null value means undefined variable
+   */
+  public Map<String, Value> getReadVariables() {
+    return unmodifiableMap(this.readVariables);
+  }
+
+  /**
+   * Get all changes of global variables in their order.
+   *
+   * @return list of variable names and values, null value means removed variable
+   */
+  public List<Map.Entry<String, Value>> getWrittenVariables() {
+    return unmodifiableList(this.writeLog);
+  }
+}
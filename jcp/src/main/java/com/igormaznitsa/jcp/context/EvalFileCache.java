@@ -0,0 +1,296 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.context;
+
+import static java.util.Objects.requireNonNull;
+
+import com.igormaznitsa.jcp.expression.Value;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded thread-safe cache of results of the evalfile function keyed by normalized path of evaluated file.
+ * A cached result is reused only if modification time and size of the evaluated file and files included by it
+ * are the same and variables read during evaluation have the same local and global values in the calling
+ * context. Results which can't be reproduced by their inputs (for instance, if they use current time or
+ * preprocessor extensions) are not cached. Several results with different variable values can be kept for
+ * a file, the number of cached files is limited and the least recently used ones are removed first.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+public final class EvalFileCache {
+
+  /**
+   * Default limit of cached files, can be changed by system property {@code jcp.evalfile.cache.limit}.
+   */
+  public static final int DEFAULT_LIMIT = Integer.getInteger("jcp.evalfile.cache.limit", 256);
+
+  private static final int MAX_RESULTS_PER_FILE = 4;
+
+  private final int limit;
+  private final Map<Path, LinkedList<Entry>> cache = new LinkedHashMap<>(16, 0.75f, true);
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  public EvalFileCache() {
+    this(DEFAULT_LIMIT);
+  }
+
+  public EvalFileCache(final int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Limit must not be negative: " + limit);
+    }
+    this.limit = limit;
+  }
+
+  private static Path makeKey(final File file) {
+    return file.toPath().toAbsolutePath().normalize();
+  }
+
+  /**
+   * Find cached result of evaluation of a file for variables of a calling context. If a result is found then
+   * read of its variables is registered in dependency recorder of the context.
+   *
+   * @param file    the evaluated file, must not be null
+   * @param context the calling context, must not be null
+   * @return found result or empty if there is no valid cached result
+   */
+  public Optional<Result> find(final File file, final PreprocessorContext context) {
+    requireNonNull(file, "File is null");
+    requireNonNull(context, "Context is null");
+    if (this.limit == 0) {
+      return Optional.empty();
+    }
+
+    final Entry[] entries;
+    synchronized (this.cache) {
+      final LinkedList<Entry> found = this.cache.get(makeKey(file));
+      entries = found == null ? new Entry[0] : found.toArray(new Entry[0]);
+    }
+
+    for (final Entry entry : entries) {
+      if (entry.isValid(context)) {
+        this.hits.incrementAndGet();
+        final DependencyRecorder recorder = context.getDependencyRecorder();
+        if (recorder != null) {
+          for (int i = 0; i < entry.variables.length; i++) {
+            recorder.registerRead(entry.variables[i], false, entry.globalValues[i]);
+          }
+        }
+        return Optional.of(entry.result);
+      }
+    }
+    this.misses.incrementAndGet();
+    return Optional.empty();
+  }
+
+  /**
+   * Place result of evaluation of a file into the cache.
+   *
+   * @param file          the evaluated file, must not be null
+   * @param includedFiles files included during evaluation, must not be null
+   * @param context       the calling context, must not be null
+   * @param recorder      recorder of dependencies of the evaluation, must not be null
+   * @param result        the result of evaluation, must not be null
+   * @return true if the result has been cached, false if it can't be reproduced by its inputs
+   */
+  public boolean put(final File file, final Collection<File> includedFiles,
+                     final PreprocessorContext context, final DependencyRecorder recorder,
+                     final Result result) {
+    requireNonNull(file, "File is null");
+    requireNonNull(includedFiles, "Included files is null");
+    requireNonNull(context, "Context is null");
+    requireNonNull(result, "Result is null");
+    if (this.limit == 0 || recorder.isVolatile()) {
+      return false;
+    }
+
+    final File[] files = new File[includedFiles.size() + 1];
+    final long[] modified = new long[files.length];
+    final long[] sizes = new long[files.length];
+    files[0] = file;
+    int index = 1;
+    for (final File f : includedFiles) {
+      files[index++] = f;
+    }
+    for (int i = 0; i < files.length; i++) {
+      try {
+        final BasicFileAttributes attributes =
+            Files.readAttributes(files[i].toPath(), BasicFileAttributes.class);
+        modified[i] = attributes.lastModifiedTime().toMillis();
+        sizes[i] = attributes.size();
+      } catch (IOException ex) {
+        return false;
+      }
+    }
+
+    final String[] variables = recorder.getReadVariables().keySet().toArray(new String[0]);
+    final Value[] localValues = new Value[variables.length];
+    final Value[] globalValues = new Value[variables.length];
+    for (int i = 0; i < variables.length; i++) {
+      localValues[i] = context.getLocalVariable(variables[i]);
+      globalValues[i] = context.getGlobalVarTable().get(variables[i]);
+    }
+
+    final Entry entry =
+        new Entry(files, modified, sizes, variables, localValues, globalValues, result);
+    synchronized (this.cache) {
+      final LinkedList<Entry> entries =
+          this.cache.computeIfAbsent(makeKey(file), k -> new LinkedList<>());
+      entries.addFirst(entry);
+      if (entries.size() > MAX_RESULTS_PER_FILE) {
+        entries.removeLast();
+      }
+      final Iterator<LinkedList<Entry>> iterator = this.cache.values().iterator();
+      while (this.cache.size() > this.limit && iterator.hasNext()) {
+        iterator.next();
+        iterator.remove();
+      }
+    }
+    return true;
+  }
+
+  public int getLimit() {
+    return this.limit;
+  }
+
+  public int size() {
+    synchronized (this.cache) {
+      return this.cache.values().stream().mapToInt(LinkedList::size).sum();
+    }
+  }
+
+  public long getHits() {
+    return this.hits.get();
+  }
+
+  public long getMisses() {
+    return this.misses.get();
+  }
+
+  public void clear() {
+    synchronized (this.cache) {
+      this.cache.clear();
+    }
+    this.hits.set(0L);
+    this.misses.set(0L);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s(size=%d, limit=%d, hits=%d, misses=%d)",
+        this.getClass().getSimpleName(), this.size(), this.limit, this.getHits(),
+        this.getMisses());
+  }
+
+  /**
+   * Result of evaluation of a file.
+   */
+  public static final class Result {
+    private final String text;
+    private final Set<File> inputFiles;
+    private final Set<File> producedFiles;
+
+    /**
+     * Constructor.
+     *
+     * @param text          the preprocessed text, must not be null
+     * @param inputFiles    files used during evaluation, must not be null
+     * @param producedFiles files produced during evaluation, must not be null
+     */
+    public Result(final String text, final Set<File> inputFiles, final Set<File> producedFiles) {
+      this.text = requireNonNull(text, "Text is null");
+      this.inputFiles = requireNonNull(inputFiles, "Input files is null");
+      this.producedFiles = requireNonNull(producedFiles, "Produced files is null");
+    }
+
+    public String getText() {
+      return this.text;
+    }
+
+    public Set<File> getInputFiles() {
+      return this.inputFiles;
+    }
+
+    public Set<File> getProducedFiles() {
+      return this.producedFiles;
+    }
+  }
+
+  private static final class Entry {
+    private final File[] files;
+    private final long[] modified;
+    private final long[] sizes;
+    private final String[] variables;
+    private final Value[] localValues;
+    private final Value[] globalValues;
+    private final Result result;
+
+    private Entry(final File[] files, final long[] modified, final long[] sizes,
+                  final String[] variables, final Value[] localValues,
+                  final Value[] globalValues, final Result result) {
+      this.files = files;
+      this.modified = modified;
+      this.sizes = sizes;
+      this.variables = variables;
+      this.localValues = localValues;
+      this.globalValues = globalValues;
+      this.result = result;
+    }
+
+    private boolean isValid(final PreprocessorContext context) {
+      for (int i = 0; i < this.variables.length; i++) {
+        if (!Objects.equals(this.localValues[i], context.getLocalVariable(this.variables[i]))
+            || !Objects.equals(this.globalValues[i],
+            context.getGlobalVarTable().get(this.variables[i]))) {
+          return false;
+        }
+      }
+      for (int i = 0; i < this.files.length; i++) {
+        try {
+          final BasicFileAttributes attributes =
+              Files.readAttributes(this.files[i].toPath(), BasicFileAttributes.class);
+          if (attributes.lastModifiedTime().toMillis() != this.modified[i]
+              || attributes.size() != this.sizes[i]) {
+            return false;
+          }
+        } catch (IOException ex) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
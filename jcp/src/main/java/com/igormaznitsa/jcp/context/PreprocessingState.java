@@ -27,38 +27,41 @@ import static com.igormaznitsa.jcp.utils.PreprocessorUtils.findActiveFileInfoCon
 import static java.util.Objects.requireNonNull;
 import static java.util.Objects.requireNonNullElse;
 
+import com.igormaznitsa.jcp.containers.BlockIndex;
+import com.igormaznitsa.jcp.containers.DecodedLine;
 import com.igormaznitsa.jcp.containers.FileInfoContainer;
 import com.igormaznitsa.jcp.containers.PreprocessingFlag;
 import com.igormaznitsa.jcp.containers.TextFileDataContainer;
+import com.igormaznitsa.jcp.directives.WhileDirectiveHandler;
 import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
 import com.igormaznitsa.jcp.exceptions.PreprocessorException;
+import com.igormaznitsa.jcp.utils.ContentUpdatingOutputStream;
+import com.igormaznitsa.jcp.utils.MacroTemplate;
 import com.igormaznitsa.jcp.utils.PreprocessorUtils;
 import com.igormaznitsa.jcp.utils.ResettablePrinter;
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.StringReader;
-import java.io.StringWriter;
+import java.io.Reader;
 import java.io.Writer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 
 /**
  * The class describes a preprocessor state also it contains inside buffers and save data on disk
@@ -71,6 +74,13 @@ public final class PreprocessingState {
 
   public static final int MAX_WRITE_BUFFER_SIZE = 65536;
   public static final String FAKE_FILE_FOLDER = "/fake_test_folder";
+  /**
+   * Max number of lines with macros which split is cached for one preprocessed file.
+   *
+   * @since 7.3.1
+   */
+  public static final int MAX_CACHED_MACRO_TEMPLATES = 4096;
+  private static final int MAX_KEPT_MACRO_BUFFER_SIZE = 64 * 1024;
   public static final String FAKE_FILE_PATH = FAKE_FILE_FOLDER + "/some_fake_file.txt";
   private final Charset globalInCharacterEncoding;
   private final Charset globalOutCharacterEncoding;
@@ -88,11 +98,15 @@ public final class PreprocessingState {
       EnumSet.noneOf(PreprocessingFlag.class);
   private final PreprocessorContext context;
   private final boolean mockMode;
+  private final Map<String, MacroTemplate> macroTemplates = new HashMap<>();
+  private final Set<Path> includedFiles = new HashSet<>();
   private ResettablePrinter selectedPrinter;
   private TextFileDataContainer activeIf;
   private TextFileDataContainer activeWhile;
   private String lastReadString;
   private boolean globalPhase;
+  private StringBuilder macroBuffer;
+  private DecodedLine currentDecodedLine;
 
   PreprocessingState(final PreprocessorContext context, final Charset inEncoding,
                      final Charset outEncoding) {
@@ -120,7 +134,14 @@ public final class PreprocessingState {
 
     this.rootFileInfo = requireNonNull(rootFile, "The root file is null");
     init();
-    rootReference = openFile(rootFile.getSourceFile());
+    final TextFileDataContainer cachedText =
+        context == null ? null : rootFile.takeCachedText(context);
+    if (cachedText == null) {
+      rootReference = openFile(rootFile.getSourceFile());
+    } else {
+      rootReference = cachedText;
+      includeStack.push(cachedText);
+    }
   }
 
   PreprocessingState(final PreprocessorContext context, final FileInfoContainer rootFile,
@@ -176,6 +197,90 @@ public final class PreprocessingState {
         new ExcludeIfInfo(infoContainer, excludeIfCondition, stringIndex));
   }
 
+  /**
+   * Find cached split of a text line into literal parts and macros or make new one.
+   * Templates are cached only in non-mock states because such states are used by single thread
+   * during preprocessing of a file.
+   *
+   * @param line             the text line, must not be null
+   * @param allowWhitespaces true if whitespaces are allowed in macros
+   * @return template for the line, must not be null
+   * @since 7.3.1
+   */
+  public MacroTemplate findMacroTemplate(final String line, final boolean allowWhitespaces) {
+    if (this.mockMode) {
+      return MacroTemplate.parse(line, allowWhitespaces);
+    }
+    final DecodedLine decodedLine = this.currentDecodedLine;
+    if (decodedLine != null && decodedLine.getLeftTrimmed() == line) {
+      return decodedLine.findMacroTemplate(allowWhitespaces);
+    }
+    MacroTemplate result = this.macroTemplates.get(line);
+    if (result == null || result.isAllowWhitespaces() != allowWhitespaces) {
+      result = MacroTemplate.parse(line, allowWhitespaces);
+      if (this.macroTemplates.size() < MAX_CACHED_MACRO_TEMPLATES) {
+        this.macroTemplates.put(line, result);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Decode the last read line of the current text container and make it the current decoded line.
+   * Lines of while loops are kept decoded in their text containers to be reused by next iterations.
+   *
+   * @param context the preprocessor context, must not be null
+   * @return decoded form of the last read line, must not be null
+   * @see #getCurrentDecodedLine()
+   * @since 7.3.1
+   */
+  public DecodedLine decodeLastReadLine(final PreprocessorContext context) {
+    final TextFileDataContainer current = requireNonNull(this.includeStack.peek(),
+        "Include stack is empty");
+    final int lineIndex = current.getLastReadStringIndex();
+    DecodedLine result = current.findDecodedLine(lineIndex, context, !this.whileStack.isEmpty());
+    if (this.whileStack.isEmpty() && result.getHandler() instanceof WhileDirectiveHandler) {
+      result = current.findDecodedLine(lineIndex, context, true);
+    }
+    this.currentDecodedLine = this.mockMode ? null : result;
+    return result;
+  }
+
+  /**
+   * Get the last decoded line, parsed expressions and macros of the line can be attached to it.
+   *
+   * @return the current decoded line or null if there is no such one
+   * @since 7.3.1
+   */
+  public DecodedLine getCurrentDecodedLine() {
+    return this.currentDecodedLine;
+  }
+
+  /**
+   * Take buffer to expand macros, the buffer should be returned through {@link #releaseMacroBuffer(StringBuilder)}.
+   *
+   * @return buffer to be used, must not be null
+   * @since 7.3.1
+   */
+  public StringBuilder takeMacroBuffer() {
+    final StringBuilder result = this.mockMode ? null : this.macroBuffer;
+    this.macroBuffer = null;
+    return result == null ? new StringBuilder(128) : result;
+  }
+
+  /**
+   * Return taken buffer to be reused by next macro expansion.
+   *
+   * @param buffer the buffer taken by {@link #takeMacroBuffer()}, must not be null
+   * @since 7.3.1
+   */
+  public void releaseMacroBuffer(final StringBuilder buffer) {
+    if (!this.mockMode && buffer.capacity() <= MAX_KEPT_MACRO_BUFFER_SIZE) {
+      buffer.setLength(0);
+      this.macroBuffer = buffer;
+    }
+  }
+
   public ResettablePrinter getSelectedPrinter() {
     return this.selectedPrinter;
   }
@@ -234,16 +339,47 @@ public final class PreprocessingState {
   public TextFileDataContainer openFile(final File file) throws IOException {
     requireNonNull(file, "The file is null");
 
-    final AtomicBoolean endedByNextLineContainer = new AtomicBoolean();
+    final TextFileDataContainer newContainer = new TextFileDataContainer(file,
+        PreprocessorUtils.readWholeTextFileIntoLineStore(file, globalInCharacterEncoding), 0);
+    includeStack.push(newContainer);
+    return newContainer;
+  }
+
+  /**
+   * Open included file and push it into the include stack. Text of the file is taken from the include text
+   * cache of the context, so that the same file included many times is read only once.
+   *
+   * @param file the included file, must not be null
+   * @return container of the included file text, must not be null
+   * @throws IOException if the file can't be read
+   * @see PreprocessorContext#getIncludeTextCache()
+   * @since 7.3.1
+   */
+  public TextFileDataContainer openIncludedFile(final File file) throws IOException {
+    requireNonNull(file, "The file is null");
+    if (this.context == null) {
+      return this.openFile(file);
+    }
 
-    final String[] texts = PreprocessorUtils
-        .readWholeTextFileIntoArray(file, globalInCharacterEncoding, endedByNextLineContainer);
-    final TextFileDataContainer newContainer =
-        new TextFileDataContainer(file, texts, endedByNextLineContainer.get(), 0);
+    final TextFileDataContainer newContainer = new TextFileDataContainer(file,
+        this.context.getIncludeTextCache().findOrRead(file, globalInCharacterEncoding), 0);
     includeStack.push(newContainer);
     return newContainer;
   }
 
+  /**
+   * Register file as included into the currently preprocessed file. Files are compared by their
+   * normalized absolute paths, the file system is not touched.
+   *
+   * @param file the included file, must not be null
+   * @return true if the file has not been registered before, false otherwise
+   * @since 7.3.1
+   */
+  public boolean registerIncludedFile(final File file) {
+    requireNonNull(file, "The file is null");
+    return this.includedFiles.add(file.toPath().toAbsolutePath().normalize());
+  }
+
   public TextFileDataContainer peekIncludeStackFile() {
     return this.includeStack.peek();
   }
@@ -353,6 +489,71 @@ public final class PreprocessingState {
   }
 
 
+  /**
+   * Skip lines of inactive block started by the last read {@code #if}, {@code #else} or {@code #while}
+   * directive, the next read line will be the matching {@code #else}, {@code #endif} or {@code #end}.
+   * Nothing is skipped in keep lines mode, during global phase, for active state and for blocks which
+   * can't be skipped without change of preprocessing result.
+   *
+   * @param context the preprocessor context, must not be null
+   * @return true if lines have been skipped, false otherwise
+   * @see BlockIndex
+   * @since 7.3.1
+   */
+  public boolean skipInactiveBlock(final PreprocessorContext context) {
+    if (!this.isBlockSkipAllowed(context) || this.isDirectiveCanBeProcessed()) {
+      return false;
+    }
+    final TextFileDataContainer current = this.includeStack.peek();
+    final int target =
+        current.findBlockIndex(context).findJumpTarget(current.getLastReadStringIndex());
+    if (target < 0) {
+      return false;
+    }
+    current.setNextStringIndex(target);
+    return true;
+  }
+
+  /**
+   * Skip lines after {@code #break} until the {@code #end} of the current while loop, if blocks started
+   * in the loop body are still open then they are closed.
+   *
+   * @param context the preprocessor context, must not be null
+   * @return true if lines have been skipped, false otherwise
+   * @see #skipInactiveBlock(PreprocessorContext)
+   * @since 7.3.1
+   */
+  public boolean skipToEndOfWhile(final PreprocessorContext context) {
+    if (!this.isBlockSkipAllowed(context)
+        || !this.preprocessingFlags.contains(PreprocessingFlag.BREAK_COMMAND)) {
+      return false;
+    }
+    final TextFileDataContainer current = this.includeStack.peek();
+    final TextFileDataContainer whileRef = this.whileStack.peek();
+    if (whileRef == null || !whileRef.getFile().equals(current.getFile())
+        || this.includeStack.stream().filter(x -> x.getFile().equals(current.getFile())).count()
+        > 1) {
+      return false;
+    }
+    final int whileLine = whileRef.getNextStringIndex();
+    final int target = current.findBlockIndex(context).findJumpTarget(whileLine);
+    if (target < current.getNextStringIndex()) {
+      return false;
+    }
+    while (!this.ifStack.isEmpty()
+        && this.ifStack.peek().getFile().equals(current.getFile())
+        && this.ifStack.peek().getNextStringIndex() > whileLine) {
+      this.popIf();
+    }
+    current.setNextStringIndex(target);
+    return true;
+  }
+
+  private boolean isBlockSkipAllowed(final PreprocessorContext context) {
+    return !this.mockMode && !this.globalPhase && !context.isKeepLines()
+        && !this.includeStack.isEmpty();
+  }
+
   public PreprocessingState pushIf(final boolean makeActive) {
     final TextFileDataContainer ifRef = cloneTopTextDataContainer();
     ifStack.push(ifRef);
@@ -472,9 +673,13 @@ public final class PreprocessingState {
   }
 
   public String getCurrentText() {
-    return this.prefixPrinter.getText()
-        + this.normalPrinter.getText()
-        + this.postfixPrinter.getText();
+    final StringBuilder result = new StringBuilder(
+        this.prefixPrinter.getSize() + this.normalPrinter.getSize() +
+            this.postfixPrinter.getSize());
+    this.prefixPrinter.appendTo(result);
+    this.normalPrinter.appendTo(result);
+    this.postfixPrinter.appendTo(result);
+    return result.toString();
   }
 
   public void saveBuffersToStreams(final OutputStream prefix, final OutputStream normal,
@@ -491,10 +696,15 @@ public final class PreprocessingState {
       throws IOException {
     final File path = outFile.getParentFile();
 
-    if (path != null && !path.exists() && !path.mkdirs()) {
+    if (path != null && !path.exists() && !path.mkdirs() && !path.isDirectory()) {
       throw new IOException("Can't make directory [" + PreprocessorUtils.getFilePath(path) + ']');
     }
 
+    if (PreprocessorUtils.isHardLinked(outFile)) {
+      // can be hard link made for copied file, it must not be written in place
+      Files.delete(outFile.toPath());
+    }
+
     Writer writer = null;
 
     boolean wasSaved = false;
@@ -505,46 +715,29 @@ public final class PreprocessingState {
           Math.max(64, Math.min(totatBufferedChars << 1, MAX_WRITE_BUFFER_SIZE));
 
       if (this.overrideOnlyIfContentChanged) {
-        String content = writePrinterBuffers(new StringWriter(totatBufferedChars)).toString();
-        if (keepComments != CommentRemoverType.KEEP_ALL) {
-          content = makeCommentRemover(
-              keepComments,
-              new StringReader(content),
-              new StringWriter(totatBufferedChars),
-              context.isAllowWhitespaces()).process().toString();
-        }
-
-        boolean needWrite = true; // better write than not
-        final byte[] contentInBinaryForm = content.getBytes(globalOutCharacterEncoding);
-        if (outFile.isFile() && outFile.length() == contentInBinaryForm.length) {
-          // If file exists and has the same content, then skip overwriting it
-          try (InputStream currentFileInputStream = new BufferedInputStream(
-              Files.newInputStream(outFile.toPath()), Math.max(16384, (int) outFile.length()))) {
-            needWrite = !IOUtils.contentEquals(currentFileInputStream,
-                new ByteArrayInputStream(contentInBinaryForm));
-          }
+        final ContentUpdatingOutputStream updatingStream =
+            new ContentUpdatingOutputStream(outFile, BUFFER_SIZE);
+        try {
+          final Writer updatingWriter =
+              new OutputStreamWriter(updatingStream, globalOutCharacterEncoding);
+          this.writeContent(updatingWriter, keepComments);
+          updatingWriter.close();
+        } catch (Throwable ex) {
+          // must not be closed because close truncates the file by written content
+          updatingStream.abort();
+          throw ex;
         }
-        if (needWrite) {
-          FileUtils.writeByteArrayToFile(outFile, contentInBinaryForm, false);
+        if (updatingStream.isChanged()) {
           wasSaved = true;
         } else {
           this.context.logDebug(
               "Ignore writing data for " + outFile + " because its content has not been changed");
         }
-      } else if (keepComments != CommentRemoverType.KEEP_ALL) {
-        final String joinedBufferContent =
-            writePrinterBuffers(new StringWriter(totatBufferedChars)).toString();
-        writer = new OutputStreamWriter(
-            new BufferedOutputStream(new FileOutputStream(outFile, false), BUFFER_SIZE),
-            globalOutCharacterEncoding);
-        writer = makeCommentRemover(keepComments,
-            new StringReader(joinedBufferContent), writer, context.isAllowWhitespaces()).process();
-        wasSaved = true;
       } else {
         writer = new OutputStreamWriter(
             new BufferedOutputStream(new FileOutputStream(outFile, false), BUFFER_SIZE),
             globalOutCharacterEncoding);
-        writePrinterBuffers(writer);
+        this.writeContent(writer, keepComments);
         wasSaved = true;
       }
     } finally {
@@ -562,6 +755,17 @@ public final class PreprocessingState {
   }
 
 
+  private void writeContent(final Writer writer, final CommentRemoverType keepComments)
+      throws IOException {
+    if (keepComments == CommentRemoverType.KEEP_ALL) {
+      this.writePrinterBuffers(writer);
+    } else {
+      makeCommentRemover(keepComments, new PrinterBuffersReader(), writer,
+          this.context.isAllowWhitespaces()).process();
+    }
+    writer.flush();
+  }
+
   public Writer writePrinterBuffers(final Writer writer) throws IOException {
     if (!prefixPrinter.isEmpty()) {
       prefixPrinter.writeBufferTo(writer);
@@ -618,4 +822,53 @@ public final class PreprocessingState {
       return condition;
     }
   }
+
+  /**
+   * Reader over content of all printers without joining them into a string.
+   */
+  private final class PrinterBuffersReader extends Reader {
+
+    private final CharBuffer[] buffers = new CharBuffer[] {
+        prefixPrinter.asCharBuffer(),
+        normalPrinter.asCharBuffer(),
+        postfixPrinter.asCharBuffer()
+    };
+    private int index;
+
+    @Override
+    public int read() {
+      while (this.index < this.buffers.length) {
+        final CharBuffer buffer = this.buffers[this.index];
+        if (buffer.hasRemaining()) {
+          return buffer.get();
+        }
+        this.index++;
+      }
+      return -1;
+    }
+
+    @Override
+    public int read(final char[] chars, final int offset, final int length) {
+      if (length == 0) {
+        return 0;
+      }
+      int read = 0;
+      while (read < length && this.index < this.buffers.length) {
+        final CharBuffer buffer = this.buffers[this.index];
+        final int portion = Math.min(length - read, buffer.remaining());
+        if (portion == 0) {
+          this.index++;
+        } else {
+          buffer.get(chars, offset + read, portion);
+          read += portion;
+        }
+      }
+      return read == 0 ? -1 : read;
+    }
+
+    @Override
+    public void close() {
+      this.index = this.buffers.length;
+    }
+  }
 }
@@ -25,12 +25,17 @@ import static java.util.Collections.singletonList;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toUnmodifiableList;
 
+import com.igormaznitsa.jcp.containers.BinFileCache;
 import com.igormaznitsa.jcp.containers.FileInfoContainer;
+import com.igormaznitsa.jcp.containers.TextFileCache;
 import com.igormaznitsa.jcp.containers.TextFileDataContainer;
 import com.igormaznitsa.jcp.directives.AbstractDirectiveHandler;
+import com.igormaznitsa.jcp.directives.DirectiveHandlerIndex;
 import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
 import com.igormaznitsa.jcp.exceptions.PreprocessorException;
+import com.igormaznitsa.jcp.expression.ExpressionTreeCache;
 import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.expression.functions.xml.XmlToolPool;
 import com.igormaznitsa.jcp.extension.PreprocessorExtension;
 import com.igormaznitsa.jcp.logger.PreprocessorLogger;
 import com.igormaznitsa.jcp.logger.SystemOutLogger;
@@ -50,6 +55,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -73,14 +79,61 @@ public class PreprocessorContext {
       List.of("java", "txt", "htm", "html");
   public static final List<String> DEFAULT_EXCLUDED_EXTENSIONS = singletonList("xml");
   public static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
+  /**
+   * Default max number of chars of source text which can be kept in memory between the global phase and the preprocessing phase.
+   *
+   * @since 7.3.1
+   */
+  public static final long DEFAULT_TEXT_CACHE_LIMIT =
+      Long.getLong("jcp.text.cache.limit", 32L * 1024L * 1024L);
   private static final List<AbstractDirectiveHandler> directiveHandlers =
-      AbstractDirectiveHandler.findAllDirectives();
+      List.copyOf(AbstractDirectiveHandler.findAllDirectives());
+  private static final DirectiveHandlerIndex directiveHandlerIndex =
+      new DirectiveHandlerIndex(directiveHandlers);
   @Setter(AccessLevel.NONE)
   @Getter(AccessLevel.NONE)
   protected final Collection<FileInfoContainer> preprocessedResources;
   @Setter(AccessLevel.NONE)
   @Getter(AccessLevel.NONE)
   protected final AtomicReference<PreprocessingState> preprocessingState = new AtomicReference<>();
+  @Setter(AccessLevel.NONE)
+  @Getter(AccessLevel.NONE)
+  private final AtomicLong cachedTextSize;
+  /**
+   * Cache of parsed expressions shared between the context and its clones.
+   *
+   * @since 7.3.1
+   */
+  @Setter(AccessLevel.NONE)
+  private final ExpressionTreeCache expressionTreeCache;
+  /**
+   * Cache of texts of included files shared between the context and its clones.
+   *
+   * @since 7.3.1
+   */
+  @Setter(AccessLevel.NONE)
+  private final TextFileCache includeTextCache;
+  /**
+   * Cache of binary files encoded by binfile function shared between the context and its clones.
+   *
+   * @since 7.3.1
+   */
+  @Setter(AccessLevel.NONE)
+  private final BinFileCache binFileCache;
+  /**
+   * Cache of results of evalfile function shared between the context and its clones.
+   *
+   * @since 7.3.1
+   */
+  @Setter(AccessLevel.NONE)
+  private final EvalFileCache evalFileCache;
+  /**
+   * Pool of XML document builders and XPath compilers shared between the context and its clones.
+   *
+   * @since 7.3.1
+   */
+  @Setter(AccessLevel.NONE)
+  private final XmlToolPool xmlToolPool;
   private final Map<String, Value> globalVarTable = new HashMap<>();
   private final Map<String, Value> localVarTable = new HashMap<>();
   private final Map<String, List<SpecialVariableProcessor>> mapVariableNameToSpecialVarProcessor =
@@ -110,6 +163,25 @@ public class PreprocessorContext {
   private boolean keepAttributes = false;
   private boolean unknownVariableAsFalse = false;
   private boolean allowsBlocks = false;
+  private int threads = 1;
+  private boolean incremental = false;
+  private boolean hardLinks = false;
+  private boolean syncTarget = false;
+  /**
+   * Index of directive handlers, it is rebuilt only if {@link #getDirectiveHandlers()} returns another list.
+   *
+   * @since 7.3.1
+   */
+  @Setter(AccessLevel.NONE)
+  @Getter(AccessLevel.NONE)
+  private volatile DirectiveHandlerIndex lastDirectiveHandlerIndex = directiveHandlerIndex;
+  /**
+   * Recorder of dependencies for current preprocessing file, clones get a child recorder which passes their reads to it.
+   *
+   * @since 7.3.1
+   */
+  private DependencyRecorder dependencyRecorder;
+  private long textCacheLimit = DEFAULT_TEXT_CACHE_LIMIT;
   private File target;
   private Set<String> extensions = new HashSet<>(DEFAULT_PROCESSING_EXTENSIONS);
   private Set<String> excludeExtensions = new HashSet<>(DEFAULT_EXCLUDED_EXTENSIONS);
@@ -127,6 +199,12 @@ public class PreprocessorContext {
    */
   public PreprocessorContext(final File baseDir) {
     this.preprocessedResources = new ArrayList<>();
+    this.cachedTextSize = new AtomicLong();
+    this.expressionTreeCache = new ExpressionTreeCache();
+    this.includeTextCache = new TextFileCache();
+    this.binFileCache = new BinFileCache();
+    this.evalFileCache = new EvalFileCache();
+    this.xmlToolPool = new XmlToolPool();
     this.activatedConfigFiles = new ArrayList<>();
     this.baseDir = requireNonNull(baseDir, "Base folder must not be null");
     this.setSources(DEFAULT_SOURCE_DIRECTORY).setTarget(new File(DEFAULT_DEST_DIRECTORY));
@@ -149,6 +227,12 @@ public class PreprocessorContext {
 
     this.activatedConfigFiles = context.activatedConfigFiles;
     this.preprocessedResources = context.preprocessedResources;
+    this.cachedTextSize = context.cachedTextSize;
+    this.expressionTreeCache = context.expressionTreeCache;
+    this.includeTextCache = context.includeTextCache;
+    this.binFileCache = context.binFileCache;
+    this.evalFileCache = context.evalFileCache;
+    this.xmlToolPool = context.xmlToolPool;
 
     this.baseDir = context.getBaseDir();
     this.verbose = context.isVerbose();
@@ -171,8 +255,13 @@ public class PreprocessorContext {
 
     this.unknownVariableAsFalse = context.unknownVariableAsFalse;
     this.allowsBlocks = context.allowsBlocks;
+    this.threads = context.threads;
+    this.incremental = context.incremental;
+    this.hardLinks = context.hardLinks;
+    this.syncTarget = context.syncTarget;
+    this.textCacheLimit = context.textCacheLimit;
 
-    this.preprocessorExtensions = context.getPreprocessorExtensions();
+    this.preprocessorExtensions = context.preprocessorExtensions;
     this.sourceEncoding = context.getSourceEncoding();
     this.targetEncoding = context.getTargetEncoding();
     this.dontOverwriteSameContent = context.isDontOverwriteSameContent();
@@ -180,6 +269,8 @@ public class PreprocessorContext {
 
     this.globalVarTable.clear();
     this.globalVarTable.putAll(context.getGlobalVarTable());
+    this.dependencyRecorder =
+        context.dependencyRecorder == null ? null : new DependencyRecorder(context.dependencyRecorder);
 
     this.localVarTable.clear();
     this.localVarTable.putAll(context.getLocalVarTable());
@@ -247,6 +338,38 @@ public class PreprocessorContext {
     }
   }
 
+  /**
+   * Reserve space in the text cache shared between the context and its clones.
+   *
+   * @param chars number of chars to be reserved
+   * @return true if the space has been reserved, false if the cache limit would be exceeded
+   * @see #getTextCacheLimit()
+   * @since 7.3.1
+   */
+  public boolean reserveCachedText(final long chars) {
+    final long limit = this.textCacheLimit;
+    while (true) {
+      final long current = this.cachedTextSize.get();
+      if (current + chars > limit) {
+        return false;
+      }
+      if (this.cachedTextSize.compareAndSet(current, current + chars)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Release space reserved in the text cache.
+   *
+   * @param chars number of chars to be released
+   * @see #reserveCachedText(long)
+   * @since 7.3.1
+   */
+  public void releaseCachedText(final long chars) {
+    this.cachedTextSize.addAndGet(-chars);
+  }
+
   /**
    * Add comment text processor.
    *
@@ -277,6 +400,22 @@ public class PreprocessorContext {
     return directiveHandlers;
   }
 
+  /**
+   * Get index to find directive handlers by directive text.
+   *
+   * @return index built for handlers provided by {@link #getDirectiveHandlers()}
+   * @since 7.3.1
+   */
+  public DirectiveHandlerIndex getDirectiveHandlerIndex() {
+    final List<AbstractDirectiveHandler> handlers = this.getDirectiveHandlers();
+    DirectiveHandlerIndex result = this.lastDirectiveHandlerIndex;
+    if (!result.isMadeFor(handlers)) {
+      result = new DirectiveHandlerIndex(handlers);
+      this.lastDirectiveHandlerIndex = result;
+    }
+    return result;
+  }
+
   public void addPreprocessedResource(final FileInfoContainer container) {
     if (container != null) {
       this.preprocessedResources.add(container);
@@ -379,7 +518,17 @@ public class PreprocessorContext {
     this.target = file.isAbsolute() ? file : new File(this.getBaseDir(), file.getPath());
   }
 
+  public List<CommentTextProcessor> getCommentTextProcessors() {
+    if (this.dependencyRecorder != null && !this.commentTextProcessors.isEmpty()) {
+      this.dependencyRecorder.markVolatile();
+    }
+    return this.commentTextProcessors;
+  }
+
   public List<PreprocessorExtension> getPreprocessorExtensions() {
+    if (this.dependencyRecorder != null && !this.preprocessorExtensions.isEmpty()) {
+      this.dependencyRecorder.markVolatile();
+    }
     return this.preprocessorExtensions;
   }
 
@@ -639,11 +788,15 @@ public class PreprocessorContext {
       throw makeException("Not defined variable name", null);
     }
 
+    this.registerVariableRead(normalized);
     if (this.mapVariableNameToSpecialVarProcessor.containsKey(normalized)) {
       final SpecialVariableProcessor enabledProcessor =
           findAllowedSpecialVariableProcessor(normalized)
               .orElseThrow(() -> this.makeException("Set of local variable '" + normalized +
                   "' is not allowed in the point by its processor", null));
+      if (this.dependencyRecorder != null) {
+        this.dependencyRecorder.registerSpecialVariableWrite(normalized);
+      }
       enabledProcessor.setVariable(normalized, value, this);
     } else if (this.globalVarTable.containsKey(normalized)) {
       throw makeException(
@@ -670,6 +823,7 @@ public class PreprocessorContext {
       throw makeException("Empty variable name", null);
     }
 
+    this.registerVariableRead(normalized);
     if (mapVariableNameToSpecialVarProcessor.containsKey(normalized) ||
         globalVarTable.containsKey(normalized)) {
       throw makeException(
@@ -710,6 +864,9 @@ public class PreprocessorContext {
     }
 
     globalVarTable.remove(normalized);
+    if (this.dependencyRecorder != null) {
+      this.dependencyRecorder.registerWrite(normalized, null);
+    }
     return this;
   }
 
@@ -796,6 +953,9 @@ public class PreprocessorContext {
                   "Cannot set special variable '" + normalizedName +
                       "' no valid processor available here, may be it is read only",
                   null));
+      if (this.dependencyRecorder != null) {
+        this.dependencyRecorder.registerSpecialVariableWrite(normalizedName);
+      }
       firstActiveProcessor.setVariable(normalizedName, value, this);
     } else {
       if (isVerbose()) {
@@ -807,6 +967,9 @@ public class PreprocessorContext {
         }
       }
       globalVarTable.put(normalizedName, value);
+      if (this.dependencyRecorder != null) {
+        this.dependencyRecorder.registerWrite(normalizedName, value);
+      }
     }
     return this;
   }
@@ -827,10 +990,19 @@ public class PreprocessorContext {
       return false;
     }
 
+    this.registerVariableRead(normalized);
     return mapVariableNameToSpecialVarProcessor.containsKey(normalized) ||
         globalVarTable.containsKey(normalized);
   }
 
+  private void registerVariableRead(final String normalizedName) {
+    if (this.dependencyRecorder != null) {
+      this.dependencyRecorder.registerRead(normalizedName,
+          this.mapVariableNameToSpecialVarProcessor.containsKey(normalizedName),
+          this.globalVarTable.get(normalizedName));
+    }
+  }
+
   /**
    * Find value among local and global variables for a name. It finds in the order: special processors, local variables, global variables
    *
@@ -849,6 +1021,7 @@ public class PreprocessorContext {
       return null;
     }
 
+    this.registerVariableRead(normalized);
     final SpecialVariableProcessor processor =
         mapVariableNameToSpecialVarProcessor.containsKey(normalized) ?
             mapVariableNameToSpecialVarProcessor.get(normalized).
@@ -883,6 +1056,7 @@ public class PreprocessorContext {
     boolean result = false;
     if (variableName != null) {
       final String normalized = PreprocessorUtils.normalizeVariableName(variableName);
+      this.registerVariableRead(normalized);
       result = this.globalVarTable.containsKey(normalized) ||
           mapVariableNameToSpecialVarProcessor.containsKey(normalized);
     }
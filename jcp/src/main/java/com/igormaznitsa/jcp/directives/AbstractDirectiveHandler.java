@@ -78,6 +78,7 @@ public abstract class AbstractDirectiveHandler {
     result.add(new DefineDirectiveHandler());
     result.add(new UndefDirectiveHandler());
     result.add(new FlushDirectiveHandler());
+    result.add(new IncludeOnceDirectiveHandler());
     result.add(new IncludeDirectiveHandler());
     result.add(new ActionDirectiveHandler());
     result.add(new PostfixDirectiveHandler());
@@ -176,6 +177,18 @@ public abstract class AbstractDirectiveHandler {
     return true;
   }
 
+  /**
+   * Shows that the directive can change global state of preprocessor (for instance global variables)
+   * during the second preprocessing phase, files containing such directives can't be preprocessed
+   * concurrently with other files.
+   *
+   * @return true if the directive can change global state, false otherwise
+   * @since 7.3.1
+   */
+  public boolean isGlobalStateMutator() {
+    return false;
+  }
+
   /**
    * Check that the directive is deprecated one and can be removed in a next release
    *
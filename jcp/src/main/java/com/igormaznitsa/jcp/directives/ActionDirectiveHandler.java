@@ -21,18 +21,12 @@
 
 package com.igormaznitsa.jcp.directives;
 
-import com.igormaznitsa.jcp.context.PreprocessingState;
 import com.igormaznitsa.jcp.context.PreprocessorContext;
-import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
 import com.igormaznitsa.jcp.expression.Expression;
-import com.igormaznitsa.jcp.expression.ExpressionItem;
 import com.igormaznitsa.jcp.expression.ExpressionParser;
 import com.igormaznitsa.jcp.expression.ExpressionTree;
 import com.igormaznitsa.jcp.extension.PreprocessorExtension;
 import java.io.IOException;
-import java.io.PushbackReader;
-import java.io.StringReader;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -58,6 +52,11 @@ public class ActionDirectiveHandler extends AbstractDirectiveHandler {
     return DirectiveArgumentType.MULTI_EXPRESSION;
   }
 
+  @Override
+  public boolean isGlobalStateMutator() {
+    return true;
+  }
+
   @Override
   public AfterDirectiveProcessingBehaviour execute(final String string,
                                                    final PreprocessorContext context) {
@@ -71,7 +70,8 @@ public class ActionDirectiveHandler extends AbstractDirectiveHandler {
     }
 
     try {
-      final List<ExpressionTree> args = parseString(string, context);
+      final List<ExpressionTree> args =
+          ExpressionParser.getInstance().parseList(string, context);
       final PreprocessorExtension extension = extensions.stream()
           .filter(x -> x.isAllowed(context))
           .filter(x -> x.hasAction(args.size()))
@@ -94,44 +94,4 @@ public class ActionDirectiveHandler extends AbstractDirectiveHandler {
 
     return AfterDirectiveProcessingBehaviour.PROCESSED;
   }
-
-
-  private List<ExpressionTree> parseString(final String str, final PreprocessorContext context)
-      throws IOException {
-    final ExpressionParser parser = ExpressionParser.getInstance();
-
-    final PushbackReader reader = new PushbackReader(new StringReader(str));
-    final List<ExpressionTree> result = new ArrayList<>();
-
-    final PreprocessingState state = context.getPreprocessingState();
-    final FilePositionInfo[] stack;
-    final String sources;
-    stack = state.makeIncludeStack();
-    sources = state.getLastReadString();
-
-    while (!Thread.currentThread().isInterrupted()) {
-      final ExpressionTree tree;
-      tree = new ExpressionTree(stack, sources);
-      final ExpressionItem delimiter = parser.readExpression(reader, tree, context, false, true);
-
-      if (delimiter != null && ExpressionParser.SpecialItem.COMMA != delimiter) {
-        throw context.makeException("Wrong argument format detected", null);
-      }
-
-      if (tree.isEmpty()) {
-        if (delimiter == null) {
-          break;
-        } else {
-          throw context.makeException("Empty argument", null);
-        }
-      } else {
-        result.add(tree);
-        if (delimiter == null) {
-          break;
-        }
-      }
-    }
-
-    return result;
-  }
 }
@@ -55,6 +55,7 @@ public class BreakDirectiveHandler extends AbstractDirectiveHandler {
     }
 
     state.getPreprocessingFlags().add(PreprocessingFlag.BREAK_COMMAND);
+    state.skipToEndOfWhile(context);
     return AfterDirectiveProcessingBehaviour.PROCESSED;
   }
 }
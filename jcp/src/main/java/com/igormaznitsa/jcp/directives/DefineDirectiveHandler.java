@@ -54,6 +54,11 @@ public class DefineDirectiveHandler extends AbstractDirectiveHandler {
     return "add global BOOL variable (default TRUE or set from expression)";
   }
 
+  @Override
+  public boolean isGlobalStateMutator() {
+    return true;
+  }
+
   protected void process(final PreprocessorContext context, final String varName, final Value value,
                          final boolean exists) {
     if (exists) {
@@ -43,6 +43,11 @@ public class DefinelDirectiveHandler extends DefineDirectiveHandler {
     return "add local BOOL variable (default TRUE or from expression)";
   }
 
+  @Override
+  public boolean isGlobalStateMutator() {
+    return false;
+  }
+
   @Override
   protected void process(final PreprocessorContext context, final String varName, final Value value,
                          final boolean exists) {
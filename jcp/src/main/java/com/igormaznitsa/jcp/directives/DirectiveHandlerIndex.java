@@ -0,0 +1,127 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.igormaznitsa.jcp.directives;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prefix tree of directive names to find a directive handler for a directive line without
+ * check of every handler. The result is the same as for linear search of the first handler in the list
+ * which name is a prefix of the directive line.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+public final class DirectiveHandlerIndex {
+
+  private final List<AbstractDirectiveHandler> source;
+  private final List<AbstractDirectiveHandler> handlers;
+  private final Node root = new Node();
+
+  public DirectiveHandlerIndex(final List<AbstractDirectiveHandler> handlers) {
+    this.source = requireNonNull(handlers, "Handler list is null");
+    this.handlers = List.copyOf(handlers);
+    for (int i = 0; i < this.handlers.size(); i++) {
+      Node node = this.root;
+      for (final char c : this.handlers.get(i).getName().toCharArray()) {
+        node = node.findOrAddChild(c);
+      }
+      if (node.handlerIndex < 0) {
+        node.handlerIndex = i;
+      }
+    }
+  }
+
+  public List<AbstractDirectiveHandler> getHandlers() {
+    return this.handlers;
+  }
+
+  /**
+   * Check that the index has been made for the list instance.
+   *
+   * @param handlers list of handlers, can be null
+   * @return true if the index has been made exactly for the list instance
+   */
+  public boolean isMadeFor(final List<AbstractDirectiveHandler> handlers) {
+    return this.source == handlers;
+  }
+
+  /**
+   * Check that an index is made for the same handlers in the same order, so that it finds the same
+   * handlers for directives.
+   *
+   * @param other index to be checked, must not be null
+   * @return true if both indexes find the same handlers
+   */
+  public boolean hasSameHandlers(final DirectiveHandlerIndex other) {
+    return this == other || this.handlers.equals(other.handlers);
+  }
+
+  /**
+   * Find handler for directive text.
+   *
+   * @param directive directive text without directive prefix, must not be null
+   * @return the first handler in the list which name is prefix of the directive or null if not found
+   */
+  public AbstractDirectiveHandler find(final String directive) {
+    int found = this.root.handlerIndex < 0 ? Integer.MAX_VALUE : this.root.handlerIndex;
+    Node node = this.root;
+    for (int i = 0; i < directive.length() && node != null; i++) {
+      node = node.findChild(directive.charAt(i));
+      if (node != null && node.handlerIndex >= 0) {
+        found = Math.min(found, node.handlerIndex);
+      }
+    }
+    return found == Integer.MAX_VALUE ? null : this.handlers.get(found);
+  }
+
+  private static final class Node {
+    private char[] chars = new char[0];
+    private Node[] children = new Node[0];
+    private int handlerIndex = -1;
+
+    Node findChild(final char c) {
+      for (int i = 0; i < this.chars.length; i++) {
+        if (this.chars[i] == c) {
+          return this.children[i];
+        }
+      }
+      return null;
+    }
+
+    Node findOrAddChild(final char c) {
+      Node result = this.findChild(c);
+      if (result == null) {
+        result = new Node();
+        this.chars = Arrays.copyOf(this.chars, this.chars.length + 1);
+        this.children = Arrays.copyOf(this.children, this.children.length + 1);
+        this.chars[this.chars.length - 1] = c;
+        this.children[this.children.length - 1] = result;
+      }
+      return result;
+    }
+  }
+}
@@ -58,6 +58,7 @@ public class ElseDirectiveHandler extends AbstractDirectiveHandler {
         state.getPreprocessingFlags().add(PreprocessingFlag.IF_CONDITION_FALSE);
       }
     }
+    state.skipInactiveBlock(context);
     return AfterDirectiveProcessingBehaviour.PROCESSED;
   }
 
@@ -73,6 +73,7 @@ public class IfDefinedDirectiveHandler extends AbstractDirectiveHandler {
     } else {
       state.pushIf(false);
     }
+    state.skipInactiveBlock(context);
 
     return AfterDirectiveProcessingBehaviour.PROCESSED;
   }
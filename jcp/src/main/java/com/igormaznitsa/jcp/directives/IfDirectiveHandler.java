@@ -72,6 +72,7 @@ public class IfDirectiveHandler extends AbstractDirectiveHandler {
     } else {
       state.pushIf(false);
     }
+    state.skipInactiveBlock(context);
 
     return AfterDirectiveProcessingBehaviour.PROCESSED;
   }
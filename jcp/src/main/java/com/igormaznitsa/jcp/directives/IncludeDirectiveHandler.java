@@ -52,6 +52,24 @@ public class IncludeDirectiveHandler extends AbstractDirectiveHandler {
     return DirectiveArgumentType.STRING;
   }
 
+  /**
+   * Content of included file is unknown before its preprocessing so that it can contain directives changing global state.
+   */
+  @Override
+  public boolean isGlobalStateMutator() {
+    return true;
+  }
+
+  /**
+   * Check that a file already included into the current preprocessed file must be skipped.
+   *
+   * @return true if repeated include of the same file must be ignored, false otherwise
+   * @since 7.3.1
+   */
+  protected boolean isOnlyOnce() {
+    return false;
+  }
+
   @Override
   public AfterDirectiveProcessingBehaviour execute(final String string,
                                                    final PreprocessorContext context) {
@@ -62,10 +80,17 @@ public class IncludeDirectiveHandler extends AbstractDirectiveHandler {
 
     try {
       final File fileToInclude = context.findFileInSources(filePath);
+      if (!state.registerIncludedFile(fileToInclude) && this.isOnlyOnce()) {
+        if (context.isVerbose()) {
+          context.logForVerbose(
+              "Skipping already included file '" + fileToInclude.getCanonicalPath() + '\'');
+        }
+        return AfterDirectiveProcessingBehaviour.PROCESSED;
+      }
       if (context.isVerbose()) {
         context.logForVerbose("Including file '" + fileToInclude.getCanonicalPath() + '\'');
       }
-      state.openFile(fileToInclude);
+      state.openIncludedFile(fileToInclude);
 
       findActiveFileInfoContainer(context)
           .ifPresent(f -> f.getIncludedSources().add(fileToInclude));
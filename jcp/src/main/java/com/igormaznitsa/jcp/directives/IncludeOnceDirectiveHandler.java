@@ -0,0 +1,48 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.directives;
+
+/**
+ * The class implements the //#include_once directive handler, it includes a file only if the file
+ * has not been included into the current preprocessed file yet, so that repeated includes are
+ * skipped without reading the file.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+public class IncludeOnceDirectiveHandler extends IncludeDirectiveHandler {
+
+  @Override
+  public String getName() {
+    return "include_once";
+  }
+
+  @Override
+  public String getReference() {
+    return "include file content in current preprocessing context if the file is not included yet";
+  }
+
+  @Override
+  protected boolean isOnlyOnce() {
+    return true;
+  }
+}
@@ -73,6 +73,7 @@ public class WhileDirectiveHandler extends AbstractDirectiveHandler {
     } else {
       state.pushWhile(false);
     }
+    state.skipInactiveBlock(context);
 
     return AfterDirectiveProcessingBehaviour.PROCESSED;
   }
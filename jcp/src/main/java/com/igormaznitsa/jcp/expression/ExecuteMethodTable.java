@@ -0,0 +1,177 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.igormaznitsa.jcp.expression;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.expression.functions.AbstractFunction;
+import com.igormaznitsa.jcp.expression.operators.AbstractOperator;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Table of resolved execute methods of an operator or a function class, it keeps
+ * method handles for argument type combinations to avoid reflection search during every evaluation.
+ * Methods are searched by the same name contract as before: {@code execute} prefix followed by
+ * signatures of argument types.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+final class ExecuteMethodTable {
+
+  private static final ValueType[] VALUE_TYPES = ValueType.values();
+
+  /**
+   * Marker for argument type combinations which don't have any execute method.
+   */
+  private static final MethodHandle NOT_FOUND =
+      MethodHandles.empty(MethodType.methodType(Value.class));
+
+  private static final ClassValue<ExecuteMethodTable> TABLES = new ClassValue<>() {
+    @Override
+    protected ExecuteMethodTable computeValue(final Class<?> type) {
+      return new ExecuteMethodTable(type);
+    }
+  };
+
+  private final Class<?> type;
+  private final AtomicReferenceArray<MethodHandle> operatorHandles =
+      new AtomicReferenceArray<>(VALUE_TYPES.length * VALUE_TYPES.length);
+  private final Map<Object, MethodHandle> functionHandles = new ConcurrentHashMap<>();
+
+  private ExecuteMethodTable(final Class<?> type) {
+    this.type = type;
+  }
+
+  static ExecuteMethodTable forClass(final Class<?> type) {
+    return TABLES.get(type);
+  }
+
+  /**
+   * Make execute method name for argument types.
+   *
+   * @param types argument types, must not be null
+   * @return name of method to process the types
+   */
+  static String makeSignature(final List<ValueType> types) {
+    final StringBuilder result = new StringBuilder(AbstractFunction.EXECUTION_PREFIX);
+    types.forEach(x -> result.append(x.getSignature()));
+    return result.toString();
+  }
+
+  private MethodHandle findPublicMethod(final String name, final Class<?>[] args,
+                                        final MethodType adaptedType) {
+    try {
+      final Method method = this.type.getMethod(name, args);
+      return MethodHandles.publicLookup().unreflect(method).asType(adaptedType);
+    } catch (NoSuchMethodException ex) {
+      return null;
+    } catch (IllegalAccessException ex) {
+      throw new IllegalStateException(
+          "Can't get access to method " + this.type.getName() + '.' + name, ex);
+    }
+  }
+
+  /**
+   * Find operator execute method for arguments, result handle has type
+   * {@code (AbstractOperator,Value)Value} for unary operators and
+   * {@code (AbstractOperator,Value,Value)Value} for binary ones.
+   *
+   * @param arguments operator arguments, must not be null
+   * @return found method handle or null if not found
+   */
+  MethodHandle findOperatorMethod(final Value[] arguments) {
+    final int key = arguments.length == 1 ? arguments[0].getType().ordinal() :
+        arguments[0].getType().ordinal() * VALUE_TYPES.length + arguments[1].getType().ordinal();
+    MethodHandle result = this.operatorHandles.get(key);
+    if (result == null) {
+      result = this.resolveOperatorMethod(arguments);
+      this.operatorHandles.set(key, result == null ? NOT_FOUND : result);
+    }
+    return result == NOT_FOUND ? null : result;
+  }
+
+  private MethodHandle resolveOperatorMethod(final Value[] arguments) {
+    final Class<?>[] methodArguments = new Class<?>[arguments.length];
+    Arrays.fill(methodArguments, Value.class);
+
+    final MethodType adaptedType =
+        MethodType.methodType(Value.class, AbstractOperator.class, methodArguments);
+
+    final ValueType[] types = new ValueType[arguments.length];
+    for (int i = 0; i < arguments.length; i++) {
+      types[i] = arguments[i].getType();
+    }
+
+    MethodHandle result = this.findPublicMethod(makeSignature(List.of(types)), methodArguments,
+        adaptedType);
+    if (result == null) {
+      final ValueType[] anyLeft = types.clone();
+      anyLeft[0] = ValueType.ANY;
+      result = this.findPublicMethod(makeSignature(List.of(anyLeft)), methodArguments,
+          adaptedType);
+    }
+    if (result == null && types.length > 1) {
+      final ValueType[] anyRight = types.clone();
+      anyRight[1] = ValueType.ANY;
+      result = this.findPublicMethod(makeSignature(List.of(anyRight)), methodArguments,
+          adaptedType);
+    }
+    return result;
+  }
+
+  /**
+   * Find function execute method for allowed argument types, result handle has type
+   * {@code (AbstractFunction,PreprocessorContext,Value[])Value}.
+   *
+   * @param allowedTypes argument types allowed by the function, null if it is called for any arity
+   * @param arity        number of arguments
+   * @return found method handle or null if not found
+   */
+  MethodHandle findFunctionMethod(final List<ValueType> allowedTypes, final int arity) {
+    final Object key = allowedTypes == null ? (Object) arity : allowedTypes;
+    MethodHandle result = this.functionHandles.get(key);
+    if (result == null) {
+      final String signature =
+          allowedTypes == null ? makeSignature(List.of(ValueType.ANY)) :
+              makeSignature(allowedTypes);
+
+      final Class<?>[] methodArguments = new Class<?>[arity + 1];
+      methodArguments[0] = PreprocessorContext.class;
+      Arrays.fill(methodArguments, 1, methodArguments.length, Value.class);
+
+      final MethodHandle found = this.findPublicMethod(signature, methodArguments,
+          MethodType.methodType(Value.class, AbstractFunction.class, methodArguments));
+      result = found == null ? NOT_FOUND : found.asSpreader(Value[].class, arity);
+      this.functionHandles.put(key, result);
+    }
+    return result == NOT_FOUND ? null : result;
+  }
+}
@@ -23,6 +23,8 @@ package com.igormaznitsa.jcp.expression;
 
 import static com.igormaznitsa.jcp.expression.ExpressionTreeElement.ANY_ARITY;
 
+import com.igormaznitsa.jcp.containers.DecodedLine;
+import com.igormaznitsa.jcp.context.PreprocessingState;
 import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
 import com.igormaznitsa.jcp.exceptions.PreprocessorException;
@@ -30,9 +32,7 @@ import com.igormaznitsa.jcp.expression.functions.AbstractFunction;
 import com.igormaznitsa.jcp.expression.functions.FunctionDefinedByUser;
 import com.igormaznitsa.jcp.expression.operators.AbstractOperator;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
+import java.lang.invoke.MethodHandle;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
@@ -44,16 +44,6 @@ import java.util.Objects;
  */
 public class Expression {
 
-  /**
-   * Pre-created array for speed up operations
-   */
-  private static final Class<?>[] OPERATOR_SIGNATURE_1 = new Class<?>[] {Value.class};
-
-  /**
-   * Pre-created array for speed up operations
-   */
-  private static final Class<?>[] OPERATOR_SIGNATURE_2 = new Class<?>[] {Value.class, Value.class};
-
   /**
    * The variable contains the expression tree
    */
@@ -64,7 +54,8 @@ public class Expression {
   }
 
   /**
-   * Evaluate expression
+   * Evaluate expression, parsed tree is taken from the current decoded line of the preprocessing state
+   * if it has been attached to the line, otherwise from the expression cache of the context.
    *
    * @param expression the expression as a String, must not be null
    * @param context    a preprocessor context to be used for expression operations
@@ -72,7 +63,15 @@ public class Expression {
    */
   public static Value evalExpression(final String expression, final PreprocessorContext context) {
     try {
-      final ExpressionTree tree = ExpressionParser.getInstance().parse(expression, context);
+      final PreprocessingState state = context.getPreprocessingState();
+      final DecodedLine line = state == null ? null : state.getCurrentDecodedLine();
+      ExpressionTree tree = line == null ? null : line.findExpressionTree(expression);
+      if (tree == null) {
+        tree = context.getExpressionTreeCache().findOrParse(expression, context);
+        if (line != null) {
+          line.putExpressionTree(expression, tree);
+        }
+      }
       return evalTree(tree, context);
     } catch (IOException unexpected) {
       throw context
@@ -108,9 +107,7 @@ public class Expression {
     }
 
     final int arity = children.size();
-    final List<Value> arguments = new ArrayList<>();
-    final Class<?>[] methodArguments = new Class<?>[arity + 1];
-    methodArguments[0] = PreprocessorContext.class;
+    final Value[] arguments = new Value[arity];
 
     final FilePositionInfo[] stack;
     final String sources;
@@ -118,12 +115,6 @@ public class Expression {
     stack = context.getPreprocessingState().makeIncludeStack();
     sources = context.getPreprocessingState().getLastReadString();
 
-    final StringBuilder signature = new StringBuilder(AbstractFunction.EXECUTION_PREFIX);
-
-    for (int i = 1; i <= arity; i++) {
-      methodArguments[i] = Value.class;
-    }
-
     for (int i = 0; i < arity; i++) {
       final ExpressionTreeElement item =
           this.calculateTreeElement(children.get(i), context);
@@ -131,7 +122,7 @@ public class Expression {
       final ExpressionItem itemValue = item.getItem();
 
       if (itemValue instanceof Value) {
-        arguments.add((Value) itemValue);
+        arguments[i] = (Value) itemValue;
       } else {
         throw context.makeException(
             "[Expression]Wrong argument type detected for the '" + functionElement.getName() +
@@ -142,14 +133,14 @@ public class Expression {
     final List<List<ValueType>> allowedSignatures = functionElement.getAllowedArgumentTypes();
     List<ValueType> allowed = null;
     for (final List<ValueType> current : allowedSignatures) {
-      if (current.size() != arguments.size()) {
+      if (current.size() != arguments.length) {
         continue;
       }
       boolean allCompatible = true;
 
       int thatIndex = 0;
       for (final ValueType type : current) {
-        if (!type.isCompatible(arguments.get(thatIndex).getType())) {
+        if (!type.isCompatible(arguments[thatIndex].getType())) {
           allCompatible = false;
           break;
         }
@@ -158,65 +149,67 @@ public class Expression {
 
       if (allCompatible) {
         allowed = current;
-        for (final ValueType type : allowed) {
-          signature.append(type.getSignature());
-        }
         break;
       }
     }
 
-    if (allowed == null) {
-      if (functionElement.getArity().contains(ANY_ARITY)) {
-        signature.append(ValueType.ANY.getSignature());
-      } else {
-        throw context.makeException(
-            "[Expression]Unsupported argument detected for '" + functionElement.getName() + '\'',
-            null);
-      }
+    if (allowed == null && !functionElement.getArity().contains(ANY_ARITY)) {
+      throw context.makeException(
+          "[Expression]Unsupported argument detected for '" + functionElement.getName() + '\'',
+          null);
     }
 
     if (functionElement instanceof FunctionDefinedByUser) {
       final FunctionDefinedByUser userFunction = (FunctionDefinedByUser) functionElement;
       try {
-        return new ExpressionTreeElement(userFunction.execute(context, arguments), stack, sources);
+        return new ExpressionTreeElement(
+            userFunction.execute(context, Arrays.asList(arguments)), stack, sources);
       } catch (Exception unexpected) {
         throw context
             .makeException("[Expression]Unexpected exception during a user function processing",
                 unexpected);
       }
     } else {
-      try {
-        final Method method =
-            functionElement.getClass().getMethod(signature.toString(), methodArguments);
-
-        final Object[] callArgs = new Object[arity + 1];
-        callArgs[0] = context;
-        System.arraycopy(arguments.toArray(), 0, callArgs, 1, arity);
-
-        final Value result = (Value) method.invoke(functionElement, callArgs);
-
-        if (!result.getType().isCompatible(functionElement.getResultType())) {
-          throw context.makeException("[Expression]Unsupported function result detected [" +
-              result.getType().getSignature() + ']', null);
-        }
-
-        return new ExpressionTreeElement(result, stack, sources);
-      } catch (NoSuchMethodException unexpected) {
+      final MethodHandle method =
+          ExecuteMethodTable.forClass(functionElement.getClass())
+              .findFunctionMethod(allowed, arity);
+      if (method == null) {
         throw context.makeException(
-            "[Expression]Can't find a function method to process data [" + signature +
-                ']', unexpected);
-      } catch (Exception unexpected) {
-        final Throwable cause = unexpected.getCause();
-        if (cause instanceof PreprocessorException) {
-          throw (PreprocessorException) cause;
+            "[Expression]Can't find a function method to process data [" +
+                makeFunctionSignature(allowed) + ']', null);
+      }
+
+      final Value result;
+      try {
+        final Object lock = functionElement.findExecutionLock(context);
+        if (lock == null) {
+          result = (Value) method.invokeExact(functionElement, context, arguments);
+        } else {
+          synchronized (lock) {
+            result = (Value) method.invokeExact(functionElement, context, arguments);
+          }
         }
+      } catch (PreprocessorException ex) {
+        throw ex;
+      } catch (Throwable unexpected) {
         throw context.makeException(
             "[Expression]Can't execute a function method to process data [" +
-                functionElement.getClass().getName() + '.' + signature + ']', unexpected);
+                functionElement.getClass().getName() + '.' + makeFunctionSignature(allowed) + ']',
+            unexpected);
       }
+
+      if (!result.getType().isCompatible(functionElement.getResultType())) {
+        throw context.makeException("[Expression]Unsupported function result detected [" +
+            result.getType().getSignature() + ']', null);
+      }
+
+      return new ExpressionTreeElement(result, stack, sources);
     }
   }
 
+  private static String makeFunctionSignature(final List<ValueType> allowed) {
+    return ExecuteMethodTable.makeSignature(allowed == null ? List.of(ValueType.ANY) : allowed);
+  }
 
   private ExpressionTreeElement evalOperator(final ExpressionTreeElement operatorElement,
                                              final PreprocessorContext context) {
@@ -225,11 +218,6 @@ public class Expression {
     final int arity = operator.getArity();
 
     final Value[] arguments = new Value[arity];
-    final Class<?>[] methodArguments = arity == 1 ? OPERATOR_SIGNATURE_1 : OPERATOR_SIGNATURE_2;
-
-    final StringBuilder signatureNormal = new StringBuilder(AbstractOperator.EXECUTION_PREFIX);
-    final StringBuilder signatureAnyLeft = new StringBuilder(AbstractOperator.EXECUTION_PREFIX);
-    final StringBuilder signatureAnyRight = new StringBuilder(AbstractOperator.EXECUTION_PREFIX);
 
     final FilePositionInfo[] stack;
     final String sources;
@@ -256,68 +244,111 @@ public class Expression {
             "[Expression]Non-value detected for the '" + operator.getKeyword() + "' operator",
             null);
       }
-    }
 
-    int argIndex = 0;
-    for (final Value value : arguments) {
-      final String typeSignature = value.getType().getSignature();
-      signatureNormal.append(typeSignature);
-      if (argIndex == 0) {
-        signatureAnyLeft.append(ValueType.ANY.getSignature());
-      } else {
-        signatureAnyLeft.append(typeSignature);
-      }
-
-      if (argIndex == 1) {
-        signatureAnyRight.append(ValueType.ANY.getSignature());
-      } else {
-        signatureAnyRight.append(typeSignature);
-      }
-      argIndex++;
-    }
-
-    Method executeMethod = null;
-
-    try {
-      executeMethod = operator.getClass().getMethod(signatureNormal.toString(), methodArguments);
-    } catch (NoSuchMethodException ex) {
-      try {
-        executeMethod = operator.getClass().getMethod(signatureAnyLeft.toString(), methodArguments);
-      } catch (NoSuchMethodException ex2) {
-        try {
-          executeMethod =
-              operator.getClass().getMethod(signatureAnyRight.toString(), methodArguments);
-        } catch (NoSuchMethodException ex3) {
-          // DO NOTHING
+      if (i == 0 && arity == 2 && operator.isShortCircuit()) {
+        final Value shortCircuitResult = operator.findShortCircuitResult(arguments[0]);
+        if (shortCircuitResult != null && arguments[0].getType()
+            == findResultTypeBeforeCalculation(operatorElement.getChildForIndex(1))) {
+          return new ExpressionTreeElement(shortCircuitResult, stack, sources);
         }
       }
     }
 
+    final MethodHandle executeMethod =
+        ExecuteMethodTable.forClass(operator.getClass()).findOperatorMethod(arguments);
+
     if (executeMethod == null) {
       throw context.makeException(
           "[Expression]Unsupported arguments detected for operator '" + operator.getKeyword() +
               "' " + Arrays.toString(arguments), null);
     }
 
+    final Value result;
     try {
-      return new ExpressionTreeElement((Value) executeMethod.invoke(operator, (Object[]) arguments),
-          stack, sources);
+      if (arity == 1) {
+        result = (Value) executeMethod.invokeExact(operator, arguments[0]);
+      } else {
+        result = (Value) executeMethod.invokeExact(operator, arguments[0], arguments[1]);
+      }
     } catch (ArithmeticException arithEx) {
       throw arithEx;
-    } catch (InvocationTargetException ex) {
-      final Throwable thr = ex.getTargetException();
-      if (thr instanceof ArithmeticException) {
-        throw (ArithmeticException) thr;
-      }
+    } catch (Throwable thr) {
       throw new RuntimeException(
           "Invocation exception during '" + operator.getKeyword() + "' processing", thr);
-    } catch (Exception unexpected) {
-      throw context
-          .makeException("[Exception]Exception during '" + operator.getKeyword() + "' processing",
-              unexpected);
+    }
+    return new ExpressionTreeElement(result, stack, sources);
+  }
+
+
+  /**
+   * Find type of a tree element result without its calculation.
+   *
+   * @param element the tree element, must not be null
+   * @return the result type or null if it can't be known before calculation
+   */
+  private static ValueType findResultTypeBeforeCalculation(final ExpressionTreeElement element) {
+    if (element == ExpressionTreeElement.EMPTY_SLOT) {
+      return null;
+    }
+    final ExpressionItem item = element.getItem();
+    switch (item.getExpressionItemType()) {
+      case VALUE:
+        return ((Value) item).getType();
+      case FUNCTION: {
+        final AbstractFunction function = (AbstractFunction) item;
+        final List<ExpressionTreeElement> children = element.extractEffectiveChildren();
+        final ValueType[] argumentTypes = new ValueType[children.size()];
+        for (int i = 0; i < argumentTypes.length; i++) {
+          argumentTypes[i] = findResultTypeBeforeCalculation(children.get(i));
+        }
+        if (!isSignatureAllowed(function, argumentTypes)) {
+          return null;
+        }
+        final ValueType type = function.getResultType();
+        return type == ValueType.ANY ? null : type;
+      }
+      case OPERATOR: {
+        final AbstractOperator operator = (AbstractOperator) item;
+        final ValueType[] argumentTypes = new ValueType[operator.getArity()];
+        for (int i = 0; i < argumentTypes.length; i++) {
+          final ExpressionTreeElement child = element.getChildForIndex(i);
+          if (child == ExpressionTreeElement.EMPTY_SLOT) {
+            return null;
+          }
+          argumentTypes[i] = findResultTypeBeforeCalculation(child);
+        }
+        return operator.findResultType(argumentTypes);
+      }
+      default:
+        return null;
     }
   }
 
+  /**
+   * Check that a function has signature allowing arguments of types found before calculation. Arguments
+   * which types can't be found before calculation (for instance variables) are checked during calculation.
+   *
+   * @param function      the function, must not be null
+   * @param argumentTypes types of arguments, must not be null, elements are null for unknown types
+   * @return true if there is an allowed signature compatible with the argument types, false otherwise
+   */
+  private static boolean isSignatureAllowed(final AbstractFunction function,
+                                            final ValueType[] argumentTypes) {
+    for (final List<ValueType> signature : function.getAllowedArgumentTypes()) {
+      if (signature.size() != argumentTypes.length) {
+        continue;
+      }
+      boolean allCompatible = true;
+      for (int i = 0; i < argumentTypes.length && allCompatible; i++) {
+        allCompatible =
+            argumentTypes[i] == null || signature.get(i).isCompatible(argumentTypes[i]);
+      }
+      if (allCompatible) {
+        return true;
+      }
+    }
+    return false;
+  }
 
   private ExpressionTreeElement calculateTreeElement(final ExpressionTreeElement element,
                                                      final PreprocessorContext context) {
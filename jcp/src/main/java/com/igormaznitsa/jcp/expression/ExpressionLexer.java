@@ -0,0 +1,547 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.expression;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.expression.functions.AbstractFunction;
+import com.igormaznitsa.jcp.expression.functions.FunctionDefinedByUser;
+import com.igormaznitsa.jcp.expression.operators.AbstractOperator;
+import com.igormaznitsa.jcp.extension.PreprocessorExtension;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lexer of expressions working on offsets in source char sequence. Found token is kept as span in the
+ * source, operators, functions and boolean constants are resolved through precomputed tables without
+ * making strings, so that only values and variables make new objects.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+final class ExpressionLexer {
+
+  private static volatile NameTables nameTables;
+
+  private final CharSequence text;
+  private final int length;
+  private final StringBuilder stringBuffer = new StringBuilder();
+  private int position;
+
+  private State tokenState;
+  private int tokenStart;
+  private int tokenEnd;
+  private int tokenSkippedIndex;
+
+  ExpressionLexer(final CharSequence text) {
+    this.text = text;
+    this.length = text.length();
+  }
+
+  private static boolean isDelimiter(final char chr) {
+    switch (chr) {
+      case ',':
+      case '(':
+      case ')':
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isOperatorChar(final char chr) {
+    switch (chr) {
+      case '-':
+      case '+':
+      case '%':
+      case '*':
+      case '/':
+      case '&':
+      case '|':
+      case '!':
+      case '^':
+      case '=':
+      case '<':
+      case '>':
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isHexDigit(final char chr) {
+    return Character.isDigit(chr) || (chr >= 'a' && chr <= 'f') || (chr >= 'A' && chr <= 'F');
+  }
+
+  private static int hex2int(final PreprocessorContext context, final char chr) {
+    final int result;
+    if (Character.isDigit(chr)) {
+      result = chr - '0';
+    } else {
+      result = 10 + (chr - Character.toLowerCase(chr) - 'a');
+      if (result < 10 || result > 15) {
+        throw context.makeException("Unexpected hex digit detected: " + chr, null);
+      }
+    }
+    return result;
+  }
+
+  private static NameTables getNameTables() {
+    final List<AbstractOperator> operators = AbstractOperator.getAllOperators();
+    final Map<String, AbstractFunction> functions = AbstractFunction.getFunctionNameMap();
+    NameTables result = nameTables;
+    if (result == null || result.operators != operators || result.functions != functions) {
+      result = new NameTables(operators, functions);
+      nameTables = result;
+    }
+    return result;
+  }
+
+  /**
+   * Read next item.
+   *
+   * @param context preprocessor context, must not be null
+   * @return the next expression item or null if end of the source
+   */
+  ExpressionItem nextItem(final PreprocessorContext context) {
+    State state = State.WAIT;
+    int pos = this.position;
+    int start = pos;
+    int skippedIndex = -1;
+    char unicodeChar = 0;
+    boolean found = false;
+
+    while (!found) {
+      if (pos >= this.length) {
+        if (state != State.WAIT) {
+          found = true;
+        }
+        break;
+      }
+
+      final char chr = this.text.charAt(pos++);
+
+      switch (state) {
+        case WAIT: {
+          start = pos - 1;
+          if (Character.isWhitespace(chr)) {
+            // do nothing
+          } else if (chr == ',') {
+            state = State.COMMA;
+            found = true;
+          } else if (chr == '(') {
+            state = State.BRACKET_OPENING;
+            found = true;
+          } else if (chr == ')') {
+            state = State.BRACKET_CLOSING;
+            found = true;
+          } else if (Character.isDigit(chr)) {
+            state = chr == '0' ? State.HEX_NUMBER : State.NUMBER;
+          } else if (chr == '.') {
+            state = State.FLOAT_NUMBER;
+          } else if (Character.isLetter(chr) || chr == '$' || chr == '_') {
+            state = State.VALUE_OR_FUNCTION;
+          } else if (chr == '\"') {
+            this.stringBuffer.setLength(0);
+            state = State.STRING;
+          } else if (isOperatorChar(chr)) {
+            state = State.OPERATOR;
+          } else {
+            throw context
+                .makeException("Unsupported token character detected '" + chr + '\'', null);
+          }
+        }
+        break;
+        case OPERATOR: {
+          if (!isOperatorChar(chr) || isDelimiter(chr)) {
+            pos--;
+            found = true;
+          }
+        }
+        break;
+        case FLOAT_NUMBER: {
+          if (!Character.isDigit(chr)) {
+            pos--;
+            found = true;
+          }
+        }
+        break;
+        case HEX_NUMBER: {
+          if (pos - 1 - start == 1) {
+            if (chr == 'X' || chr == 'x') {
+              // prefix
+            } else if (chr == '.') {
+              state = State.FLOAT_NUMBER;
+            } else if (Character.isDigit(chr)) {
+              // the first digit after leading zero is ignored
+              skippedIndex = pos - 1;
+              state = State.NUMBER;
+            } else {
+              state = State.NUMBER;
+              pos--;
+              found = true;
+            }
+          } else if (!isHexDigit(chr)) {
+            pos--;
+            found = true;
+          }
+        }
+        break;
+        case UNICODE_DIGIT0:
+          unicodeChar = (char) (hex2int(context, chr) << 12);
+          state = State.UNICODE_DIGIT1;
+          break;
+        case UNICODE_DIGIT1:
+          unicodeChar = (char) (unicodeChar | (hex2int(context, chr) << 8));
+          state = State.UNICODE_DIGIT2;
+          break;
+        case UNICODE_DIGIT2:
+          unicodeChar = (char) (unicodeChar | (hex2int(context, chr) << 4));
+          state = State.UNICODE_DIGIT3;
+          break;
+        case UNICODE_DIGIT3:
+          unicodeChar = (char) (unicodeChar | hex2int(context, chr));
+          state = State.STRING;
+          this.stringBuffer.append(unicodeChar);
+          break;
+        case NUMBER: {
+          if (chr == '.') {
+            state = State.FLOAT_NUMBER;
+          } else if (!Character.isDigit(chr)) {
+            pos--;
+            found = true;
+          }
+        }
+        break;
+        case VALUE_OR_FUNCTION: {
+          if (Character.isWhitespace(chr) || isDelimiter(chr) || isOperatorChar(chr)) {
+            pos--;
+            found = true;
+          }
+        }
+        break;
+        case SPECIAL_CHAR: {
+          switch (chr) {
+            case 'n':
+              this.stringBuffer.append('\n');
+              break;
+            case 't':
+              this.stringBuffer.append('\t');
+              break;
+            case 'b':
+              this.stringBuffer.append('\b');
+              break;
+            case 'f':
+              this.stringBuffer.append('\f');
+              break;
+            case 'r':
+              this.stringBuffer.append('\r');
+              break;
+            case '\\':
+              this.stringBuffer.append('\\');
+              break;
+            case '\"':
+              this.stringBuffer.append('\"');
+              break;
+            case '\'':
+              this.stringBuffer.append('\'');
+              break;
+            case 'u':
+              state = State.UNICODE_DIGIT0;
+              break;
+            default: {
+              throw context
+                  .makeException("Unsupported special char detected '\\" + chr + '\'', null);
+            }
+          }
+          state = state == State.SPECIAL_CHAR ? State.STRING : state;
+        }
+        break;
+        case STRING: {
+          if (chr == '\"') {
+            found = true;
+          } else if (chr == '\\') {
+            state = State.SPECIAL_CHAR;
+          } else {
+            this.stringBuffer.append(chr);
+          }
+        }
+        break;
+        default:
+          throw new Error("Unsupported parser state [" + state.name() + ']');
+      }
+    }
+
+    this.position = pos;
+
+    if (!found) {
+      return null;
+    }
+
+    this.tokenState = state;
+    this.tokenStart = start;
+    this.tokenEnd = pos;
+    this.tokenSkippedIndex = skippedIndex;
+    return this.makeItem(context);
+  }
+
+  private String makeTokenText() {
+    if (this.tokenSkippedIndex < 0) {
+      return this.text.subSequence(this.tokenStart, this.tokenEnd).toString();
+    }
+    return new StringBuilder(this.tokenEnd - this.tokenStart - 1)
+        .append(this.text, this.tokenStart, this.tokenSkippedIndex)
+        .append(this.text, this.tokenSkippedIndex + 1, this.tokenEnd)
+        .toString();
+  }
+
+  /**
+   * Make expression item for the last found token.
+   *
+   * @param context preprocessor context, must not be null
+   * @return expression item for the token, must not be null
+   */
+  private ExpressionItem makeItem(final PreprocessorContext context) {
+    switch (this.tokenState) {
+      case COMMA:
+        return ExpressionParser.SpecialItem.COMMA;
+      case BRACKET_OPENING:
+        return ExpressionParser.SpecialItem.BRACKET_OPENING;
+      case BRACKET_CLOSING:
+        return ExpressionParser.SpecialItem.BRACKET_CLOSING;
+      case FLOAT_NUMBER:
+        return Value.valueOf(Float.parseFloat(this.makeTokenText()));
+      case HEX_NUMBER: {
+        if (this.tokenEnd - this.tokenStart == 1) {
+          return Value.INT_ZERO;
+        }
+        if (this.tokenEnd - this.tokenStart == 2) {
+          // keep the same error message as for prefix without digits
+          return Value.valueOf(Long.parseLong("", 16));
+        }
+        return Value.valueOf(Long.parseLong(this.text, this.tokenStart + 2, this.tokenEnd, 16));
+      }
+      case NUMBER: {
+        if (this.tokenSkippedIndex < 0) {
+          return Value.valueOf(Long.parseLong(this.text, this.tokenStart, this.tokenEnd, 10));
+        }
+        return Value.valueOf(Long.parseLong(this.makeTokenText()));
+      }
+      case OPERATOR: {
+        final AbstractOperator operator =
+            getNameTables().findOperator(this.text, this.tokenStart, this.tokenEnd);
+        if (operator == null) {
+          throw context.makeException("Unknown operator detected '"
+              + this.makeTokenText().toLowerCase(Locale.ROOT) + '\'', null);
+        }
+        return operator;
+      }
+      case STRING:
+      case SPECIAL_CHAR:
+      case UNICODE_DIGIT0:
+      case UNICODE_DIGIT1:
+      case UNICODE_DIGIT2:
+      case UNICODE_DIGIT3: {
+        if (this.tokenState != State.STRING) {
+          throw new Error("Unsupported final parser state detected [" + this.tokenState.name() + ']');
+        }
+        return Value.valueOf(this.stringBuffer.toString());
+      }
+      case VALUE_OR_FUNCTION: {
+        if (this.text.charAt(this.tokenStart) == '$') {
+          return makeUserFunction(context, this.makeTokenText().toLowerCase());
+        }
+        final ExpressionItem known =
+            getNameTables().findName(this.text, this.tokenStart, this.tokenEnd);
+        return known == null ? new Variable(this.makeTokenText().toLowerCase()) : known;
+      }
+      default: {
+        throw new Error("Unsupported final parser state detected [" + this.tokenState.name() + ']');
+      }
+    }
+  }
+
+  private static ExpressionItem makeUserFunction(final PreprocessorContext context,
+                                                 final String name) {
+    final List<PreprocessorExtension> extensions = context.getPreprocessorExtensions();
+    if (extensions.isEmpty()) {
+      throw context.makeException(
+          "There is not any defined preprocessor extension to get data about user functions [" +
+              name + ']', null);
+    }
+
+    final String userFunctionName = name.substring(1);
+
+    final PreprocessorExtension preprocessorExtension =
+        extensions.stream()
+            .filter(x -> x.isAllowed(context))
+            .filter(x -> x.hasUserFunction(userFunctionName, Set.of()))
+            .findFirst().orElse(null);
+
+    if (preprocessorExtension == null) {
+      throw context.makeException(
+          "Can't find any preprocessor extension processing the user functions [" +
+              userFunctionName + ']', null);
+    }
+    final Set<Integer> arities = preprocessorExtension.getUserFunctionArity(userFunctionName);
+    if (arities.isEmpty()) {
+      throw context.makeException(
+          "Empty arity set for preprocessor extension processing the user functions [" +
+              userFunctionName + ']', null);
+    }
+    return new FunctionDefinedByUser(userFunctionName, arities, context);
+  }
+
+  /**
+   * Internal lexer states, final state of found token defines its type.
+   */
+  private enum State {
+    WAIT,
+    COMMA,
+    BRACKET_OPENING,
+    BRACKET_CLOSING,
+    NUMBER,
+    HEX_NUMBER,
+    FLOAT_NUMBER,
+    STRING,
+    SPECIAL_CHAR,
+    UNICODE_DIGIT0,
+    UNICODE_DIGIT1,
+    UNICODE_DIGIT2,
+    UNICODE_DIGIT3,
+    VALUE_OR_FUNCTION,
+    OPERATOR
+  }
+
+  /**
+   * Precomputed tables of operators and names, rebuilt if lists of operators or functions are changed.
+   * Names are compared in lower case and only ASCII chars can match.
+   */
+  private static final class NameTables {
+    private final List<AbstractOperator> operators;
+    private final Map<String, AbstractFunction> functions;
+    private final AbstractOperator[][] operatorsByFirstChar = new AbstractOperator[128][];
+    private final String[] names;
+    private final ExpressionItem[] items;
+    private final int mask;
+
+    NameTables(final List<AbstractOperator> operators,
+               final Map<String, AbstractFunction> functions) {
+      this.operators = operators;
+      this.functions = functions;
+
+      for (final AbstractOperator operator : operators) {
+        final String keyword = operator.getKeyword();
+        final char first = keyword.charAt(0);
+        if (first < 128) {
+          final AbstractOperator[] current = this.operatorsByFirstChar[first];
+          final AbstractOperator[] extended;
+          if (current == null) {
+            extended = new AbstractOperator[1];
+          } else {
+            extended = Arrays.copyOf(current, current.length + 1);
+          }
+          extended[extended.length - 1] = operator;
+          this.operatorsByFirstChar[first] = extended;
+        }
+      }
+
+      int size = 16;
+      while (size < (functions.size() + 2) * 2) {
+        size <<= 1;
+      }
+      this.mask = size - 1;
+      this.names = new String[size];
+      this.items = new ExpressionItem[size];
+      this.put("true", Value.BOOLEAN_TRUE);
+      this.put("false", Value.BOOLEAN_FALSE);
+      functions.forEach((name, function) -> {
+        if (!"true".equals(name) && !"false".equals(name)) {
+          this.put(name, function);
+        }
+      });
+    }
+
+    private static int hash(final CharSequence text, final int start, final int end) {
+      int result = 0;
+      for (int i = start; i < end; i++) {
+        result = result * 31 + Character.toLowerCase(text.charAt(i));
+      }
+      return result ^ (result >>> 16);
+    }
+
+    private void put(final String name, final ExpressionItem item) {
+      for (int i = 0; i < name.length(); i++) {
+        if (name.charAt(i) >= 128) {
+          return;
+        }
+      }
+      int index = hash(name, 0, name.length()) & this.mask;
+      while (this.names[index] != null) {
+        index = (index + 1) & this.mask;
+      }
+      this.names[index] = name;
+      this.items[index] = item;
+    }
+
+    private static boolean matches(final String name, final CharSequence text, final int start,
+                                   final int end) {
+      if (name.length() != end - start) {
+        return false;
+      }
+      for (int i = 0; i < name.length(); i++) {
+        final char chr = text.charAt(start + i);
+        if (chr >= 128 || Character.toLowerCase(chr) != name.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    ExpressionItem findName(final CharSequence text, final int start, final int end) {
+      int index = hash(text, start, end) & this.mask;
+      String name;
+      while ((name = this.names[index]) != null) {
+        if (matches(name, text, start, end)) {
+          return this.items[index];
+        }
+        index = (index + 1) & this.mask;
+      }
+      return null;
+    }
+
+    AbstractOperator findOperator(final CharSequence text, final int start, final int end) {
+      final char first = text.charAt(start);
+      final AbstractOperator[] candidates = first < 128 ? this.operatorsByFirstChar[first] : null;
+      if (candidates != null) {
+        for (final AbstractOperator operator : candidates) {
+          if (matches(operator.getKeyword(), text, start, end)) {
+            return operator;
+          }
+        }
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.igormaznitsa.jcp.expression;
+
+import static java.util.Objects.requireNonNull;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded thread-safe cache of parsed expression trees keyed by expression text.
+ * Cached trees are not changed during evaluation and their values are calculated for the current state of a context,
+ * so that the current file position of the context is used for error messages.
+ * Expressions containing user functions are not cached because their parsing depends on context extensions.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+public final class ExpressionTreeCache {
+
+  public static final int DEFAULT_CAPACITY = 2048;
+
+  private final int capacity;
+  private final Map<String, ExpressionTree> cache;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  public ExpressionTreeCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public ExpressionTreeCache(final int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+    }
+    this.capacity = capacity;
+    this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, ExpressionTree> eldest) {
+        return this.size() > ExpressionTreeCache.this.capacity;
+      }
+    };
+  }
+
+  /**
+   * Check that parsed tree of an expression depends only on its text and can be reused.
+   *
+   * @param expression the expression text, must not be null
+   * @return true if the expression doesn't contain user functions
+   */
+  public static boolean isCacheable(final String expression) {
+    return expression.indexOf('$') < 0;
+  }
+
+  /**
+   * Find parsed tree for expression or parse it and place into the cache.
+   *
+   * @param expression the expression text, must not be null
+   * @param context    the preprocessor context to be used for parsing, must not be null
+   * @return parsed expression tree, must not be changed by caller
+   * @throws IOException it will be thrown if there is a problem to read the expression string
+   */
+  public ExpressionTree findOrParse(final String expression, final PreprocessorContext context)
+      throws IOException {
+    requireNonNull(expression, "Expression is null");
+    if (this.capacity == 0 || !isCacheable(expression)) {
+      return ExpressionParser.getInstance().parse(expression, context);
+    }
+
+    ExpressionTree result;
+    synchronized (this.cache) {
+      result = this.cache.get(expression);
+    }
+    if (result == null) {
+      this.misses.incrementAndGet();
+      result = ExpressionParser.getInstance().parse(expression, context);
+      synchronized (this.cache) {
+        this.cache.put(expression, result);
+      }
+    } else {
+      this.hits.incrementAndGet();
+    }
+    return result;
+  }
+
+  public int getCapacity() {
+    return this.capacity;
+  }
+
+  public int size() {
+    synchronized (this.cache) {
+      return this.cache.size();
+    }
+  }
+
+  public long getHits() {
+    return this.hits.get();
+  }
+
+  public long getMisses() {
+    return this.misses.get();
+  }
+
+  public void clear() {
+    synchronized (this.cache) {
+      this.cache.clear();
+    }
+    this.hits.set(0L);
+    this.misses.set(0L);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s(size=%d, capacity=%d, hits=%d, misses=%d)",
+        this.getClass().getSimpleName(), this.size(), this.capacity, this.getHits(),
+        this.getMisses());
+  }
+}
@@ -23,6 +23,7 @@ package com.igormaznitsa.jcp.expression.functions;
 
 import static com.igormaznitsa.jcp.expression.ExpressionTreeElement.ANY_ARITY;
 
+import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.expression.ExpressionItem;
 import com.igormaznitsa.jcp.expression.ExpressionItemPriority;
 import com.igormaznitsa.jcp.expression.ExpressionItemType;
@@ -196,6 +197,18 @@ public abstract class AbstractFunction implements ExpressionItem {
    */
   public abstract ValueType getResultType();
 
+  /**
+   * Find object to be locked during execution of the function. It allows to serialize calls of functions
+   * working with state shared between a context and its clones processed by different threads.
+   *
+   * @param context the preprocessor context, must not be null
+   * @return object to be locked during execution or null if the function doesn't need lock
+   * @since 7.3.1
+   */
+  public Object findExecutionLock(final PreprocessorContext context) {
+    return null;
+  }
+
   /**
    * Get the priority of the function in the expression tree
    *
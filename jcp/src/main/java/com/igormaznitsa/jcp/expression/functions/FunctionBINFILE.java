@@ -25,16 +25,19 @@ import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.expression.Value;
 import com.igormaznitsa.jcp.expression.ValueType;
 import com.igormaznitsa.jcp.utils.PreprocessorUtils;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.function.IntFunction;
 import java.util.zip.Deflater;
-import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.io.FileUtils;
+import java.util.zip.DeflaterInputStream;
 
 /**
  * The Function loads bin file and encodes it into string.
@@ -47,6 +50,9 @@ public class FunctionBINFILE extends AbstractFunction {
   private static final List<List<ValueType>> ARG_TYPES =
       List.of(List.of(ValueType.STRING, ValueType.STRING));
 
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final long MAX_PREALLOCATED_CHARS = Integer.MAX_VALUE - 16L;
+
   private static boolean hasSplitFlag(final String name, final Type type) {
     final String opts = name.substring(type.name.length());
     return opts.contains("S") || opts.contains("s");
@@ -58,94 +64,116 @@ public class FunctionBINFILE extends AbstractFunction {
   }
 
 
-  private static String convertTo(final File file, final Type type, final boolean deflate,
-                                  final int lineLength, final String endOfLine) throws IOException {
-    final StringBuilder result = new StringBuilder(512);
-    byte[] array = FileUtils.readFileToByteArray(file);
-
-    if (deflate) {
-      array = deflate(array);
+  private static String[] makeTokens(final IntFunction<String> formatter) {
+    final String[] result = new String[256];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = formatter.apply(i);
     }
+    return result;
+  }
 
-    boolean addNextLine = false;
-
-    int visibleLineCharsCounter = 0;
+  private static InputStream openStream(final File file, final Deflater deflater)
+      throws IOException {
+    final InputStream result = Files.newInputStream(file.toPath());
+    return deflater == null ? result : new DeflaterInputStream(result, deflater, BUFFER_SIZE);
+  }
 
-    switch (type) {
-      case BASE64: {
-        final String baseEncoded =
-            new Base64(lineLength, endOfLine.getBytes(StandardCharsets.UTF_8), false)
-                .encodeAsString(array);
-        result.append(baseEncoded.trim());
+  private static String convertTo(final File file, final Type type, final boolean deflate,
+                                  final int lineLength, final String endOfLine) throws IOException {
+    final Deflater deflater = deflate ? new Deflater(Deflater.BEST_COMPRESSION) : null;
+    try (final InputStream in = openStream(file, deflater)) {
+      final long sourceLength = deflate ? BUFFER_SIZE : file.length();
+      switch (type) {
+        case BASE64:
+          return encodeBase64(in, sourceLength, lineLength, endOfLine);
+        case BYTEARRAY:
+        case INT8:
+        case UINT8:
+          return encodeArray(in, sourceLength, type.tokens, lineLength, endOfLine);
+        default:
+          throw new Error("Unexpected type : " + type);
       }
-      break;
-      case BYTEARRAY:
-      case INT8:
-      case UINT8: {
-        for (final byte b : array) {
-          if (result.length() > 0) {
-            result.append(',');
-            visibleLineCharsCounter++;
-          }
+    } finally {
+      if (deflater != null) {
+        deflater.end();
+      }
+    }
+  }
 
-          if (addNextLine) {
-            addNextLine = false;
-            visibleLineCharsCounter = 0;
-            result.append(endOfLine);
-          }
+  private static StringBuilder makeBuffer(final long expectedChars, final int lineLength,
+                                          final String endOfLine) {
+    long chars = expectedChars;
+    if (lineLength > 0) {
+      chars += (chars / lineLength + 1L) * endOfLine.length();
+    }
+    return new StringBuilder((int) Math.max(512L, Math.min(chars, MAX_PREALLOCATED_CHARS)));
+  }
 
-          final int initialBufferLength = result.length();
-          switch (type) {
-            case BYTEARRAY: {
-              result.append("(byte)0x")
-                  .append(Integer.toHexString(b & 0xFF).toUpperCase(Locale.ROOT));
-            }
-            break;
-            case UINT8: {
-              result.append(Integer.toString(b & 0xFF).toUpperCase(Locale.ROOT));
-            }
-            break;
-            case INT8: {
-              result.append(Integer.toString(b).toUpperCase(Locale.ROOT));
-            }
-            break;
-            default:
-              throw new Error("Unexpected type : " + type);
-          }
-          visibleLineCharsCounter += result.length() - initialBufferLength;
+  private static String encodeBase64(final InputStream in, final long sourceLength,
+                                     final int lineLength, final String endOfLine)
+      throws IOException {
+    final StringBuilder result = makeBuffer(sourceLength * 4L / 3L + 4L, lineLength, endOfLine);
+    final Base64.Encoder encoder;
+    final byte[] buffer;
+    if (lineLength > 0) {
+      // chunk contains whole number of lines to be encoded independently
+      final int bytesPerLine = lineLength / 4 * 3;
+      encoder = Base64.getMimeEncoder(lineLength, endOfLine.getBytes(StandardCharsets.ISO_8859_1));
+      buffer = new byte[Math.max(1, BUFFER_SIZE / bytesPerLine) * bytesPerLine];
+    } else {
+      encoder = Base64.getEncoder();
+      buffer = new byte[BUFFER_SIZE / 3 * 3];
+    }
 
-          if (lineLength > 0 && visibleLineCharsCounter >= lineLength) {
-            addNextLine = true;
-          }
-        }
+    int read;
+    while ((read = in.readNBytes(buffer, 0, buffer.length)) > 0) {
+      if (lineLength > 0 && result.length() > 0) {
+        result.append(endOfLine);
       }
-      break;
-      default:
-        throw new Error("Unexpected type : " + type);
+      final byte[] encoded =
+          encoder.encode(read == buffer.length ? buffer : Arrays.copyOf(buffer, read));
+      result.append(new String(encoded, StandardCharsets.ISO_8859_1));
     }
-
     return result.toString();
   }
 
+  private static String encodeArray(final InputStream in, final long sourceLength,
+                                    final String[] tokens, final int lineLength,
+                                    final String endOfLine) throws IOException {
+    final int maxTokenLength = Arrays.stream(tokens).mapToInt(String::length).max().orElse(0);
+    final StringBuilder result =
+        makeBuffer(sourceLength * (maxTokenLength + 1L), lineLength, endOfLine);
+    final byte[] buffer = new byte[BUFFER_SIZE];
+    boolean first = true;
+    boolean addNextLine = false;
+    int visibleLineCharsCounter = 0;
 
-  private static byte[] deflate(final byte[] data) throws IOException {
-    final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
-    deflater.setInput(data);
-
-    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
+    int read;
+    while ((read = in.read(buffer)) >= 0) {
+      for (int i = 0; i < read; i++) {
+        if (first) {
+          first = false;
+        } else {
+          result.append(',');
+          visibleLineCharsCounter++;
+        }
 
-    deflater.finish();
-    final byte[] buffer = new byte[1024];
-    while (!deflater.finished()) {
-      final int count = deflater.deflate(buffer);
-      outputStream.write(buffer, 0, count);
-    }
-    outputStream.close();
-    final byte[] output = outputStream.toByteArray();
+        if (addNextLine) {
+          addNextLine = false;
+          visibleLineCharsCounter = 0;
+          result.append(endOfLine);
+        }
 
-    deflater.end();
+        final String token = tokens[buffer[i] & 0xFF];
+        result.append(token);
+        visibleLineCharsCounter += token.length();
 
-    return output;
+        if (lineLength > 0 && visibleLineCharsCounter >= lineLength) {
+          addNextLine = true;
+        }
+      }
+    }
+    return result.toString();
   }
 
   @Override
@@ -207,22 +235,27 @@ public class FunctionBINFILE extends AbstractFunction {
       PreprocessorUtils.findActiveFileInfoContainer(context)
           .ifPresent(t ->
               t.getIncludedSources().add(theFile));
-      return Value.valueOf(convertTo(theFile, type, doDeflate, lengthOfLine, endOfLine));
+      final String encoding = type.name + (lengthOfLine > 0 ? "s" : "") + (doDeflate ? "d" : "");
+      return Value.valueOf(context.getBinFileCache().findOrEncode(theFile, encoding,
+          f -> convertTo(f, type, doDeflate, lengthOfLine, endOfLine)));
     } catch (Exception ex) {
       throw context.makeException("Unexpected exception", ex);
     }
   }
 
   private enum Type {
-    BASE64("base64"),
-    BYTEARRAY("byte[]"),
-    UINT8("uint8[]"),
-    INT8("int8[]");
+    BASE64("base64", null),
+    BYTEARRAY("byte[]",
+        makeTokens(b -> "(byte)0x" + Integer.toHexString(b).toUpperCase(Locale.ROOT))),
+    UINT8("uint8[]", makeTokens(Integer::toString)),
+    INT8("int8[]", makeTokens(b -> Integer.toString((byte) b)));
 
     private final String name;
+    private final String[] tokens;
 
-    Type(final String name) {
+    Type(final String name, final String[] tokens) {
       this.name = name;
+      this.tokens = tokens;
     }
 
 
@@ -26,17 +26,23 @@ import static com.igormaznitsa.jcp.utils.PreprocessorUtils.findActiveFileInfoCon
 
 import com.igormaznitsa.jcp.containers.FileInfoContainer;
 import com.igormaznitsa.jcp.context.CommentRemoverType;
+import com.igormaznitsa.jcp.context.DependencyRecorder;
+import com.igormaznitsa.jcp.context.EvalFileCache;
 import com.igormaznitsa.jcp.context.PreprocessingState;
 import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.expression.Value;
 import com.igormaznitsa.jcp.expression.ValueType;
 import java.io.File;
 import java.io.StringWriter;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 /**
  * The Function makes preprocessing of a file and return result as a string value. It uses the current preprocessor context as the context for preprocessing the file.
+ * Results are cached in the evalfile cache of the context and reused while the file, its included files and
+ * variables read by the file are not changed.
  *
  * @author Igor Maznitsa (<a href="https://www.igormaznitsa.com">...</a>)
  */
@@ -87,27 +93,50 @@ public class FunctionEVALFILE extends AbstractFunction {
       context.logForVerbose("Eval file '" + fileToEvaluate + '\'');
     }
 
+    final EvalFileCache cache = context.getEvalFileCache();
+    final Optional<EvalFileCache.Result> cached = cache.find(fileToEvaluate, context);
+    if (cached.isPresent()) {
+      if (context.isVerbose()) {
+        context.logForVerbose("Taken cached result of evaluation '" + fileToEvaluate + '\'');
+      }
+      registerFiles(context, fileToEvaluate, cached.get());
+      return Value.valueOf(cached.get().getText());
+    }
+
     try {
       final FileInfoContainer fileContainer =
           new FileInfoContainer(fileToEvaluate, fileToEvaluate.getName(), false);
 
       final PreprocessorContext evalContext = this.prepareContext(context);
+      final DependencyRecorder recorder = new DependencyRecorder(context.getDependencyRecorder());
+      evalContext.setDependencyRecorder(recorder);
       final PreprocessingState state =
           fileContainer.preprocessFileWithNotification(evalContext, null, false);
 
-      findActiveFileInfoContainer(context)
-          .ifPresent(f -> {
-            f.getIncludedSources().add(fileToEvaluate);
-            f.getIncludedSources().addAll(evalContext.findAllInputFiles());
-            f.getGeneratedResources().addAll(evalContext.findAllProducedFiles());
-          });
-
       final StringWriter strWriter = new StringWriter(1024);
       state.writePrinterBuffers(strWriter);
       closeQuietly(strWriter);
-      return Value.valueOf(strWriter.toString());
+
+      final EvalFileCache.Result result = new EvalFileCache.Result(strWriter.toString(),
+          new HashSet<>(evalContext.findAllInputFiles()),
+          new HashSet<>(evalContext.findAllProducedFiles()));
+      registerFiles(context, fileToEvaluate, result);
+
+      cache.put(fileToEvaluate, fileContainer.getIncludedSources(), context, recorder, result);
+
+      return Value.valueOf(result.getText());
     } catch (Exception ex) {
       throw context.makeException("Unexpected exception", ex);
     }
   }
+
+  private static void registerFiles(final PreprocessorContext context, final File evaluatedFile,
+                                    final EvalFileCache.Result result) {
+    findActiveFileInfoContainer(context)
+        .ifPresent(f -> {
+          f.getIncludedSources().add(evaluatedFile);
+          f.getIncludedSources().addAll(result.getInputFiles());
+          f.getGeneratedResources().addAll(result.getProducedFiles());
+        });
+  }
 }
@@ -23,11 +23,6 @@ package com.igormaznitsa.jcp.expression.functions.xml;
 
 import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.expression.functions.AbstractFunction;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-import org.apache.xpath.jaxp.XPathFactoryImpl;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -35,7 +30,6 @@ import org.w3c.dom.NodeList;
 
 public abstract class AbstractXMLFunction extends AbstractFunction {
 
-
   public static String makeElementListId(final Element parentName, final String elementName) {
     return buildPathForElement(parentName) + "_#list_" + elementName;
   }
@@ -100,11 +94,16 @@ public abstract class AbstractXMLFunction extends AbstractFunction {
   }
 
 
-  protected static XPathExpression prepareXPathExpression(final String path)
-      throws XPathExpressionException {
-    final XPathFactory factory = new XPathFactoryImpl();
-    final XPath xpath = factory.newXPath();
-    return xpath.compile(path);
+  /**
+   * Parsed documents are shared between a context and its clones but DOM nodes are not thread safe even for
+   * reads, so that calls of XML functions are serialized through the XML tool pool of the context.
+   *
+   * @param context the preprocessor context, must not be null
+   * @return the XML tool pool of the context, must not be null
+   */
+  @Override
+  public Object findExecutionLock(final PreprocessorContext context) {
+    return context.getXmlToolPool();
   }
 
 
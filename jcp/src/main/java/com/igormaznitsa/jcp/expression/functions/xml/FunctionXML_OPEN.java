@@ -31,7 +31,6 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Set;
 import javax.xml.parsers.ParserConfigurationException;
-import org.apache.xerces.jaxp.DocumentBuilderFactoryImpl;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
@@ -59,14 +58,14 @@ public final class FunctionXML_OPEN extends AbstractXMLFunction {
     final String documentId = makeDocumentId(name);
     final String documentIdRoot = makeDocumentRootId(documentId);
 
+    final File file = context.findFileInSources(name);
+    findActiveFileInfoContainer(context)
+        .ifPresent(t -> t.getIncludedSources().add(file));
+
     NodeContainer docContainer = (NodeContainer) context.getSharedResource(documentId);
     if (docContainer == null) {
-      final File file = context.findFileInSources(name);
       final Document document = openFileAndParse(context, file);
 
-      findActiveFileInfoContainer(context)
-          .ifPresent(t -> t.getIncludedSources().add(file));
-
       docContainer = new NodeContainer(UID_COUNTER.getAndIncrement(), document);
       context.setSharedResource(documentId, docContainer);
       final NodeContainer rootContainer =
@@ -79,13 +78,8 @@ public final class FunctionXML_OPEN extends AbstractXMLFunction {
 
 
   private Document openFileAndParse(final PreprocessorContext context, final File file) {
-    final DocumentBuilderFactoryImpl docBuilderFactory = new DocumentBuilderFactoryImpl();
-    docBuilderFactory.setIgnoringComments(true);
-    docBuilderFactory.setCoalescing(true);
-    docBuilderFactory.setValidating(false);
-
     try {
-      return docBuilderFactory.newDocumentBuilder().parse(file);
+      return context.getXmlToolPool().parse(file);
     } catch (ParserConfigurationException unexpected) {
       throw context.makeException("XML parser configuration exception", unexpected);
     } catch (SAXException unexpected) {
@@ -27,7 +27,6 @@ import com.igormaznitsa.jcp.expression.ValueType;
 import java.util.List;
 import java.util.Set;
 import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -58,8 +57,8 @@ public final class FunctionXML_XELEMENT extends AbstractXMLFunction {
     Element elem = findCachedElement(context, xpathElementId);
     if (elem == null) {
       try {
-        final XPathExpression expression = prepareXPathExpression(pathStr);
-        elem = (Element) expression.evaluate(document, XPathConstants.NODE);
+        elem = (Element) context.getXmlToolPool()
+            .evaluate(pathStr, document, XPathConstants.NODE);
         if (elem == null) {
           throw context.makeException("Can't find element for xpath [" + pathStr + ']', null);
         }
@@ -27,7 +27,6 @@ import com.igormaznitsa.jcp.expression.ValueType;
 import java.util.List;
 import java.util.Set;
 import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
@@ -58,8 +57,8 @@ public final class FunctionXML_XLIST extends AbstractXMLFunction {
     NodeList list = findCachedElementList(context, xpathId);
     if (list == null) {
       try {
-        final XPathExpression expression = prepareXPathExpression(pathStr);
-        list = (NodeList) expression.evaluate(document, XPathConstants.NODESET);
+        list = (NodeList) context.getXmlToolPool()
+            .evaluate(pathStr, document, XPathConstants.NODESET);
       } catch (XPathExpressionException ex) {
         throw context.makeException("Error during XPath compilation [" + pathStr + ']', ex);
       }
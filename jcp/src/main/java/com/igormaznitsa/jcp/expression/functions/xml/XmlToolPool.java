@@ -0,0 +1,142 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.expression.functions.xml;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import org.apache.xerces.jaxp.DocumentBuilderFactoryImpl;
+import org.apache.xpath.jaxp.XPathFactoryImpl;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+/**
+ * Pool of XML document builders and XPath compilers shared between a preprocessor context and its clones.
+ * Builders and compiled expressions are not thread safe so that every call borrows them from the pool and returns
+ * them back after use, the pool is dropped together with the context.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+public final class XmlToolPool {
+
+  private static final int MAX_CACHED_XPATH_EXPRESSIONS = 256;
+  private static final String DEFER_NODE_EXPANSION =
+      "http://apache.org/xml/features/dom/defer-node-expansion";
+
+  private final Queue<DocumentBuilder> documentBuilders = new ConcurrentLinkedQueue<>();
+  private final Queue<XPathCompiler> xpathCompilers = new ConcurrentLinkedQueue<>();
+  private final AtomicLong compiledExpressions = new AtomicLong();
+
+  /**
+   * Parse XML file with a pooled document builder. Deferred node expansion is turned off, so nodes of a parsed
+   * document are not expanded lazily during its reads. Reads of shared documents are still serialized by XML
+   * functions, see {@link AbstractXMLFunction#findExecutionLock(com.igormaznitsa.jcp.context.PreprocessorContext)}.
+   *
+   * @param file the file to be parsed, must not be null
+   * @return parsed document, must not be null
+   * @throws ParserConfigurationException if a builder can't be created
+   * @throws SAXException                 if the file can't be parsed
+   * @throws IOException                  if the file can't be read
+   */
+  public Document parse(final File file)
+      throws ParserConfigurationException, SAXException, IOException {
+    DocumentBuilder builder = this.documentBuilders.poll();
+    if (builder == null) {
+      final DocumentBuilderFactoryImpl docBuilderFactory = new DocumentBuilderFactoryImpl();
+      docBuilderFactory.setIgnoringComments(true);
+      docBuilderFactory.setCoalescing(true);
+      docBuilderFactory.setValidating(false);
+      docBuilderFactory.setFeature(DEFER_NODE_EXPANSION, false);
+      builder = docBuilderFactory.newDocumentBuilder();
+    }
+    try {
+      return builder.parse(file);
+    } finally {
+      builder.reset();
+      this.documentBuilders.offer(builder);
+    }
+  }
+
+  /**
+   * Evaluate XPath expression with a pooled compiler, compiled expressions are cached by the compiler.
+   *
+   * @param path       text of XPath expression, must not be null
+   * @param node       node to be used as the expression context, must not be null
+   * @param returnType expected result type, must not be null
+   * @return result of evaluation, can be null
+   * @throws XPathExpressionException if the expression can't be compiled or evaluated
+   */
+  public Object evaluate(final String path, final Node node, final QName returnType)
+      throws XPathExpressionException {
+    XPathCompiler compiler = this.xpathCompilers.poll();
+    if (compiler == null) {
+      compiler = new XPathCompiler();
+    }
+    try {
+      return compiler.compile(path).evaluate(node, returnType);
+    } finally {
+      this.xpathCompilers.offer(compiler);
+    }
+  }
+
+  /**
+   * Get number of XPath expressions compiled by the pool.
+   *
+   * @return number of compiled expressions
+   */
+  public long getCompiledExpressions() {
+    return this.compiledExpressions.get();
+  }
+
+  private final class XPathCompiler {
+    private final XPath xpath = new XPathFactoryImpl().newXPath();
+    private final Map<String, XPathExpression> cache =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(final Map.Entry<String, XPathExpression> eldest) {
+            return this.size() > MAX_CACHED_XPATH_EXPRESSIONS;
+          }
+        };
+
+    private XPathExpression compile(final String path) throws XPathExpressionException {
+      XPathExpression result = this.cache.get(path);
+      if (result == null) {
+        result = this.xpath.compile(path);
+        compiledExpressions.incrementAndGet();
+        this.cache.put(path, result);
+      }
+      return result;
+    }
+  }
+}
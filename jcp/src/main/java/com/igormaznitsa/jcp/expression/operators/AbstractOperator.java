@@ -23,6 +23,8 @@ package com.igormaznitsa.jcp.expression.operators;
 
 import com.igormaznitsa.jcp.expression.ExpressionItem;
 import com.igormaznitsa.jcp.expression.ExpressionItemType;
+import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.expression.ValueType;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -118,6 +120,89 @@ public abstract class AbstractOperator implements ExpressionItem {
    */
   public abstract String getReference();
 
+  /**
+   * Check that the operator can make its result for the first argument only, without calculation of the
+   * second argument.
+   *
+   * @return true if the operator supports short-circuit evaluation, false otherwise
+   * @since 7.3.1
+   */
+  public boolean isShortCircuit() {
+    return false;
+  }
+
+  /**
+   * Find the operator result for the calculated first argument. Called only for operators which support
+   * short-circuit evaluation, the result is used only if the second argument has the same type as the
+   * first one, so that result is the same as for full calculation.
+   *
+   * @param firstArgument the calculated first argument, must not be null
+   * @return the operator result or null if the second argument must be calculated
+   * @see #isShortCircuit()
+   * @since 7.3.1
+   */
+  public Value findShortCircuitResult(final Value firstArgument) {
+    return null;
+  }
+
+  /**
+   * Get the operator result type for argument types known before calculation.
+   *
+   * @param argumentTypes types of arguments, an element is null if its type is unknown before calculation
+   * @return the result type or null if it can't be known before calculation
+   * @since 7.3.1
+   */
+  public ValueType findResultType(final ValueType[] argumentTypes) {
+    return null;
+  }
+
+  /**
+   * Find common type of arguments for operators working with both boolean and integer arguments.
+   *
+   * @param argumentTypes types of arguments, elements can be null
+   * @return BOOLEAN or INT if all arguments have the same type, null otherwise
+   * @since 7.3.1
+   */
+  protected static ValueType findCommonBoolOrIntType(final ValueType[] argumentTypes) {
+    final ValueType first = argumentTypes.length == 0 ? null : argumentTypes[0];
+    if (first != ValueType.BOOLEAN && first != ValueType.INT) {
+      return null;
+    }
+    for (final ValueType type : argumentTypes) {
+      if (type != first) {
+        return null;
+      }
+    }
+    return first;
+  }
+
+  /**
+   * Find result type of comparison operators, they have execute methods for numeric arguments, for string
+   * arguments and optionally for boolean ones.
+   *
+   * @param argumentTypes types of arguments, elements can be null
+   * @param boolAllowed   true if the operator can compare boolean arguments
+   * @return BOOLEAN if argument types are known and can be compared by the operator, null otherwise
+   * @since 7.3.1
+   */
+  protected static ValueType findComparisonResultType(final ValueType[] argumentTypes,
+                                                      final boolean boolAllowed) {
+    if (argumentTypes.length != 2) {
+      return null;
+    }
+    final ValueType left = argumentTypes[0];
+    final ValueType right = argumentTypes[1];
+    final boolean comparable;
+    if (left == ValueType.INT || left == ValueType.FLOAT) {
+      comparable = right == ValueType.INT || right == ValueType.FLOAT;
+    } else if (left == ValueType.STRING) {
+      comparable = right == ValueType.STRING;
+    } else {
+      comparable = boolAllowed && left == ValueType.BOOLEAN && right == ValueType.BOOLEAN;
+    }
+    return comparable ? ValueType.BOOLEAN : null;
+  }
+
   @Override
   public String toString() {
     return "OPERATOR: " + getKeyword();
@@ -23,6 +23,7 @@ package com.igormaznitsa.jcp.expression.operators;
 
 import com.igormaznitsa.jcp.expression.ExpressionItemPriority;
 import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.expression.ValueType;
 
 /**
  * The class implements the AND operator handler
@@ -64,4 +65,19 @@ public final class OperatorAND extends AbstractOperator {
     return ExpressionItemPriority.LOGICAL;
   }
 
+  @Override
+  public boolean isShortCircuit() {
+    return true;
+  }
+
+  @Override
+  public Value findShortCircuitResult(final Value firstArgument) {
+    return firstArgument.getType() == ValueType.BOOLEAN && !firstArgument.asBoolean()
+        ? Value.BOOLEAN_FALSE : null;
+  }
+
+  @Override
+  public ValueType findResultType(final ValueType[] argumentTypes) {
+    return findCommonBoolOrIntType(argumentTypes);
+  }
 }
@@ -23,6 +23,7 @@ package com.igormaznitsa.jcp.expression.operators;
 
 import com.igormaznitsa.jcp.expression.ExpressionItemPriority;
 import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.expression.ValueType;
 
 /**
  * The class implements the EQU operator handler
@@ -83,4 +84,9 @@ public final class OperatorEQU extends AbstractOperator {
   public ExpressionItemPriority getExpressionItemPriority() {
     return ExpressionItemPriority.COMPARISON;
   }
+
+  @Override
+  public ValueType findResultType(final ValueType[] argumentTypes) {
+    return findComparisonResultType(argumentTypes, true);
+  }
 }
@@ -23,6 +23,7 @@ package com.igormaznitsa.jcp.expression.operators;
 
 import com.igormaznitsa.jcp.expression.ExpressionItemPriority;
 import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.expression.ValueType;
 
 /**
  * The class implements the LESSEQU operator handler
@@ -78,4 +79,9 @@ public final class OperatorLESSEQU extends AbstractOperator {
   public ExpressionItemPriority getExpressionItemPriority() {
     return ExpressionItemPriority.COMPARISON;
   }
+
+  @Override
+  public ValueType findResultType(final ValueType[] argumentTypes) {
+    return findComparisonResultType(argumentTypes, false);
+  }
 }
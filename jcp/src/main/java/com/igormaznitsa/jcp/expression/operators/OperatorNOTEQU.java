@@ -23,6 +23,7 @@ package com.igormaznitsa.jcp.expression.operators;
 
 import com.igormaznitsa.jcp.expression.ExpressionItemPriority;
 import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.expression.ValueType;
 
 /**
  * The class implements the NOTEQU operator handler
@@ -84,4 +85,8 @@ public final class OperatorNOTEQU extends AbstractOperator {
     return ExpressionItemPriority.COMPARISON;
   }
 
+  @Override
+  public ValueType findResultType(final ValueType[] argumentTypes) {
+    return findComparisonResultType(argumentTypes, true);
+  }
 }
@@ -23,6 +23,7 @@ package com.igormaznitsa.jcp.expression.operators;
 
 import com.igormaznitsa.jcp.expression.ExpressionItemPriority;
 import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.expression.ValueType;
 
 /**
  * The class implements the OR operator handler
@@ -63,4 +64,20 @@ public final class OperatorOR extends AbstractOperator {
   public ExpressionItemPriority getExpressionItemPriority() {
     return ExpressionItemPriority.LOGICAL;
   }
+
+  @Override
+  public boolean isShortCircuit() {
+    return true;
+  }
+
+  @Override
+  public Value findShortCircuitResult(final Value firstArgument) {
+    return firstArgument.getType() == ValueType.BOOLEAN && firstArgument.asBoolean()
+        ? Value.BOOLEAN_TRUE : null;
+  }
+
+  @Override
+  public ValueType findResultType(final ValueType[] argumentTypes) {
+    return findCommonBoolOrIntType(argumentTypes);
+  }
 }
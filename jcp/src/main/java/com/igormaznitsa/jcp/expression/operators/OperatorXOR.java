@@ -23,6 +23,7 @@ package com.igormaznitsa.jcp.expression.operators;
 
 import com.igormaznitsa.jcp.expression.ExpressionItemPriority;
 import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.expression.ValueType;
 
 /**
  * The class implements the XOR operator handler
@@ -64,4 +65,8 @@ public class OperatorXOR extends AbstractOperator {
     return ExpressionItemPriority.LOGICAL;
   }
 
+  @Override
+  public ValueType findResultType(final ValueType[] argumentTypes) {
+    return findCommonBoolOrIntType(argumentTypes);
+  }
 }
@@ -161,6 +161,33 @@ public class JcpTask extends DefaultTask {
    * new result content.
    */
   private final Property<Boolean> dontOverwriteSameContent;
+  /**
+   * Number of threads to be used for concurrent preprocessing of files, 1 means sequential mode.
+   *
+   * @since 7.3.1
+   */
+  private final Property<Integer> threads;
+  /**
+   * Incremental mode, a dependency index is saved in the target folder and only files with changed
+   * inputs are preprocessed during next start.
+   *
+   * @since 7.3.1
+   */
+  private final Property<Boolean> incremental;
+  /**
+   * Make hard links instead of copies for copy-only files, files are copied if the file system doesn't
+   * allow hard links.
+   *
+   * @since 7.3.1
+   */
+  private final Property<Boolean> hardLinks;
+  /**
+   * Remove files from the target folder which have not been produced by preprocessing, unchanged files
+   * are not touched.
+   *
+   * @since 7.3.1
+   */
+  private final Property<Boolean> syncTarget;
 
   /**
    * Collection of all files which have been generated during preprocessing.
@@ -179,6 +206,10 @@ public class JcpTask extends DefaultTask {
     this.careForLastEol = factory.property(Boolean.class).convention(false);
     this.clearTarget = factory.property(Boolean.class).convention(false);
     this.dontOverwriteSameContent = factory.property(Boolean.class).convention(false);
+    this.threads = factory.property(Integer.class).convention(1);
+    this.incremental = factory.property(Boolean.class).convention(false);
+    this.hardLinks = factory.property(Boolean.class).convention(false);
+    this.syncTarget = factory.property(Boolean.class).convention(false);
     this.dryRun = factory.property(Boolean.class).convention(false);
     this.allowBlocks = factory.property(Boolean.class).convention(false);
     this.ignoreMissingSources = factory.property(Boolean.class).convention(false);
@@ -352,6 +383,26 @@ public class JcpTask extends DefaultTask {
     return dontOverwriteSameContent;
   }
 
+  @Input
+  public Property<Integer> getThreads() {
+    return threads;
+  }
+
+  @Input
+  public Property<Boolean> getIncremental() {
+    return incremental;
+  }
+
+  @Input
+  public Property<Boolean> getHardLinks() {
+    return hardLinks;
+  }
+
+  @Input
+  public Property<Boolean> getSyncTarget() {
+    return syncTarget;
+  }
+
   @TaskAction
   public void preprocessTask() throws IOException {
     final Logger logger = getProject().getLogger();
@@ -438,6 +489,10 @@ public class JcpTask extends DefaultTask {
     preprocessorContext.setEol(this.eol.get());
     preprocessorContext.setExcludeFolders(this.excludeFolders.get());
     preprocessorContext.setDontOverwriteSameContent(this.dontOverwriteSameContent.get());
+    preprocessorContext.setThreads(Math.max(1, this.threads.get()));
+    preprocessorContext.setIncremental(this.incremental.get());
+    preprocessorContext.setHardLinks(this.hardLinks.get());
+    preprocessorContext.setSyncTarget(this.syncTarget.get());
     preprocessorContext.setClearTarget(this.clearTarget.get());
     preprocessorContext.setCareForLastEol(this.careForLastEol.get());
     preprocessorContext.setKeepComments(
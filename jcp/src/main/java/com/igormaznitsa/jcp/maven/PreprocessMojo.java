@@ -320,6 +320,46 @@ public class PreprocessMojo extends AbstractMojo implements PreprocessorLogger {
   @Parameter(alias = "dontOverwriteSameContent", defaultValue = "false")
   private boolean dontOverwriteSameContent = false;
 
+  /**
+   * Number of threads to be used for concurrent preprocessing of files, 1 means sequential mode.
+   * Files which can change global state (like containing //#define, //#undef, //#include or //#action) are processed sequentially,
+   * all files are processed sequentially if preprocessor extensions or comment text processors are provided.
+   *
+   * @since 7.3.1
+   */
+  @Parameter(alias = "threads", defaultValue = "1")
+  private int threads = 1;
+
+  /**
+   * Incremental mode, a dependency index is saved in the target folder and during next start only
+   * files with changed sources, included files or used global variables are preprocessed.
+   * It makes sense only if clearTarget is false.
+   *
+   * @since 7.3.1
+   */
+  @Parameter(alias = "incremental", defaultValue = "false")
+  private boolean incremental = false;
+
+  /**
+   * Make hard links instead of copies for copy-only files, files are copied if the file system doesn't
+   * allow hard links. Linked files must not be changed in the target folder because they share content
+   * with source files.
+   *
+   * @since 7.3.1
+   */
+  @Parameter(alias = "hardLinks", defaultValue = "false")
+  private boolean hardLinks = false;
+
+  /**
+   * Remove files from the target folder which have not been produced by preprocessing (for instance
+   * results of removed sources) after preprocessing. Unchanged files are not touched, so it is an
+   * alternative for clearTarget which keeps time stamps of files.
+   *
+   * @since 7.3.1
+   */
+  @Parameter(alias = "syncTarget", defaultValue = "false")
+  private boolean syncTarget = false;
+
 
   private List<String> formSourceRootList() {
     List<String> result = Collections.emptyList();
@@ -424,6 +464,10 @@ public class PreprocessMojo extends AbstractMojo implements PreprocessorLogger {
 
     context.setUnknownVariableAsFalse(this.isUnknownVarAsFalse());
     context.setDontOverwriteSameContent(this.isDontOverwriteSameContent());
+    context.setThreads(Math.max(1, this.getThreads()));
+    context.setIncremental(this.isIncremental());
+    context.setHardLinks(this.isHardLinks());
+    context.setSyncTarget(this.isSyncTarget());
     context.setClearTarget(this.isClearTarget());
     context.setCareForLastEol(this.isCareForLastEol());
     context.setKeepComments(PreprocessorUtils.findCommentRemoverForId(this.getKeepComments()));
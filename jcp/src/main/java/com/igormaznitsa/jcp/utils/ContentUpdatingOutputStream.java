@@ -0,0 +1,185 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Output stream which compares written bytes with content of existing file and writes into the file only
+ * since the first different byte. If the written content is the same as the file content then the file is
+ * not touched. Memory usage doesn't depend on the file size.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+public final class ContentUpdatingOutputStream extends OutputStream {
+
+  private final File file;
+  private final byte[] singleByte = new byte[1];
+  private ByteBuffer readBuffer;
+  private FileChannel readChannel;
+  private FileChannel writeChannel;
+  private long position;
+  private boolean changed;
+  private boolean closed;
+
+  /**
+   * Constructor.
+   *
+   * @param file       target file, must not be null
+   * @param bufferSize size of buffer to read existing file content
+   * @throws IOException if any IO error
+   */
+  public ContentUpdatingOutputStream(final File file, final int bufferSize) throws IOException {
+    this.file = file;
+    if (file.isFile()) {
+      this.readChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      this.readBuffer = ByteBuffer.allocate(Math.max(64, bufferSize));
+      this.readBuffer.limit(0);
+    } else {
+      this.startWriting();
+    }
+  }
+
+  /**
+   * Check that the file content has been changed. It has sense only after close.
+   *
+   * @return true if the file has been written or truncated, false if the file content is the same
+   */
+  public boolean isChanged() {
+    return this.changed;
+  }
+
+  private void startWriting() throws IOException {
+    if (this.readChannel != null) {
+      this.readChannel.close();
+      this.readChannel = null;
+      this.readBuffer = null;
+    }
+    this.writeChannel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE);
+    this.writeChannel.position(this.position);
+    this.changed = true;
+  }
+
+  private boolean fillReadBuffer() throws IOException {
+    this.readBuffer.clear();
+    while (this.readBuffer.hasRemaining()) {
+      if (this.readChannel.read(this.readBuffer) < 0) {
+        break;
+      }
+    }
+    this.readBuffer.flip();
+    return this.readBuffer.hasRemaining();
+  }
+
+  private void ensureOpen() throws IOException {
+    if (this.closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  @Override
+  public void write(final int value) throws IOException {
+    this.singleByte[0] = (byte) value;
+    this.write(this.singleByte, 0, 1);
+  }
+
+  @Override
+  public void write(final byte[] data, final int offset, final int length) throws IOException {
+    this.ensureOpen();
+    int off = offset;
+    int len = length;
+    while (len > 0 && this.writeChannel == null) {
+      if (!this.readBuffer.hasRemaining() && !this.fillReadBuffer()) {
+        this.startWriting();
+        break;
+      }
+      final int toCompare = Math.min(len, this.readBuffer.remaining());
+      final int start = this.readBuffer.arrayOffset() + this.readBuffer.position();
+      final int mismatch = Arrays.mismatch(data, off, off + toCompare,
+          this.readBuffer.array(), start, start + toCompare);
+      final int same = mismatch < 0 ? toCompare : mismatch;
+      this.readBuffer.position(this.readBuffer.position() + same);
+      this.position += same;
+      off += same;
+      len -= same;
+      if (mismatch >= 0) {
+        this.startWriting();
+      }
+    }
+    if (len > 0) {
+      final ByteBuffer buffer = ByteBuffer.wrap(data, off, len);
+      while (buffer.hasRemaining()) {
+        this.writeChannel.write(buffer);
+      }
+      this.position += len;
+    }
+  }
+
+  /**
+   * Close the stream after failed writing of content. The file is not truncated, so that it is not touched
+   * if there was no difference in already written content. It does nothing if the stream is closed.
+   */
+  public void abort() {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    IOUtils.closeQuietly(this.readChannel);
+    IOUtils.closeQuietly(this.writeChannel);
+  }
+
+  /**
+   * Close the stream and finish the file, the file is truncated if the written content is shorter than
+   * the file content. It should be called only if whole content has been written successfully.
+   *
+   * @throws IOException if any IO error
+   */
+  @Override
+  public void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    try {
+      if (this.writeChannel == null
+          && (this.readBuffer.hasRemaining() || this.readChannel.size() > this.position)) {
+        this.startWriting();
+      }
+      if (this.writeChannel != null) {
+        this.writeChannel.truncate(this.position);
+      }
+    } finally {
+      IOUtils.closeQuietly(this.readChannel);
+      if (this.writeChannel != null) {
+        this.writeChannel.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Copier of files into target folders. Files are copied by the file system together with their attributes,
+ * once made folders are remembered and not checked again. In hard link mode target files are made as
+ * hard links to source files, if a hard link can't be made then the file is copied and the mode is turned off.
+ * The copier is thread safe and can be shared between threads.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+public final class FileCopier {
+
+  private static final boolean POSIX_FILE_SYSTEM =
+      FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+  private final boolean copyFileAttributes;
+  private final boolean hardLinks;
+  private final Set<Path> madeFolders = ConcurrentHashMap.newKeySet();
+  private volatile boolean hardLinksFailed;
+
+  /**
+   * Constructor.
+   *
+   * @param copyFileAttributes true if attributes of source files must be copied into target files
+   * @param hardLinks          true if target files should be made as hard links to source files
+   */
+  public FileCopier(final boolean copyFileAttributes, final boolean hardLinks) {
+    this.copyFileAttributes = copyFileAttributes;
+    this.hardLinks = hardLinks;
+  }
+
+  /**
+   * Check that target files are made as hard links.
+   *
+   * @return true if hard link mode is on and there were no errors during making of hard links
+   */
+  public boolean isHardLinks() {
+    return this.hardLinks && !this.hardLinksFailed;
+  }
+
+  /**
+   * Copy file, existing target file is replaced. Parent folder of the target file is made if needed.
+   *
+   * @param source source file, must not be null
+   * @param target target file, must not be null
+   * @return true if the target file has been made as hard link, false if it has been copied
+   * @throws IOException if any IO error
+   */
+  public boolean copy(final File source, final File target) throws IOException {
+    Objects.requireNonNull(source, "Source is null");
+    Objects.requireNonNull(target, "Destination file is null");
+
+    final Path sourcePath = source.toPath();
+    final Path targetPath = target.toPath();
+
+    this.ensureFolder(targetPath.getParent());
+
+    if (this.isHardLinks()) {
+      try {
+        Files.deleteIfExists(targetPath);
+        Files.createLink(targetPath, sourcePath);
+        return true;
+      } catch (UnsupportedOperationException | FileSystemException ex) {
+        // for instance source and target are placed on different devices
+        this.hardLinksFailed = true;
+      }
+    }
+
+    Files.copy(sourcePath, targetPath, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.COPY_ATTRIBUTES);
+    if (this.copyFileAttributes && !POSIX_FILE_SYSTEM) {
+      PreprocessorUtils.copyFileAttributes(source, target);
+    }
+    return false;
+  }
+
+  private void ensureFolder(final Path folder) throws IOException {
+    if (folder != null && !this.madeFolders.contains(folder)) {
+      try {
+        Files.createDirectories(folder);
+      } catch (IOException ex) {
+        throw new IOException(
+            "Can't make directory [" + PreprocessorUtils.getFilePath(folder.toFile()) + ']', ex);
+      }
+      this.madeFolders.add(folder);
+    }
+  }
+}
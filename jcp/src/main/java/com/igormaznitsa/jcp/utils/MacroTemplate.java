@@ -0,0 +1,208 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.utils;
+
+import static java.util.Objects.requireNonNull;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.expression.Expression;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Split of a text line into literal parts and macros like {@code /*$expr$*}{@code /}, made once and expanded
+ * into a provided buffer for the current state of a context, so that repeatedly processed lines
+ * (for instance in a while loop) are not scanned again.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.3.1
+ */
+public final class MacroTemplate {
+
+  private static final String MACROS_START = "/*$";
+  private static final String MACROS_END = "$*/";
+  private static final Pattern PATTERN_MACROS_WITH_SPACES =
+      Pattern.compile("\\/\\*\\s*\\$(.*?)\\$\\s*\\*\\/");
+  private static final int[] NO_BOUNDS = new int[0];
+  private static final String[] NO_BODIES = new String[0];
+
+  private final String source;
+  private final boolean allowWhitespaces;
+  private final int[] macroStarts;
+  private final int[] macroEnds;
+  private final String[] bodies;
+
+  private MacroTemplate(final String source, final boolean allowWhitespaces,
+                        final int[] macroStarts, final int[] macroEnds, final String[] bodies) {
+    this.source = source;
+    this.allowWhitespaces = allowWhitespaces;
+    this.macroStarts = macroStarts;
+    this.macroEnds = macroEnds;
+    this.bodies = bodies;
+  }
+
+  /**
+   * Find macros in a text line.
+   *
+   * @param text             the text line to be split, must not be null
+   * @param allowWhitespaces true if whitespaces are allowed between comment chars and dollar
+   * @return template for the line, must not be null
+   */
+  public static MacroTemplate parse(final String text, final boolean allowWhitespaces) {
+    requireNonNull(text, "Text is null");
+    final List<int[]> bounds = new ArrayList<>();
+    final List<String> bodies = new ArrayList<>();
+    if (allowWhitespaces) {
+      final Matcher matcher = PATTERN_MACROS_WITH_SPACES.matcher(text);
+      while (matcher.find()) {
+        bounds.add(new int[] {matcher.start(), matcher.end()});
+        bodies.add(matcher.group(1));
+      }
+    } else {
+      int from = 0;
+      while (true) {
+        final int start = text.indexOf(MACROS_START, from);
+        if (start < 0) {
+          break;
+        }
+        final int end = text.indexOf(MACROS_END, start);
+        if (end < 0) {
+          break;
+        }
+        bounds.add(new int[] {start, end + MACROS_END.length()});
+        // for overlapped start and end like /*$*/ the body is extracted during expansion to get error
+        bodies.add(end < start + MACROS_START.length() ? null
+            : text.substring(start + MACROS_START.length(), end));
+        from = end + MACROS_END.length();
+      }
+    }
+
+    if (bounds.isEmpty()) {
+      return new MacroTemplate(text, allowWhitespaces, NO_BOUNDS, NO_BOUNDS, NO_BODIES);
+    }
+    final int[] starts = new int[bounds.size()];
+    final int[] ends = new int[bounds.size()];
+    for (int i = 0; i < starts.length; i++) {
+      starts[i] = bounds.get(i)[0];
+      ends[i] = bounds.get(i)[1];
+    }
+    return new MacroTemplate(text, allowWhitespaces, starts, ends, bodies.toArray(NO_BODIES));
+  }
+
+  /**
+   * Expand macros in a text by repeated search of the first macro in the whole text after each
+   * substitution, so that macros produced by substituted values are expanded too.
+   *
+   * @param text    the text to be processed, must not be null
+   * @param context the preprocessor context, must not be null
+   * @return the text with expanded macros
+   */
+  private static String expandRepeatedly(final String text, final PreprocessorContext context) {
+    String result = text;
+    while (!Thread.currentThread().isInterrupted()) {
+      final int beginIndex = result.indexOf(MACROS_START);
+      if (beginIndex < 0) {
+        break;
+      }
+      final int endIndex = result.indexOf(MACROS_END, beginIndex);
+      if (endIndex < 0) {
+        break;
+      }
+      final String macrosBody = result.substring(beginIndex + MACROS_START.length(), endIndex);
+      final String rightPart = result.substring(endIndex + MACROS_END.length());
+      result = result.substring(0, beginIndex)
+          + Expression.evalExpression(macrosBody, context) + rightPart;
+    }
+    return result;
+  }
+
+  private static char charAt(final StringBuilder buffer, final String tail, final int tailOffset,
+                             final int index) {
+    if (index < buffer.length()) {
+      return buffer.charAt(index);
+    }
+    final int tailIndex = tailOffset + index - buffer.length();
+    return tailIndex < tail.length() ? tail.charAt(tailIndex) : 0;
+  }
+
+  /**
+   * Check that substituted value together with neighbour chars forms a new macro start which must be
+   * processed before the next macro of the template.
+   */
+  private boolean isNewMacroStartFormed(final StringBuilder buffer, final int valueStart,
+                                        final int tailOffset) {
+    for (int i = Math.max(0, valueStart - 2); i < buffer.length(); i++) {
+      if (charAt(buffer, this.source, tailOffset, i) == '/'
+          && charAt(buffer, this.source, tailOffset, i + 1) == '*'
+          && charAt(buffer, this.source, tailOffset, i + 2) == '$') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public String getSource() {
+    return this.source;
+  }
+
+  public boolean isAllowWhitespaces() {
+    return this.allowWhitespaces;
+  }
+
+  public boolean hasMacroses() {
+    return this.bodies.length > 0;
+  }
+
+  /**
+   * Expand the template for the current state of a context.
+   *
+   * @param context the preprocessor context to calculate macros, must not be null
+   * @param buffer  the buffer to be used for expansion, its content will be replaced, must not be null
+   * @return expanded text, the source string instance if there is no any macro
+   */
+  public String expand(final PreprocessorContext context, final StringBuilder buffer) {
+    if (this.bodies.length == 0) {
+      return this.source;
+    }
+    buffer.setLength(0);
+    int literalStart = 0;
+    for (int i = 0; i < this.bodies.length; i++) {
+      final int macroStart = this.macroStarts[i];
+      buffer.append(this.source, literalStart, macroStart);
+      final String body = this.bodies[i] == null
+          ? this.source.substring(macroStart + MACROS_START.length(),
+          this.macroEnds[i] - MACROS_END.length())
+          : this.bodies[i];
+      final int valueStart = buffer.length();
+      buffer.append(Expression.evalExpression(body, context));
+      literalStart = this.macroEnds[i];
+      if (!this.allowWhitespaces && this.isNewMacroStartFormed(buffer, valueStart, literalStart)) {
+        buffer.append(this.source, literalStart, this.source.length());
+        return expandRepeatedly(buffer.toString(), context);
+      }
+    }
+    buffer.append(this.source, literalStart, this.source.length());
+    return buffer.toString();
+  }
+}
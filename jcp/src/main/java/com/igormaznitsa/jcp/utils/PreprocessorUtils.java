@@ -26,15 +26,15 @@ import static com.igormaznitsa.jcp.context.CommentRemoverType.REMOVE_C_STYLE;
 import static com.igormaznitsa.jcp.context.CommentRemoverType.makeListOfAllRemoverIds;
 
 import com.igormaznitsa.jcp.containers.FileInfoContainer;
+import com.igormaznitsa.jcp.containers.LineStore;
 import com.igormaznitsa.jcp.containers.TextFileDataContainer;
 import com.igormaznitsa.jcp.context.CommentRemoverType;
 import com.igormaznitsa.jcp.context.CommentTextProcessor;
+import com.igormaznitsa.jcp.context.PreprocessingState;
 import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.context.SpecialVariableProcessor;
 import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
 import com.igormaznitsa.jcp.exceptions.PreprocessorException;
-import com.igormaznitsa.jcp.expression.Expression;
-import com.igormaznitsa.jcp.expression.Value;
 import com.igormaznitsa.jcp.extension.PreprocessorExtension;
 import java.io.BufferedReader;
 import java.io.File;
@@ -42,17 +42,24 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.ServiceLoader;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -71,8 +78,11 @@ public final class PreprocessorUtils {
    */
   public static final String SYSTEM_PROPERTY_DISABLE_SEARCH_SERVICES =
       "jcp.preprocessor.disable.search.services";
-  private static final Pattern PATTERN_MACROS_WITH_SPACES =
-      Pattern.compile("\\/\\*\\s*\\$(.*?)\\$\\s*\\*\\/");
+
+  private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+  private static final long CONTENT_COMPARE_BUFFER_SIZE = 64 * 1024;
+  private static final boolean UNIX_FILE_SYSTEM =
+      FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
 
   private PreprocessorUtils() {
   }
@@ -268,7 +278,9 @@ public final class PreprocessorUtils {
       throw new IllegalArgumentException("Source file is directory");
     }
 
-    if (!dest.getParentFile().exists() && !dest.getParentFile().mkdirs()) {
+    // the folder can be concurrently created by another thread so that check its existence after fail
+    if (!dest.getParentFile().exists() && !dest.getParentFile().mkdirs()
+        && !dest.getParentFile().isDirectory()) {
       throw new IOException("Can't make directory [" + getFilePath(dest.getParentFile()) + ']');
     }
 
@@ -320,52 +332,42 @@ public final class PreprocessorUtils {
   }
 
 
+  /**
+   * Expand macros like {@code /*$expr$*}{@code /} in a text line. Split of a line into literal parts
+   * and macros is cached in the current preprocessing state.
+   *
+   * @param processingString the text line to be processed, must not be null
+   * @param context          the preprocessor context, must not be null
+   * @return the text line with expanded macros, the same string instance if there is no any macro
+   */
   public static String processMacroses(final String processingString,
                                        final PreprocessorContext context) {
-    int position;
-    String result = processingString;
-
-    if (context.isAllowWhitespaces()) {
-      final Matcher matcher = PATTERN_MACROS_WITH_SPACES.matcher(processingString);
-      final StringBuilder buffer = new StringBuilder();
-      int end = 0;
-      while (matcher.find()) {
-        final int start = matcher.start();
-        final int prevEnd = end;
-        end = matcher.end();
-        final String macrosBody = matcher.group(1);
-        final Value value = Expression.evalExpression(macrosBody, context);
-        buffer.append(processingString, prevEnd, start);
-        buffer.append(value);
-      }
-      if (end < processingString.length()) {
-        buffer.append(processingString.substring(end));
-      }
-      result = buffer.toString();
-    } else {
-      while (!Thread.currentThread().isInterrupted()) {
-        position = result.indexOf("/*$");
-
-        if (position >= 0) {
-          final String leftPart = result.substring(0, position);
-          final int beginIndex = position;
-          position = result.indexOf("$*/", position);
-          if (position >= 0) {
-            final String macrosBody = result.substring(beginIndex + 3, position);
-            final String rightPart = result.substring(position + 3);
+    final boolean allowWhitespaces = context.isAllowWhitespaces();
+    if (processingString.indexOf(allowWhitespaces ? "/*" : "/*$") < 0) {
+      return processingString;
+    }
 
-            final Value value = Expression.evalExpression(macrosBody, context);
+    final PreprocessingState state = context.getPreprocessingState();
+    MacroTemplate template =
+        state == null ? null : state.findMacroTemplate(processingString, allowWhitespaces);
+    if (template == null) {
+      template = MacroTemplate.parse(processingString, allowWhitespaces);
+    }
+    if (!template.hasMacroses()) {
+      return processingString;
+    }
 
-            result = leftPart + value + rightPart;
-          } else {
-            break;
-          }
-        } else {
-          break;
-        }
+    StringBuilder buffer = state == null ? null : state.takeMacroBuffer();
+    if (buffer == null) {
+      buffer = new StringBuilder(processingString.length() + 16);
+    }
+    try {
+      return template.expand(context, buffer);
+    } finally {
+      if (state != null) {
+        state.releaseMacroBuffer(buffer);
       }
     }
-    return result;
   }
 
   private static void checkFile(final File file) throws IOException {
@@ -379,64 +381,82 @@ public final class PreprocessorUtils {
   public static String[] readWholeTextFileIntoArray(final File file, final Charset encoding,
                                                     final AtomicBoolean endedByNextLine)
       throws IOException {
-    checkFile(file);
-
-    final List<String> strContainer = new ArrayList<>(1024);
-    try (BufferedReader srcBufferedReader = PreprocessorUtils
-        .makeFileReader(file, encoding == null ? StandardCharsets.UTF_8 : encoding,
-            (int) file.length())) {
-      final StringBuilder buffer = new StringBuilder();
-
-      boolean stringEndedByNextLine = false;
-
-      boolean meetCR = false;
+    final LineStore lines = readWholeTextFileIntoLineStore(file, encoding);
+    if (endedByNextLine != null) {
+      endedByNextLine.set(lines.isEndedByNextLine());
+    }
+    return lines.toArray();
+  }
 
+  /**
+   * Read whole text file into compact line store. Lines are split by {@code \n} and {@code \r\n},
+   * a single {@code \r} is kept as a part of line.
+   * <p>
+   * The file is read by bulk operations through file channel. ASCII text in UTF-8, US-ASCII or ISO-8859-1
+   * (and any text in ISO-8859-1) is split directly on bytes without decoding, other text is decoded at once
+   * with replacement of malformed and unmappable chars like by {@link InputStreamReader}.
+   *
+   * @param file     the file to be read, must not be null
+   * @param encoding the file encoding, if null then UTF-8 is used
+   * @return lines of the file, must not be null
+   * @throws IOException if the file can't be read
+   * @since 7.3.1
+   */
+  public static LineStore readWholeTextFileIntoLineStore(final File file, final Charset encoding)
+      throws IOException {
+    checkFile(file);
+    final Charset charset = encoding == null ? StandardCharsets.UTF_8 : encoding;
+
+    final byte[] content;
+    final int length;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      // one extra byte to detect end of stream without growing of the buffer
+      byte[] buffer = new byte[(int) Math.max(16L, Math.min(channel.size() + 1L, MAX_ARRAY_LENGTH))];
+      int position = 0;
       while (!Thread.currentThread().isInterrupted()) {
-        final int chr = srcBufferedReader.read();
-        if (chr < 0) {
-          break;
-        }
-
-        switch (chr) {
-          case '\n': {
-            stringEndedByNextLine = true;
-            strContainer.add(buffer.toString());
-            buffer.setLength(0);
-            meetCR = false;
-          }
-          break;
-          case '\r': {
-            if (meetCR) {
-              buffer.append((char) chr);
-            } else {
-              stringEndedByNextLine = false;
-              meetCR = true;
-            }
-          }
-          break;
-          default: {
-            if (meetCR) {
-              buffer.append('\r');
-            }
-            meetCR = false;
-            stringEndedByNextLine = false;
-            buffer.append((char) chr);
+        if (position == buffer.length) {
+          if (position == MAX_ARRAY_LENGTH) {
+            throw new IOException("File is too big to be read: " + getFilePath(file));
           }
+          buffer = Arrays.copyOf(buffer, (int) Math.min(MAX_ARRAY_LENGTH, position * 2L));
+        }
+        final int read = channel.read(ByteBuffer.wrap(buffer, position, buffer.length - position));
+        if (read < 0) {
           break;
         }
+        position += read;
       }
+      content = buffer;
+      length = position;
+    }
 
-      if (buffer.length() != 0) {
-        strContainer.add(buffer.toString());
-        buffer.setLength(0);
-      }
+    final boolean asciiCompatible = StandardCharsets.UTF_8.equals(charset)
+        || StandardCharsets.US_ASCII.equals(charset);
+    if (StandardCharsets.ISO_8859_1.equals(charset)
+        || (asciiCompatible && isAscii(content, length))) {
+      return LineStore.splitLatin1(content, length);
+    }
 
-      if (endedByNextLine != null) {
-        endedByNextLine.set(stringEndedByNextLine);
-      }
+    if (StandardCharsets.UTF_8.equals(charset)) {
+      final char[] chars = new String(content, 0, length, StandardCharsets.UTF_8).toCharArray();
+      return LineStore.split(chars, chars.length);
+    }
+
+    final CharBuffer decoded = charset.decode(ByteBuffer.wrap(content, 0, length));
+    if (decoded.hasArray() && decoded.arrayOffset() + decoded.position() == 0) {
+      return LineStore.split(decoded.array(), decoded.remaining());
     }
+    final char[] chars = decoded.toString().toCharArray();
+    return LineStore.split(chars, chars.length);
+  }
 
-    return strContainer.toArray(new String[0]);
+  private static boolean isAscii(final byte[] content, final int length) {
+    for (int i = 0; i < length; i++) {
+      if (content[i] < 0) {
+        return false;
+      }
+    }
+    return true;
   }
 
   public static String[] splitForEqualChar(final String string) {
@@ -569,16 +589,83 @@ public final class PreprocessorUtils {
     if (src == null || dst == null) {
       return false;
     }
-    if (src.isDirectory() && dst.isDirectory()) {
-      return true;
+
+    final BasicFileAttributes srcAttributes = findFileAttributes(src);
+    final BasicFileAttributes dstAttributes = findFileAttributes(dst);
+    if (srcAttributes == null || dstAttributes == null) {
+      return srcAttributes == dstAttributes;
+    }
+    if (srcAttributes.isDirectory() || dstAttributes.isDirectory()) {
+      return srcAttributes.isDirectory() && dstAttributes.isDirectory();
     }
-    if (src.isDirectory() || dst.isDirectory()) {
+    if (srcAttributes.size() != dstAttributes.size()) {
       return false;
     }
+    if (srcAttributes.fileKey() != null
+        && srcAttributes.fileKey().equals(dstAttributes.fileKey())) {
+      // the same file or hard links to the same file
+      return true;
+    }
+
+    try (final FileChannel srcChannel = FileChannel.open(src.toPath(), StandardOpenOption.READ);
+         final FileChannel dstChannel = FileChannel.open(dst.toPath(),
+             StandardOpenOption.READ)) {
+      final int bufferSize =
+          (int) Math.max(1L, Math.min(srcAttributes.size(), CONTENT_COMPARE_BUFFER_SIZE));
+      final ByteBuffer srcBuffer = ByteBuffer.allocate(bufferSize);
+      final ByteBuffer dstBuffer = ByteBuffer.allocate(bufferSize);
+      while (true) {
+        final boolean srcEnd = !fillBuffer(srcChannel, srcBuffer);
+        final boolean dstEnd = !fillBuffer(dstChannel, dstBuffer);
+        if (srcBuffer.mismatch(dstBuffer) >= 0) {
+          return false;
+        }
+        if (srcEnd || dstEnd) {
+          return srcEnd == dstEnd;
+        }
+      }
+    }
+  }
+
+  private static boolean fillBuffer(final FileChannel channel, final ByteBuffer buffer)
+      throws IOException {
+    buffer.clear();
+    boolean result = true;
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        result = false;
+        break;
+      }
+    }
+    buffer.flip();
+    return result;
+  }
 
-    if (src.length() != dst.length()) {
+  private static BasicFileAttributes findFileAttributes(final File file) throws IOException {
+    try {
+      return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+    } catch (NoSuchFileException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Check that a file has more than one hard link. The check is made only on file systems which provide
+   * number of links, false is returned for other file systems.
+   *
+   * @param file file to be checked, must not be null
+   * @return true if the file exists and has more than one hard link
+   * @since 7.3.1
+   */
+  public static boolean isHardLinked(final File file) {
+    if (!UNIX_FILE_SYSTEM) {
+      return false;
+    }
+    try {
+      final Object links = Files.getAttribute(file.toPath(), "unix:nlink");
+      return links instanceof Number && ((Number) links).intValue() > 1;
+    } catch (IOException | UnsupportedOperationException | IllegalArgumentException ex) {
       return false;
     }
-    return FileUtils.contentEquals(src, dst);
   }
 }
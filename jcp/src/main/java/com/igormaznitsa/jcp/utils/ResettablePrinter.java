@@ -21,55 +21,109 @@
 
 package com.igormaznitsa.jcp.utils;
 
-import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 
 /**
- * Text printer to keep text in internal buffer.
+ * Text printer to keep text in internal buffer. The printer is not thread safe, it is backed by growable
+ * char array and text is appended by bulk copy.
  *
  * @since 7.3.0
  */
 public class ResettablePrinter {
 
-  private final CharArrayWriter internalBuffer;
+  private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+  private char[] buffer;
+  private int size;
 
   public ResettablePrinter(final int initialCapacity) {
-    this.internalBuffer = new CharArrayWriter(initialCapacity);
+    this.buffer = new char[Math.max(16, initialCapacity)];
   }
 
   public String getText() {
-    return new String(this.internalBuffer.toCharArray());
+    return new String(this.buffer, 0, this.size);
+  }
+
+  /**
+   * Get read only view of the buffer content without copying. The view is valid only until next change of
+   * the printer.
+   *
+   * @return read only char buffer view, must not be null
+   * @since 7.3.1
+   */
+  public CharBuffer asCharBuffer() {
+    return CharBuffer.wrap(this.buffer, 0, this.size).asReadOnlyBuffer();
   }
 
   public boolean isEmpty() {
-    return internalBuffer.size() == 0;
+    return this.size == 0;
   }
 
   public void writeBufferTo(final Writer writer) throws IOException {
-    this.internalBuffer.flush();
-    writer.write(internalBuffer.toCharArray());
+    writer.write(this.buffer, 0, this.size);
     writer.flush();
   }
 
+  /**
+   * Append buffer content to string builder.
+   *
+   * @param builder target builder, must not be null
+   * @return the same builder
+   * @since 7.3.1
+   */
+  public StringBuilder appendTo(final StringBuilder builder) {
+    return builder.append(this.buffer, 0, this.size);
+  }
+
   public int getSize() {
-    return internalBuffer.size();
+    return this.size;
   }
 
   public void reset() {
-    internalBuffer.reset();
+    this.size = 0;
   }
 
   public void print(final String text) {
-    for (final char chr : text.toCharArray()) {
-      internalBuffer.write(chr);
-    }
+    this.print(text, 0, text.length());
+  }
+
+  /**
+   * Print part of string.
+   *
+   * @param text  source string, must not be null
+   * @param start start index, inclusive
+   * @param end   end index, exclusive
+   * @since 7.3.1
+   */
+  public void print(final String text, final int start, final int end) {
+    final int length = end - start;
+    this.ensureCapacity(this.size + length);
+    text.getChars(start, end, this.buffer, this.size);
+    this.size += length;
   }
 
   public void println(final String text, final String eol) {
-    for (final char chr : text.toCharArray()) {
-      this.internalBuffer.write(chr);
+    final int textLength = text.length();
+    final int eolLength = eol.length();
+    this.ensureCapacity(this.size + textLength + eolLength);
+    text.getChars(0, textLength, this.buffer, this.size);
+    this.size += textLength;
+    eol.getChars(0, eolLength, this.buffer, this.size);
+    this.size += eolLength;
+  }
+
+  private void ensureCapacity(final int required) {
+    if (required < 0 || required > MAX_ARRAY_SIZE) {
+      throw new OutOfMemoryError("Too big text buffer");
+    }
+    if (required > this.buffer.length) {
+      final int doubled = this.buffer.length << 1;
+      final int newCapacity =
+          doubled < 0 || doubled > MAX_ARRAY_SIZE ? MAX_ARRAY_SIZE : Math.max(doubled, required);
+      this.buffer = Arrays.copyOf(this.buffer, newCapacity);
     }
-    internalBuffer.write(eol, 0, eol.length());
   }
 }
@@ -33,15 +33,55 @@ import com.igormaznitsa.jcp.expression.Value;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Assume;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public final class JCPreprocessorTest {
 
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static void makeFile(final File folder, final String relativePath) throws IOException {
+    final File file = new File(folder, relativePath);
+    assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+    Files.write(file.toPath(), "text".getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void makeLink(final Path link, final String target) {
+    try {
+      Files.createSymbolicLink(link, Paths.get(target));
+    } catch (UnsupportedOperationException | IOException | SecurityException ex) {
+      Assume.assumeNoException("Symbolic links are not supported", ex);
+    }
+  }
+
+  private List<String> collectFiles(final File sourceFolder, final String... excludedFolders)
+      throws Exception {
+    final PreprocessorContext context =
+        new PreprocessorContext(new File("some_impossible_folder_121212"));
+    context.setSources(Collections.singletonList(sourceFolder.getAbsolutePath()));
+    context.setExcludeFolders(Arrays.asList(excludedFolders));
+    return new JcpPreprocessor(context)
+        .collectFilesToPreprocess(context.getSources(), context.getExcludeFolders())
+        .stream()
+        .map(x -> new File(x.getTargetFolder(), x.getTargetFileName()).getPath()
+            .replace('\\', '/'))
+        .collect(Collectors.toList());
+  }
+
   private void assertGVDFPreprocessorException(final String file,
                                                final int stringIndexStartedFromOne)
       throws Exception {
@@ -149,4 +189,86 @@ public final class JCPreprocessorTest {
       checked.add(name);
     }
   }
+
+  @Test
+  public void testCollectFiles_ExcludedNestedFolder() throws Exception {
+    final File src = tempFolder.newFolder("src");
+    makeFile(src, "a.txt");
+    makeFile(src, "sub/b.txt");
+    makeFile(src, "sub/skip/c.txt");
+    makeFile(src, "sub/skip/deep/d.txt");
+    makeFile(src, "skipped/e.txt");
+
+    assertEquals(Arrays.asList("./a.txt", "skipped/e.txt", "sub/b.txt"),
+        collectFiles(src, "**/skip"));
+  }
+
+  @Test
+  public void testCollectFiles_DeterministicOrder() throws Exception {
+    final File src = tempFolder.newFolder("src");
+    for (final String name : new String[] {"z/1.txt", "b.txt", "a/z.txt", "a/b/c.txt", "m.txt",
+        "a/a.txt"}) {
+      makeFile(src, name);
+    }
+
+    final List<String> expected =
+        Arrays.asList("a/a.txt", "a/b/c.txt", "a/z.txt", "./b.txt", "./m.txt", "z/1.txt");
+    for (int i = 0; i < 3; i++) {
+      assertEquals(expected, collectFiles(src));
+    }
+  }
+
+  @Test
+  public void testCollectFiles_LinkedFolder() throws Exception {
+    final File src = tempFolder.newFolder("src");
+    makeFile(src, "real/a.txt");
+    makeLink(new File(src, "link").toPath(), "real");
+
+    assertEquals(Arrays.asList("real/a.txt", "real/a.txt"), collectFiles(src));
+    assertTrue(collectFiles(src, "real").isEmpty());
+  }
+
+  @Test(timeout = 10000L)
+  public void testCollectFiles_LinkedFolderLoop() throws Exception {
+    final File src = tempFolder.newFolder("src");
+    makeFile(src, "a/b.txt");
+    makeLink(new File(src, "a/loop").toPath(), "..");
+
+    assertEquals(Arrays.asList("a/b.txt", "a/b.txt"), collectFiles(src));
+  }
+
+  private void assertSyncRefusedForTarget(final File source, final File target) throws Exception {
+    final File sourceFile = new File(source, "file.txt");
+    makeFile(source, "file.txt");
+    final PreprocessorContext context = new PreprocessorContext(this.tempFolder.getRoot());
+    context.setSources(Collections.singletonList(source.getAbsolutePath()));
+    context.setTarget(target);
+    context.setClearTarget(false);
+    context.setSyncTarget(true);
+    try {
+      new JcpPreprocessor(context).execute();
+      fail("Must throw IOException");
+    } catch (IOException expected) {
+      assertTrue(expected.getMessage().contains("overlaps source folder"));
+    }
+    assertTrue(sourceFile.isFile());
+  }
+
+  @Test
+  public void testSyncTarget_TargetOverlapsSourceFolder() throws Exception {
+    final File root = this.tempFolder.getRoot();
+    assertSyncRefusedForTarget(new File(root, "src"), new File(root, "src/.."));
+    assertSyncRefusedForTarget(new File(root, "src"), new File(root, "src"));
+    assertSyncRefusedForTarget(new File(root, "src"), new File(root, "src/target"));
+  }
+
+  @Test
+  public void testStatisticsWithoutUnchangedFiles() {
+    final JcpPreprocessor.Statistics statistics = new JcpPreprocessor.Statistics(1, 2, 3);
+    assertEquals(1, statistics.getPreprocessed());
+    assertEquals(2, statistics.getCopied());
+    assertEquals(3, statistics.getExcluded());
+    assertEquals(0, statistics.getUnchanged());
+    assertEquals(new JcpPreprocessor.Statistics(1, 2, 3, 0), statistics);
+  }
 }
@@ -189,6 +189,30 @@ public class PreprocessTaskTest {
     assertFalse(antTask.makePreprocessorContext().isDontOverwriteSameContent());
   }
 
+  @Test
+  public void testIncremental() {
+    antTask.setIncremental(true);
+    assertTrue(antTask.makePreprocessorContext().isIncremental());
+    antTask.setIncremental(false);
+    assertFalse(antTask.makePreprocessorContext().isIncremental());
+  }
+
+  @Test
+  public void testHardLinks() {
+    antTask.setHardLinks(true);
+    assertTrue(antTask.makePreprocessorContext().isHardLinks());
+    antTask.setHardLinks(false);
+    assertFalse(antTask.makePreprocessorContext().isHardLinks());
+  }
+
+  @Test
+  public void testSyncTarget() {
+    antTask.setSyncTarget(true);
+    assertTrue(antTask.makePreprocessorContext().isSyncTarget());
+    antTask.setSyncTarget(false);
+    assertFalse(antTask.makePreprocessorContext().isSyncTarget());
+  }
+
   @Test
   public void testDryRun() {
     antTask.setDryRun(true);
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.containers;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BinFileCacheTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File makeFile(final String name, final int length) throws Exception {
+    final File file = new File(this.tempFolder.getRoot(), name);
+    Files.write(file.toPath(), new byte[length]);
+    return file;
+  }
+
+  private static BinFileCache.Encoder makeEncoder(final AtomicInteger counter) {
+    return f -> {
+      counter.incrementAndGet();
+      return "#".repeat((int) f.length());
+    };
+  }
+
+  @Test
+  public void testCachedTextIsReused() throws Exception {
+    final File file = makeFile("data.bin", 4);
+    final BinFileCache cache = new BinFileCache(1000L);
+    final AtomicInteger counter = new AtomicInteger();
+
+    assertEquals("####", cache.findOrEncode(file, "base64", makeEncoder(counter)));
+    assertEquals("####", cache.findOrEncode(file, "base64", makeEncoder(counter)));
+    assertEquals("####",
+        cache.findOrEncode(new File(file.getParentFile(), "./data.bin"), "base64",
+            makeEncoder(counter)));
+    assertEquals(1, counter.get());
+    assertEquals("####", cache.findOrEncode(file, "byte[]s", makeEncoder(counter)));
+    assertEquals(2, counter.get());
+    assertEquals(2L, cache.getHits());
+    assertEquals(2L, cache.getMisses());
+    assertEquals(2, cache.size());
+    assertEquals(8L, cache.getCachedChars());
+    assertEquals("BinFileCache(size=2, chars=8, limit=1000, hits=2, misses=2)", cache.toString());
+  }
+}
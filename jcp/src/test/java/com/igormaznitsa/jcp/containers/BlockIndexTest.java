@@ -0,0 +1,92 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.containers;
+
+import static org.junit.Assert.assertEquals;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import java.io.File;
+import org.junit.Test;
+
+public class BlockIndexTest {
+
+  private static BlockIndex build(final String... lines) {
+    return BlockIndex.build(LineStore.of(lines, false), new PreprocessorContext(new File(".")));
+  }
+
+  @Test
+  public void testIfElseEndIf() {
+    final BlockIndex index = build(
+        "//#if a",
+        "text",
+        "  //#ifdef b",
+        "//#endif",
+        "//#else",
+        "text",
+        "//#endif");
+    assertEquals(4, index.findJumpTarget(0));
+    assertEquals(3, index.findJumpTarget(2));
+    assertEquals(6, index.findJumpTarget(4));
+    assertEquals(-1, index.findJumpTarget(1));
+    assertEquals(-1, index.findJumpTarget(6));
+    assertEquals(-1, index.findJumpTarget(100));
+  }
+
+  @Test
+  public void testWhileEnd() {
+    final BlockIndex index = build(
+        "//#while a",
+        "//#if b",
+        "//#break",
+        "//#endif",
+        "//#end");
+    assertEquals(4, index.findJumpTarget(0));
+    assertEquals(3, index.findJumpTarget(1));
+  }
+
+  @Test
+  public void testBlocksWithErrorsAreNotIndexed() {
+    final BlockIndex index = build(
+        "//#if a",
+        "//#if b",
+        "//#unknown",
+        "//#endif",
+        "//#else",
+        "//#if",
+        "//#endif",
+        "//#if c",
+        "//#endif");
+    assertEquals(-1, index.findJumpTarget(0));
+    assertEquals(-1, index.findJumpTarget(1));
+    assertEquals(-1, index.findJumpTarget(4));
+    assertEquals(8, index.findJumpTarget(7));
+  }
+
+  @Test
+  public void testBrokenStructureIsNotIndexed() {
+    final BlockIndex index = build(
+        "//#if a",
+        "//#endif",
+        "//#end");
+    assertEquals(-1, index.findJumpTarget(0));
+  }
+}
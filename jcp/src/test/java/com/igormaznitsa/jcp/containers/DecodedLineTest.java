@@ -0,0 +1,104 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.containers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.directives.IfDirectiveHandler;
+import com.igormaznitsa.jcp.expression.ExpressionParser;
+import com.igormaznitsa.jcp.expression.ExpressionTree;
+import java.io.File;
+import org.junit.Test;
+
+public class DecodedLineTest {
+
+  private static TextFileDataContainer makeText(final String... lines) {
+    return new TextFileDataContainer(new File("some.txt"), lines, false, 0);
+  }
+
+  @Test
+  public void testDecodeLines() {
+    final PreprocessorContext context = new PreprocessorContext(new File("."));
+    final TextFileDataContainer text =
+        makeText("  //#if a==1", "\thello /*$a$*/", "//#unknown", "//#else 1", "   ");
+
+    final DecodedLine directive = text.findDecodedLine(0, context, false);
+    assertEquals("  ", directive.getPrefix());
+    assertEquals("//#if a==1", directive.getLeftTrimmed());
+    assertTrue(directive.isDirective());
+    assertEquals("if a==1", directive.getDirective());
+    assertTrue(directive.getHandler() instanceof IfDirectiveHandler);
+    assertEquals(" a==1", directive.getDirectiveTail());
+    assertTrue(directive.isDirectiveArgumentValid());
+
+    final DecodedLine textLine = text.findDecodedLine(1, context, false);
+    assertEquals("\t", textLine.getPrefix());
+    assertFalse(textLine.isDirective());
+    assertNull(textLine.getHandler());
+    assertTrue(textLine.findMacroTemplate(false).hasMacroses());
+
+    final DecodedLine unknown = text.findDecodedLine(2, context, false);
+    assertTrue(unknown.isDirective());
+    assertNull(unknown.getHandler());
+
+    assertFalse(text.findDecodedLine(3, context, false).isDirectiveArgumentValid());
+
+    final DecodedLine empty = text.findDecodedLine(4, context, false);
+    assertEquals("   ", empty.getPrefix());
+    assertEquals("", empty.getLeftTrimmed());
+  }
+
+  @Test
+  public void testKeptLinesAreReused() {
+    final PreprocessorContext context = new PreprocessorContext(new File("."));
+    final TextFileDataContainer text = makeText("//#if a", "text");
+
+    assertNotSame(text.findDecodedLine(0, context, false), text.findDecodedLine(0, context, false));
+    final DecodedLine kept = text.findDecodedLine(0, context, true);
+    assertSame(kept, text.findDecodedLine(0, context, false));
+    assertSame(kept, new TextFileDataContainer(text, 1).findDecodedLine(0, context, false));
+
+    final PreprocessorContext otherContext = new PreprocessorContext(new File("."));
+    otherContext.setAllowWhitespaces(true);
+    assertNotSame(kept, text.findDecodedLine(0, otherContext, false));
+  }
+
+  @Test
+  public void testExpressionTrees() throws Exception {
+    final PreprocessorContext context = new PreprocessorContext(new File("."));
+    final DecodedLine line = makeText("//#if a").findDecodedLine(0, context, false);
+    final ExpressionTree tree = ExpressionParser.getInstance().parse("1+2", context);
+
+    assertNull(line.findExpressionTree("1+2"));
+    line.putExpressionTree("1+2", tree);
+    assertSame(tree, line.findExpressionTree("1+2"));
+
+    line.putExpressionTree("$func(1)", tree);
+    assertNull(line.findExpressionTree("$func(1)"));
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.containers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.igormaznitsa.jcp.JcpPreprocessor;
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.expression.Value;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.Collections;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DependencyIndexTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static void write(final File file, final String text) throws Exception {
+    FileUtils.writeStringToFile(file, text, StandardCharsets.UTF_8);
+  }
+
+  private static String read(final File file) throws Exception {
+    return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+  }
+
+  private static PreprocessorContext makeContext(final File src, final File dst,
+                                                 final boolean flag) {
+    final PreprocessorContext context = new PreprocessorContext(src);
+    context.setSources(Collections.singletonList(src.getAbsolutePath()));
+    context.setTarget(dst);
+    context.setIncremental(true);
+    context.setGlobalVariable("flag", Value.valueOf(flag));
+    return context;
+  }
+
+  private static JcpPreprocessor.Statistics preprocess(final File src, final File dst,
+                                                       final boolean flag) throws Exception {
+    return new JcpPreprocessor(makeContext(src, dst, flag)).execute();
+  }
+
+  @Test
+  public void testSaveLoad() throws Exception {
+    final File source = this.tempFolder.newFile("source file.txt");
+    final File input = this.tempFolder.newFile("input.txt");
+    write(source, "source");
+    write(input, "input");
+    final File output = new File(this.tempFolder.getRoot(), "out%put.txt");
+
+    final DependencyIndex.Entry entry =
+        new DependencyIndex.Entry(DependencyIndex.FileStamp.of(source), true);
+    entry.getInputs().add(DependencyIndex.FileStamp.of(input));
+    entry.getReadVariables().put("some.var", Value.valueOf("hello world:1% \n"));
+    entry.getReadVariables().put("absent", null);
+    entry.getWrittenVariables()
+        .add(new AbstractMap.SimpleImmutableEntry<>("written", Value.valueOf(1.5f)));
+    entry.getWrittenVariables().add(new AbstractMap.SimpleImmutableEntry<>("removed", null));
+    entry.getOutputs().add(output);
+
+    final File indexFile = new File(this.tempFolder.getRoot(), DependencyIndex.FILE_NAME);
+    assertEquals(0, DependencyIndex.load(indexFile, "fingerprint").size());
+
+    final DependencyIndex index = new DependencyIndex("fingerprint");
+    index.put(entry);
+    index.save(indexFile);
+
+    final DependencyIndex loaded = DependencyIndex.load(indexFile, "fingerprint");
+    assertEquals(1, loaded.size());
+    final DependencyIndex.Entry loadedEntry = loaded.find(source).orElseThrow();
+    assertEquals(entry.getSource(), loadedEntry.getSource());
+    assertTrue(loadedEntry.isCopyOnly());
+    assertEquals(entry.getInputs(), loadedEntry.getInputs());
+    assertEquals(entry.getReadVariables(), loadedEntry.getReadVariables());
+    assertEquals(entry.getWrittenVariables(), loadedEntry.getWrittenVariables());
+    assertEquals(entry.getOutputs(), loadedEntry.getOutputs());
+
+    assertEquals(0, DependencyIndex.load(indexFile, "another").size());
+
+    loaded.retainSources(Collections.singleton(input.getAbsoluteFile()));
+    assertEquals(0, loaded.size());
+  }
+
+  @Test
+  public void testFileStamp() throws Exception {
+    final File file = this.tempFolder.newFile("stamp.txt");
+    write(file, "content");
+    final DependencyIndex.FileStamp stamp = DependencyIndex.FileStamp.of(file);
+    assertFalse(stamp.isChanged());
+
+    assertTrue(file.setLastModified(stamp.getLastModified() - 10000L));
+    assertFalse("Same content must not be recognized as changed", stamp.isChanged());
+
+    write(file, "changed");
+    assertTrue(stamp.isChanged());
+
+    assertTrue(file.delete());
+    assertTrue(stamp.isChanged());
+  }
+
+  @Test
+  public void testIncrementalPreprocessing() throws Exception {
+    final File src = this.tempFolder.newFolder("src");
+    final File dst = this.tempFolder.newFolder("dst");
+
+    write(new File(src, "flag.txt"), "//#if flag\nyes\n//#else\nno\n//#endif\n");
+    write(new File(src, "include.txt"), "//#include \"./part.inc\"\n");
+    write(new File(src, "part.inc"), "part1\n");
+    write(new File(src, "plain.txt"), "plain\n");
+    write(new File(src, "time.txt"), "/*$__time__$*/\n");
+
+    JcpPreprocessor.Statistics stat = preprocess(src, dst, true);
+    assertEquals(4, stat.getPreprocessed());
+    assertEquals(1, stat.getCopied());
+    assertEquals(0, stat.getUnchanged());
+    assertTrue(new File(dst, DependencyIndex.FILE_NAME).isFile());
+    assertEquals("yes\n", read(new File(dst, "flag.txt")));
+
+    stat = preprocess(src, dst, true);
+    assertEquals("only file with time must be preprocessed", 1, stat.getPreprocessed());
+    assertEquals(0, stat.getCopied());
+    assertEquals(4, stat.getUnchanged());
+
+    stat = preprocess(src, dst, false);
+    assertEquals(2, stat.getPreprocessed());
+    assertEquals(3, stat.getUnchanged());
+    assertEquals("no\n", read(new File(dst, "flag.txt")));
+
+    write(new File(src, "part.inc"), "part2\n");
+    stat = preprocess(src, dst, false);
+    assertEquals(2, stat.getPreprocessed());
+    assertEquals(1, stat.getCopied());
+    assertEquals(2, stat.getUnchanged());
+    assertEquals("part2\n", read(new File(dst, "include.txt")));
+
+    assertTrue(new File(dst, "plain.txt").delete());
+    stat = preprocess(src, dst, false);
+    assertEquals(2, stat.getPreprocessed());
+    assertEquals(3, stat.getUnchanged());
+    assertEquals("plain\n", read(new File(dst, "plain.txt")));
+
+    final DependencyIndex index = DependencyIndex.load(new File(dst, DependencyIndex.FILE_NAME),
+        DependencyIndex.makeFingerprint(makeContext(src, dst, false)));
+    assertEquals(4, index.size());
+    assertNull("File with volatile result must not be indexed",
+        index.find(new File(src, "time.txt")).orElse(null));
+  }
+
+  @Test
+  public void testIncrementalPreprocessingOfFilesOpeningSameXml() throws Exception {
+    final File src = this.tempFolder.newFolder("src");
+    final File dst = this.tempFolder.newFolder("dst");
+
+    final String text = "//#local root=xml_root(xml_open(\"data.xml\"))\n/*$xml_text(root)$*/\n";
+    write(new File(src, "first.txt"), text);
+    write(new File(src, "second.txt"), text);
+    write(new File(src, "data.xml"), "<root>one</root>");
+
+    JcpPreprocessor.Statistics stat = preprocess(src, dst, true);
+    assertEquals(2, stat.getPreprocessed());
+    assertEquals("one\n", read(new File(dst, "first.txt")));
+    assertEquals("one\n", read(new File(dst, "second.txt")));
+
+    stat = preprocess(src, dst, true);
+    assertEquals(0, stat.getPreprocessed());
+    assertEquals(2, stat.getUnchanged());
+
+    write(new File(src, "data.xml"), "<root>two</root>");
+    stat = preprocess(src, dst, true);
+    assertEquals(2, stat.getPreprocessed());
+    assertEquals(0, stat.getUnchanged());
+    assertEquals("two\n", read(new File(dst, "first.txt")));
+    assertEquals("two\n", read(new File(dst, "second.txt")));
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.igormaznitsa.jcp.containers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LineClassifierTest {
+
+  @Test
+  public void testFindMarker_NoWhitespaces() {
+    assertEquals(2, LineClassifier.findMarker("//#if", false));
+    assertEquals(2, LineClassifier.findMarker("// #if", false));
+    assertEquals(LineClassifier.NOT_COMMENT, LineClassifier.findMarker(" //#if", false));
+    assertEquals(LineClassifier.NOT_COMMENT, LineClassifier.findMarker("/#if", false));
+  }
+
+  @Test
+  public void testFindMarker_Whitespaces() {
+    assertEquals(5, LineClassifier.findMarker(" // \t#if", true));
+    assertEquals(2, LineClassifier.findMarker("//$$hello", true));
+    assertEquals(LineClassifier.NOT_COMMENT, LineClassifier.findMarker(" / /#if", true));
+    assertEquals(LineClassifier.USE_REGEX, LineClassifier.findMarker("//#if\r", true));
+  }
+
+  @Test
+  public void testSameResultAsRegex() {
+    final String[] lines = {"//#if", " // #if a", "//$$text", " //  $$text", "//$text",
+        "//$\"text", "//$\"\"\"text", "//$$\"\"\"text", "// \t$\"\"\"text", "//#if\r", "//$a\u2028",
+        "text", "", "//", " //"};
+    for (final String line : lines) {
+      assertEquals(line, line.matches("^\\s*//\\s*#(.*)$"),
+          FileInfoContainer.isJcpDirectiveLine(line, true));
+      assertEquals(line, line.matches("^\\s*//\\s*\\$\\$(.*)$"),
+          FileInfoContainer.isDoubleDollarPrefixed(line, true));
+      assertEquals(line, line.matches("^\\s*//\\s*\\$(.*)$"),
+          FileInfoContainer.isSingleDollarPrefixed(line, true));
+      assertEquals(line, line.matches("^\\s*//\\s*\\$\"(.*)$"),
+          FileInfoContainer.isDollarBlockPrefixed(line, true));
+
+      assertEquals(line, line.startsWith("//#"), FileInfoContainer.isJcpDirectiveLine(line, false));
+      assertEquals(line, line.startsWith("//$$"),
+          FileInfoContainer.isDoubleDollarPrefixed(line, false));
+      assertEquals(line, line.startsWith("//$"),
+          FileInfoContainer.isSingleDollarPrefixed(line, false));
+      assertEquals(line, line.startsWith("//$\"\"\""),
+          FileInfoContainer.isDollarBlockPrefixed(line, false));
+      assertEquals(line, line.startsWith("//$$\"\"\""),
+          FileInfoContainer.isDoubleDollarBlockPrefixed(line, false));
+    }
+  }
+
+  @Test
+  public void testIsMarker() {
+    assertTrue(LineClassifier.isMarker("//$$a", 2, "$$"));
+    assertFalse(LineClassifier.isMarker("//$$a", LineClassifier.NOT_COMMENT, "$$"));
+    assertFalse(LineClassifier.isMarker("//$$a", LineClassifier.USE_REGEX, "$$"));
+  }
+}
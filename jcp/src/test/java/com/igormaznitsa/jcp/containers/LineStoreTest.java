@@ -0,0 +1,89 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.containers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class LineStoreTest {
+
+  private static LineStore split(final String text) {
+    return LineStore.split(text.toCharArray(), text.length());
+  }
+
+  @Test
+  public void testSplit() {
+    assertArrayEquals(new String[0], split("").toArray());
+    assertFalse(split("").isEndedByNextLine());
+
+    final LineStore lines = split("one\r\ntwo\n\nthree\rfour\r\r\n");
+    assertArrayEquals(new String[] {"one", "two", "", "three\rfour\r"}, lines.toArray());
+    assertTrue(lines.isEndedByNextLine());
+    assertEquals(4, lines.size());
+    assertEquals(17L, lines.getTextLength());
+
+    final LineStore notEnded = split("one\ntwo\r");
+    assertArrayEquals(new String[] {"one", "two"}, notEnded.toArray());
+    assertFalse(notEnded.isEndedByNextLine());
+
+    assertArrayEquals(new String[] {"one"}, split("one\n\r").toArray());
+  }
+
+  @Test
+  public void testSplitLatin1() {
+    final byte[] bytes = "one\r\n\u00e9#\r\rx\r".getBytes(StandardCharsets.ISO_8859_1);
+    final LineStore lines = LineStore.splitLatin1(bytes, bytes.length);
+    assertArrayEquals(new String[] {"one", "\u00e9#\r\rx"}, lines.toArray());
+    assertFalse(lines.isEndedByNextLine());
+    assertTrue(lines.contains(1, '#'));
+    assertTrue(lines.contains(1, '\u00e9'));
+    assertFalse(lines.contains(1, '\u4e2d'));
+  }
+
+  @Test
+  public void testNonLatin1Text() {
+    final LineStore lines = split("caf\u00e9\n\u4e2d#\n");
+    assertArrayEquals(new String[] {"caf\u00e9", "\u4e2d#"}, lines.toArray());
+    assertFalse(lines.contains(0, '#'));
+    assertTrue(lines.contains(1, '#'));
+    assertTrue(lines.contains(1, '\u4e2d'));
+    assertFalse(split("caf\u00e9").contains(0, '\u4e2d'));
+  }
+
+  @Test
+  public void testOf() {
+    final LineStore lines = LineStore.of(new String[] {"a", "", "b\nc"}, true);
+    assertEquals(3, lines.size());
+    assertEquals("b\nc", lines.getLine(2));
+    assertTrue(lines.isEndedByNextLine());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testWrongIndex() {
+    split("a\nb").getLine(2);
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.containers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StampedFileCacheTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path makeFile(final String name, final int length) throws Exception {
+    final File file = new File(this.tempFolder.getRoot(), name);
+    Files.write(file.toPath(), new byte[length]);
+    return file.toPath();
+  }
+
+  private static StampedFileCache.Loader<String> makeLoader(final Path path,
+                                                            final AtomicInteger counter) {
+    return () -> {
+      counter.incrementAndGet();
+      return "#".repeat((int) Files.size(path));
+    };
+  }
+
+  @Test
+  public void testCachedValueIsReused() throws Exception {
+    final Path file = makeFile("data.bin", 4);
+    final StampedFileCache<String> cache = new StampedFileCache<>(1000L, String::length);
+    final AtomicInteger counter = new AtomicInteger();
+
+    final String value = cache.findOrLoad(file, "base64", makeLoader(file, counter));
+    assertEquals("####", value);
+    assertSame(value, cache.findOrLoad(file, "base64", makeLoader(file, counter)));
+    assertEquals(1, counter.get());
+    assertEquals("####", cache.findOrLoad(file, "byte[]s", makeLoader(file, counter)));
+    assertEquals(2, counter.get());
+    assertEquals(1L, cache.getHits());
+    assertEquals(2L, cache.getMisses());
+    assertEquals(2, cache.size());
+    assertEquals(8L, cache.getCachedChars());
+    assertEquals("(size=2, chars=8, limit=1000, hits=1, misses=2)", cache.toString());
+
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0L, cache.getCachedChars());
+    assertEquals(0L, cache.getHits());
+    assertEquals(0L, cache.getMisses());
+  }
+
+  @Test
+  public void testChangedFileIsLoadedAgain() throws Exception {
+    final Path file = makeFile("data.bin", 4);
+    final StampedFileCache<String> cache = new StampedFileCache<>(1000L, String::length);
+    final AtomicInteger counter = new AtomicInteger();
+
+    assertEquals("####", cache.findOrLoad(file, "base64", makeLoader(file, counter)));
+    makeFile("data.bin", 6);
+    assertEquals("######", cache.findOrLoad(file, "base64", makeLoader(file, counter)));
+    assertEquals(2, counter.get());
+    assertEquals(1, cache.size());
+    assertEquals(6L, cache.getCachedChars());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedValuesAreRemoved() throws Exception {
+    final Path file1 = makeFile("file1.bin", 5);
+    final Path file2 = makeFile("file2.bin", 5);
+    final Path file3 = makeFile("file3.bin", 5);
+    final Path big = makeFile("big.bin", 11);
+    final StampedFileCache<String> cache = new StampedFileCache<>(10L, String::length);
+    final AtomicInteger counter = new AtomicInteger();
+
+    cache.findOrLoad(file1, "base64", makeLoader(file1, counter));
+    cache.findOrLoad(file2, "base64", makeLoader(file2, counter));
+    cache.findOrLoad(file1, "base64", makeLoader(file1, counter));
+    cache.findOrLoad(file3, "base64", makeLoader(file3, counter));
+    assertEquals(2, cache.size());
+    cache.findOrLoad(file1, "base64", makeLoader(file1, counter));
+    assertEquals(3, counter.get());
+
+    assertEquals(11, cache.findOrLoad(big, "base64", makeLoader(big, counter)).length());
+    assertEquals(2, cache.size());
+    assertEquals(10L, cache.getCachedChars());
+  }
+
+  @Test
+  public void testZeroLimitDisablesCache() throws Exception {
+    final Path file = makeFile("data.bin", 4);
+    final StampedFileCache<String> cache = new StampedFileCache<>(0L, String::length);
+    final AtomicInteger counter = new AtomicInteger();
+    cache.findOrLoad(file, "base64", makeLoader(file, counter));
+    cache.findOrLoad(file, "base64", makeLoader(file, counter));
+    assertEquals(2, counter.get());
+    assertEquals(0, cache.size());
+    assertTrue(cache.toString().contains("limit=0"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeLimit() {
+    new StampedFileCache<String>(-1L, String::length);
+  }
+}
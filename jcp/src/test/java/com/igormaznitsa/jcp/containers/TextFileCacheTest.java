@@ -0,0 +1,112 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.containers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TextFileCacheTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File makeFile(final String name, final String text) throws Exception {
+    final File file = new File(this.tempFolder.getRoot(), name);
+    Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  @Test
+  public void testCachedTextIsShared() throws Exception {
+    final File file = makeFile("header.txt", "line1\nline2\n");
+    final TextFileCache cache = new TextFileCache(1000L);
+
+    final LineStore text = cache.findOrRead(file, StandardCharsets.UTF_8);
+    assertArrayEquals(new String[] {"line1", "line2"}, text.toArray());
+    assertSame(text, cache.findOrRead(file, StandardCharsets.UTF_8));
+    assertSame(text, cache.findOrRead(new File(file.getParentFile(), "./header.txt"),
+        StandardCharsets.UTF_8));
+    assertEquals(2L, cache.getHits());
+    assertEquals(1L, cache.getMisses());
+    assertEquals(1, cache.size());
+    assertEquals(10L, cache.getCachedChars());
+  }
+
+  @Test
+  public void testChangedFileIsReadAgain() throws Exception {
+    final File file = makeFile("header.txt", "line1\n");
+    final TextFileCache cache = new TextFileCache(1000L);
+
+    final LineStore text = cache.findOrRead(file, StandardCharsets.UTF_8);
+    makeFile("header.txt", "line1\nline2\n");
+    final LineStore changed = cache.findOrRead(file, StandardCharsets.UTF_8);
+    assertNotSame(text, changed);
+    assertArrayEquals(new String[] {"line1", "line2"}, changed.toArray());
+    assertNotSame(changed, cache.findOrRead(file, StandardCharsets.ISO_8859_1));
+    assertEquals(2, cache.size());
+    assertEquals(0L, cache.getHits());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedTextsAreRemoved() throws Exception {
+    final File file1 = makeFile("file1.txt", "12345");
+    final File file2 = makeFile("file2.txt", "12345");
+    final File file3 = makeFile("file3.txt", "12345");
+    final File big = makeFile("big.txt", "12345678901");
+    final TextFileCache cache = new TextFileCache(10L);
+
+    final LineStore text1 = cache.findOrRead(file1, StandardCharsets.UTF_8);
+    cache.findOrRead(file2, StandardCharsets.UTF_8);
+    assertSame(text1, cache.findOrRead(file1, StandardCharsets.UTF_8));
+    cache.findOrRead(file3, StandardCharsets.UTF_8);
+    assertEquals(2, cache.size());
+    assertSame(text1, cache.findOrRead(file1, StandardCharsets.UTF_8));
+    assertEquals(2L, cache.getHits());
+
+    cache.findOrRead(big, StandardCharsets.UTF_8);
+    assertEquals(2, cache.size());
+    assertEquals(10L, cache.getCachedChars());
+  }
+
+  @Test
+  public void testZeroLimitDisablesCache() throws Exception {
+    final File file = makeFile("header.txt", "line1\n");
+    final TextFileCache cache = new TextFileCache(0L);
+    assertNotSame(cache.findOrRead(file, StandardCharsets.UTF_8),
+        cache.findOrRead(file, StandardCharsets.UTF_8));
+    assertEquals(0, cache.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeLimit() {
+    new TextFileCache(-1L);
+  }
+}
@@ -24,19 +24,27 @@ package com.igormaznitsa.jcp.context;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import com.igormaznitsa.jcp.containers.FileInfoContainer;
+import com.igormaznitsa.jcp.containers.TextFileDataContainer;
+import com.igormaznitsa.jcp.directives.AbstractDirectiveHandler;
+import com.igormaznitsa.jcp.directives.DirectiveHandlerIndex;
 import com.igormaznitsa.jcp.expression.Value;
 import com.igormaznitsa.jcp.extension.PreprocessorExtension;
 import com.igormaznitsa.jcp.logger.PreprocessorLogger;
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -202,6 +210,8 @@ public class PreprocessorContextTest {
         f.set(context, RND.nextBoolean());
       } else if (type == Integer.class || type == int.class) {
         f.set(context, RND.nextInt(10000));
+      } else if (type == Long.class || type == long.class) {
+        f.set(context, (long) RND.nextInt(100000));
       } else if (type == String.class) {
         f.set(context, randomString());
       } else if (type == File.class) {
@@ -295,6 +305,10 @@ public class PreprocessorContextTest {
             CommentRemoverType.values().length]);
       } else if (type.isAssignableFrom(List.class) || type.isAssignableFrom(Set.class)) {
         // ignored
+      } else if (type == DependencyRecorder.class) {
+        // ignored, clones get their own child recorder
+      } else if (type == DirectiveHandlerIndex.class) {
+        // ignored, it is built for directive handlers
       } else {
         throw new Error(String.format("Unexpected %s %s", f.getName(), type.getName()));
       }
@@ -355,4 +369,108 @@ public class PreprocessorContextTest {
     }
   }
 
+  @Test
+  public void testReserveCachedText_SharedWithClone() {
+    final PreprocessorContext baseContext =
+        new PreprocessorContext(new File("some_impossible_folder_121212"));
+    baseContext.setTextCacheLimit(100L);
+    final PreprocessorContext clonedContext = new PreprocessorContext(baseContext);
+
+    assertEquals(100L, clonedContext.getTextCacheLimit());
+    assertTrue(baseContext.reserveCachedText(60L));
+    assertFalse(clonedContext.reserveCachedText(50L));
+    assertTrue(clonedContext.reserveCachedText(40L));
+    assertFalse(baseContext.reserveCachedText(1L));
+
+    clonedContext.releaseCachedText(60L);
+    assertTrue(baseContext.reserveCachedText(60L));
+  }
+
+  @Test
+  public void testProduceNewPreprocessingState_UsesCachedTextOnlyOnce() throws Exception {
+    final PreprocessorContext context =
+        new PreprocessorContext(new File("some_impossible_folder_121212"));
+    final File file = new File("some_impossible_folder_121212", "nonexistent.txt");
+    final FileInfoContainer fileInfo = new FileInfoContainer(file, "nonexistent.txt", false);
+
+    fileInfo.cacheText(context,
+        new TextFileDataContainer(file, new String[] {"hello", "world"}, true, 0));
+    final PreprocessingState state = context.produceNewPreprocessingState(fileInfo, 1);
+    assertEquals("hello", state.getRootTextContainer().nextLine());
+    assertEquals("world", state.getRootTextContainer().nextLine());
+    assertNull(fileInfo.takeCachedText(context));
+    assertTrue(context.reserveCachedText(context.getTextCacheLimit()));
+
+    try {
+      context.produceNewPreprocessingState(fileInfo, 1);
+      fail("Must throw IOException for non-cached nonexistent file");
+    } catch (IOException ex) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCacheText_DroppedIfLimitExceeded() {
+    final PreprocessorContext context =
+        new PreprocessorContext(new File("some_impossible_folder_121212"));
+    context.setTextCacheLimit(5L);
+    final File file = new File("some_impossible_folder_121212", "nonexistent.txt");
+    final FileInfoContainer fileInfo = new FileInfoContainer(file, "nonexistent.txt", false);
+
+    fileInfo.cacheText(context,
+        new TextFileDataContainer(file, new String[] {"hello", "world"}, true, 0));
+    assertNull(fileInfo.takeCachedText(context));
+    assertTrue(context.reserveCachedText(5L));
+  }
+
+  @Test
+  public void testClone_RecordsOnlyRealReadsInParentRecorder() {
+    final PreprocessorContext context =
+        new PreprocessorContext(new File("some_impossible_folder_121212"));
+    context.setGlobalVariable("one", Value.INT_ONE);
+    context.setGlobalVariable("two", Value.INT_TWO);
+    final DependencyRecorder recorder = new DependencyRecorder();
+    context.setDependencyRecorder(recorder);
+
+    final PreprocessorContext clone = new PreprocessorContext(context);
+    assertTrue(recorder.getReadVariables().isEmpty());
+
+    assertEquals(Value.INT_ONE, clone.findVariableForName("one", true));
+    clone.setGlobalVariable("three", Value.INT_THREE);
+    assertEquals(Value.INT_THREE, clone.findVariableForName("three", true));
+
+    assertEquals(Set.of("one"), recorder.getReadVariables().keySet());
+    assertEquals(Value.INT_ONE, recorder.getReadVariables().get("one"));
+    assertTrue(recorder.getWrittenVariables().isEmpty());
+    assertFalse(recorder.isVolatile());
+
+    clone.getDependencyRecorder().markVolatile();
+    assertTrue(recorder.isVolatile());
+  }
+
+  @Test
+  public void testGetDirectiveHandlerIndex_CachedForOverriddenHandlers() {
+    final List<AbstractDirectiveHandler> handlers =
+        List.copyOf(AbstractDirectiveHandler.findAllDirectives());
+    final List<List<AbstractDirectiveHandler>> current = new ArrayList<>(List.of(handlers));
+    final PreprocessorContext context =
+        new PreprocessorContext(new File("some_impossible_folder_121212")) {
+          @Override
+          public List<AbstractDirectiveHandler> getDirectiveHandlers() {
+            return current.get(0);
+          }
+        };
+
+    final DirectiveHandlerIndex index = context.getDirectiveHandlerIndex();
+    assertTrue(index.isMadeFor(handlers));
+    assertSame(index, context.getDirectiveHandlerIndex());
+
+    final List<AbstractDirectiveHandler> otherHandlers = new ArrayList<>(handlers);
+    current.set(0, otherHandlers);
+    final DirectiveHandlerIndex otherIndex = context.getDirectiveHandlerIndex();
+    assertNotSame(index, otherIndex);
+    assertTrue(otherIndex.isMadeFor(otherHandlers));
+    assertSame(otherIndex, context.getDirectiveHandlerIndex());
+  }
+
 }
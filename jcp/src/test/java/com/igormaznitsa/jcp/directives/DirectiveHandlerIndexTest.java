@@ -0,0 +1,65 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.igormaznitsa.jcp.directives;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+import org.junit.Test;
+
+public class DirectiveHandlerIndexTest {
+
+  private static AbstractDirectiveHandler findLinear(final List<AbstractDirectiveHandler> handlers,
+                                                     final String directive) {
+    for (final AbstractDirectiveHandler handler : handlers) {
+      if (directive.startsWith(handler.getName())) {
+        return handler;
+      }
+    }
+    return null;
+  }
+
+  @Test
+  public void testSameResultAsLinearSearch() {
+    final List<AbstractDirectiveHandler> handlers = AbstractDirectiveHandler.findAllDirectives();
+    final DirectiveHandlerIndex index = new DirectiveHandlerIndex(handlers);
+
+    for (final AbstractDirectiveHandler handler : handlers) {
+      final String name = handler.getName();
+      for (final String directive : new String[] {name, name + ' ', name + " a+b", name + "def",
+          name + "l", name.substring(0, name.length() - 1)}) {
+        assertSame(directive, findLinear(handlers, directive), index.find(directive));
+      }
+    }
+  }
+
+  @Test
+  public void testUnknownDirective() {
+    final DirectiveHandlerIndex index =
+        new DirectiveHandlerIndex(AbstractDirectiveHandler.findAllDirectives());
+    assertNull(index.find(""));
+    assertNull(index.find("unknown"));
+    assertNull(index.find("_unknown"));
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.igormaznitsa.jcp.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.expression.functions.AbstractFunction;
+import com.igormaznitsa.jcp.expression.functions.FunctionABS;
+import com.igormaznitsa.jcp.expression.operators.AbstractOperator;
+import com.igormaznitsa.jcp.expression.operators.OperatorADD;
+import com.igormaznitsa.jcp.expression.operators.OperatorNOT;
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+import org.junit.Test;
+
+public class ExecuteMethodTableTest {
+
+  @Test
+  public void testOperatorMethod() throws Throwable {
+    final ExecuteMethodTable table = ExecuteMethodTable.forClass(OperatorADD.class);
+    assertSame(table, ExecuteMethodTable.forClass(OperatorADD.class));
+
+    final MethodHandle intInt =
+        table.findOperatorMethod(new Value[] {Value.INT_ONE, Value.INT_TWO});
+    assertNotNull(intInt);
+    assertSame(intInt, table.findOperatorMethod(new Value[] {Value.INT_TWO, Value.INT_FIVE}));
+
+    final AbstractOperator operator = AbstractOperator.findForClass(OperatorADD.class);
+    assertEquals(Value.INT_THREE,
+        (Value) intInt.invokeExact(operator, Value.INT_ONE, Value.INT_TWO));
+
+    assertNull(table.findOperatorMethod(new Value[] {Value.BOOLEAN_TRUE, Value.INT_ONE}));
+  }
+
+  @Test
+  public void testOperatorMethod_Unary() throws Throwable {
+    final MethodHandle handle = ExecuteMethodTable.forClass(OperatorNOT.class)
+        .findOperatorMethod(new Value[] {Value.BOOLEAN_TRUE});
+    assertNotNull(handle);
+
+    final AbstractOperator operator = AbstractOperator.findForClass(OperatorNOT.class);
+    assertEquals(Value.BOOLEAN_FALSE, (Value) handle.invokeExact(operator, Value.BOOLEAN_TRUE));
+  }
+
+  @Test
+  public void testFunctionMethod() throws Throwable {
+    final ExecuteMethodTable table = ExecuteMethodTable.forClass(FunctionABS.class);
+    final MethodHandle handle = table.findFunctionMethod(List.of(ValueType.INT), 1);
+    assertNotNull(handle);
+    assertSame(handle, table.findFunctionMethod(List.of(ValueType.INT), 1));
+    assertNull(table.findFunctionMethod(List.of(ValueType.BOOLEAN), 1));
+
+    final AbstractFunction function = AbstractFunction.findForClass(FunctionABS.class);
+    final PreprocessorContext context =
+        new PreprocessorContext(new File("some_impossible_folder_121212"));
+    assertEquals(Value.INT_FIVE,
+        (Value) handle.invokeExact(function, context, new Value[] {Value.valueOf(-5L)}));
+  }
+
+  @Test
+  public void testMakeSignature() {
+    assertEquals("executeIntStr",
+        ExecuteMethodTable.makeSignature(List.of(ValueType.INT, ValueType.STRING)));
+    assertEquals("execute", ExecuteMethodTable.makeSignature(List.of()));
+  }
+}
@@ -41,6 +41,7 @@ import com.igormaznitsa.jcp.expression.operators.OperatorMUL;
 import com.igormaznitsa.jcp.expression.operators.OperatorSUB;
 import java.io.PushbackReader;
 import java.io.StringReader;
+import java.util.List;
 import org.junit.Test;
 
 public class ExpressionParserTest extends AbstractMockPreprocessorContextTest {
@@ -70,84 +71,84 @@ public class ExpressionParserTest extends AbstractMockPreprocessorContextTest {
   public void testNextItem_zero() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("0"));
+    final ExpressionLexer lexer = new ExpressionLexer("0");
     assertEquals("Must be 0", Value.INT_ZERO,
-        ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+        lexer.nextItem(context));
+    assertNull("Must be null", lexer.nextItem(context));
   }
 
   @Test
   public void testNextItem_negativeNumber() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("-1"));
+    final ExpressionLexer lexer = new ExpressionLexer("-1");
     assertEquals("Must be SUB", AbstractOperator.findForClass(OperatorSUB.class),
-        ExpressionParser.getInstance().nextItem(reader, context));
+        lexer.nextItem(context));
     assertEquals("Must be 1", Value.INT_ONE,
-        ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+        lexer.nextItem(context));
+    assertNull("Must be null", lexer.nextItem(context));
   }
 
   @Test
   public void testNextItem_zeroLess() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("0<"));
+    final ExpressionLexer lexer = new ExpressionLexer("0<");
     assertEquals("Must be 0", Value.INT_ZERO,
-        ExpressionParser.getInstance().nextItem(reader, context));
+        lexer.nextItem(context));
     assertEquals("Must be LESS", AbstractOperator.findForClass(OperatorLESS.class),
-        ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+        lexer.nextItem(context));
+    assertNull("Must be null", lexer.nextItem(context));
   }
 
   @Test
   public void testNextItem_oneValue() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("3"));
+    final ExpressionLexer lexer = new ExpressionLexer("3");
     assertEquals("Must be 3", Value.INT_THREE,
-        ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+        lexer.nextItem(context));
+    assertNull("Must be null", lexer.nextItem(context));
   }
 
   @Test
   public void testNextItem_oneHexValue() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("0xfF"));
+    final ExpressionLexer lexer = new ExpressionLexer("0xfF");
     assertEquals("Must be 255", Value.valueOf(255L),
-        ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+        lexer.nextItem(context));
+    assertNull("Must be null", lexer.nextItem(context));
   }
 
   @Test
   public void testNextItem_oneBooleanTrueValue() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("true"));
+    final ExpressionLexer lexer = new ExpressionLexer("true");
     assertEquals("Must be TRUE", Value.BOOLEAN_TRUE,
-        ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+        lexer.nextItem(context));
+    assertNull("Must be null", lexer.nextItem(context));
   }
 
   @Test
   public void testNextItem_oneBooleanFalseValue() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("false"));
+    final ExpressionLexer lexer = new ExpressionLexer("false");
     assertEquals("Must be FALSE", Value.BOOLEAN_FALSE,
-        ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+        lexer.nextItem(context));
+    assertNull("Must be null", lexer.nextItem(context));
   }
 
   @Test
   public void testNextItem_oneOperator() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("/"));
+    final ExpressionLexer lexer = new ExpressionLexer("/");
     assertEquals("Must be DIV", AbstractOperator.findForClass(OperatorDIV.class),
-        ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+        lexer.nextItem(context));
+    assertNull("Must be null", lexer.nextItem(context));
   }
 
   @Test
@@ -155,8 +156,7 @@ public class ExpressionParserTest extends AbstractMockPreprocessorContextTest {
 
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader =
-        new PushbackReader(new StringReader("xml_attr(1.3%abs(1+2)*3/4,\"hello\"==\"\nworld\t\")"));
+    final ExpressionLexer lexer = new ExpressionLexer("xml_attr(1.3%abs(1+2)*3/4,\"hello\"==\"\nworld\t\")");
 
     final ExpressionItem[] items = new ExpressionItem[] {
         AbstractFunction.findForClass(FunctionXML_ATTR.class),
@@ -183,10 +183,27 @@ public class ExpressionParserTest extends AbstractMockPreprocessorContextTest {
     int index = 0;
     for (final ExpressionItem item : items) {
       assertEquals("Position " + index + " must be equal", item,
-          ExpressionParser.getInstance().nextItem(reader, context));
+          lexer.nextItem(context));
       index++;
     }
-    assertNull(ExpressionParser.getInstance().nextItem(reader, context));
+    assertNull(lexer.nextItem(context));
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void testReadExpression_Reader() throws Exception {
+    final PreprocessorContext context = prepareMockContext();
+
+    final ExpressionTree tree = new ExpressionTree();
+    assertEquals(ExpressionParser.SpecialItem.COMMA, ExpressionParser.getInstance()
+        .readExpression(new PushbackReader(new StringReader("1+2,3")), tree, context, false, true));
+    tree.postProcess();
+
+    final ExpressionTreeElement root = tree.getRoot();
+    assertEquals("Root must be ADD", AbstractOperator.findForClass(OperatorADD.class),
+        root.getItem());
+    assertEquals(Value.INT_ONE, root.getChildForIndex(0).getItem());
+    assertEquals(Value.INT_TWO, root.getChildForIndex(1).getItem());
   }
 
   @Test
@@ -323,4 +340,16 @@ public class ExpressionParserTest extends AbstractMockPreprocessorContextTest {
     final ExpressionTree tree = parser.parse("()", context);
     assertTrue("Must be empty", tree.getRoot().isEmptySlot());
   }
+
+  @Test
+  public void testParseList() throws Exception {
+    final PreprocessorContext context = prepareMockContext();
+
+    final List<ExpressionTree> list =
+        ExpressionParser.getInstance().parseList("1+2,\"a,b\",(3)", context);
+    assertEquals(3, list.size());
+    assertEquals(AbstractOperator.findForClass(OperatorADD.class), list.get(0).getRoot().getItem());
+    assertEquals(Value.valueOf("a,b"), list.get(1).getRoot().getItem());
+    assertEquals(Value.INT_THREE, list.get(2).getRoot().getItem());
+  }
 }
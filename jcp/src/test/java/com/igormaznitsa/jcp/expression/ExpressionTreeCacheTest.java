@@ -0,0 +1,93 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.igormaznitsa.jcp.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.igormaznitsa.jcp.AbstractSpyPreprocessorContextTest;
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import org.junit.Test;
+
+public class ExpressionTreeCacheTest extends AbstractSpyPreprocessorContextTest {
+
+  @Test
+  public void testHitsAndMisses() throws Exception {
+    final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
+    final ExpressionTreeCache cache = new ExpressionTreeCache(16);
+
+    final ExpressionTree first = cache.findOrParse("1+2*3", context);
+    final ExpressionTree second = cache.findOrParse("1+2*3", context);
+    cache.findOrParse("4/2", context);
+
+    assertSame(first, second);
+    assertEquals(1L, cache.getHits());
+    assertEquals(2L, cache.getMisses());
+    assertEquals(2, cache.size());
+    assertEquals(Value.valueOf(7L), Expression.evalTree(second, context));
+
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0L, cache.getHits());
+    assertEquals(0L, cache.getMisses());
+  }
+
+  @Test
+  public void testCapacityLimit() throws Exception {
+    final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
+    final ExpressionTreeCache cache = new ExpressionTreeCache(2);
+
+    final ExpressionTree tree = cache.findOrParse("1", context);
+    cache.findOrParse("2", context);
+    cache.findOrParse("3", context);
+
+    assertEquals(2, cache.size());
+    assertNotSame(tree, cache.findOrParse("1", context));
+    assertEquals(4L, cache.getMisses());
+  }
+
+  @Test
+  public void testZeroCapacityDisablesCache() throws Exception {
+    final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
+    final ExpressionTreeCache cache = new ExpressionTreeCache(0);
+
+    assertNotSame(cache.findOrParse("1", context), cache.findOrParse("1", context));
+    assertEquals(0, cache.size());
+    assertEquals(0L, cache.getHits());
+    assertEquals(0L, cache.getMisses());
+  }
+
+  @Test
+  public void testCachedTreeUsesCurrentVariableValues() throws Exception {
+    final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
+
+    context.setLocalVariable("hello", Value.INT_ONE);
+    assertEquals(Value.INT_TWO, Expression.evalExpression("hello+1", context));
+    context.setLocalVariable("hello", Value.INT_TWO);
+    assertEquals(Value.INT_THREE, Expression.evalExpression("hello+1", context));
+
+    assertEquals(1L, context.getExpressionTreeCache().getHits());
+    assertEquals(1L, context.getExpressionTreeCache().getMisses());
+  }
+}
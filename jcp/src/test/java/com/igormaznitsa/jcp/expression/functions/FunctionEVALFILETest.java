@@ -89,6 +89,35 @@ public class FunctionEVALFILETest extends AbstractFunctionTest {
     assertDestinationFolderEmpty();
   }
 
+  @Test
+  public void testExecution_CachedResult() throws Exception {
+    final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
+    final String expression =
+        String.format("evalfile(\".%s\")", StringEscapeUtils.escapeJava(TEST_EVAL_PATH));
+
+    context.setLocalVariable("hello_world", Value.valueOf("Hello World!"));
+    final String first = Expression.evalExpression(expression, context).asString();
+    assertEquals(first, Expression.evalExpression(expression, context).asString());
+    assertEquals(1L, context.getEvalFileCache().getMisses());
+    assertEquals(1L, context.getEvalFileCache().getHits());
+
+    context.setLocalVariable("hello_world", Value.valueOf("Bye!"));
+    assertEquals("System.out.println(\"Bye!\");",
+        Expression.evalExpression(expression, context).asString().trim());
+    assertEquals(2L, context.getEvalFileCache().getMisses());
+
+    context.setLocalVariable("hello_world", Value.valueOf("Hello World!"));
+    context.setGlobalVariable("unused_variable", Value.valueOf(1L));
+    assertEquals(first, Expression.evalExpression(expression, context).asString());
+    assertEquals(2L, context.getEvalFileCache().getHits());
+
+    context.setGlobalVariable("includemeth", Value.valueOf(true));
+    assertTrue(Expression.evalExpression(expression, context).asString()
+        .contains("public void main(String ... args){"));
+    assertEquals(3L, context.getEvalFileCache().getMisses());
+    assertDestinationFolderEmpty();
+  }
+
   @Test
   public void testExecution_VisibilityGlobalVariable() throws Exception {
     final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
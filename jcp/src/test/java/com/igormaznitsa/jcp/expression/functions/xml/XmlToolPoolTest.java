@@ -0,0 +1,87 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.expression.functions.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.expression.functions.FunctionABS;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import javax.xml.xpath.XPathConstants;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class XmlToolPoolTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File makeFile(final String name, final String text) throws Exception {
+    final File file = new File(this.tempFolder.getRoot(), name);
+    Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  private static int countElements(final XmlToolPool pool, final Document document,
+                                   final String path) throws Exception {
+    return ((NodeList) pool.evaluate(path, document, XPathConstants.NODESET)).getLength();
+  }
+
+  @Test
+  public void testCachedXPathResultsForRepeatedCallsAndDocuments() throws Exception {
+    final XmlToolPool pool = new XmlToolPool();
+    final Document first = pool.parse(makeFile("first.xml", "<root><a/><a/><b/></root>"));
+    final Document second = pool.parse(makeFile("second.xml", "<root><a/></root>"));
+    assertNotSame(first, second);
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals(2, countElements(pool, first, "/root/a"));
+      assertEquals(1, countElements(pool, second, "/root/a"));
+      assertEquals(1, countElements(pool, first, "/root/b"));
+      assertEquals(0, countElements(pool, second, "/root/b"));
+    }
+    assertEquals(2L, pool.getCompiledExpressions());
+    assertEquals("b",
+        ((Element) pool.evaluate("/root/b", first, XPathConstants.NODE)).getTagName());
+    assertEquals(2L, pool.getCompiledExpressions());
+  }
+
+  @Test
+  public void testXmlFunctionsAreLockedByPoolSharedWithClones() {
+    final PreprocessorContext context =
+        new PreprocessorContext(new File("some_impossible_folder_121212"));
+    final PreprocessorContext clone = new PreprocessorContext(context);
+    assertSame(context.getXmlToolPool(), clone.getXmlToolPool());
+    assertSame(context.getXmlToolPool(), new FunctionXML_OPEN().findExecutionLock(clone));
+    assertSame(context.getXmlToolPool(), new FunctionXML_TEXT().findExecutionLock(context));
+    assertNull(new FunctionABS().findExecutionLock(context));
+  }
+}
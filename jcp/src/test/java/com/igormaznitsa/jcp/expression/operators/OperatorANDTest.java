@@ -22,6 +22,8 @@
 package com.igormaznitsa.jcp.expression.operators;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import com.igormaznitsa.jcp.expression.ExpressionItemPriority;
 import com.igormaznitsa.jcp.expression.Value;
@@ -45,6 +47,20 @@ public class OperatorANDTest extends AbstractOperatorTest {
     assertExecution(Value.valueOf(Boolean.TRUE), "true && true && true");
   }
 
+  @Test
+  public void testShortCircuit() throws Exception {
+    assertTrue(HANDLER.isShortCircuit());
+    assertEquals(Value.BOOLEAN_FALSE, HANDLER.findShortCircuitResult(Value.BOOLEAN_FALSE));
+    assertNull(HANDLER.findShortCircuitResult(Value.BOOLEAN_TRUE));
+    assertNull(HANDLER.findShortCircuitResult(Value.INT_ZERO));
+
+    assertExecution(Value.BOOLEAN_FALSE, "false && strlen(unknown_variable) > 3");
+    assertExecution(Value.BOOLEAN_FALSE, "false && true && strlen(unknown_variable) == 3");
+    assertExecution(Value.BOOLEAN_FALSE,
+        "false && (strlen(unknown_variable) == 1 || strlen(unknown_variable) == 2)");
+    assertExecution(Value.valueOf(0L), "0 && 1");
+  }
+
   @Override
   public void testExecution_PreprocessorException() throws Exception {
     assertPreprocessorException("&&");
@@ -52,6 +68,9 @@ public class OperatorANDTest extends AbstractOperatorTest {
     assertPreprocessorException("&& false");
     assertPreprocessorException("\"test\" && true");
     assertPreprocessorException("false && 1.3");
+    assertPreprocessorException("false && (1 > \"s\")");
+    assertPreprocessorException("false && strlen(1) > 3");
+    assertPreprocessorException("false && strlen(\"abc\", 1) > 3");
   }
 
   @Override
@@ -22,9 +22,12 @@
 package com.igormaznitsa.jcp.expression.operators;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import com.igormaznitsa.jcp.expression.ExpressionItemPriority;
 import com.igormaznitsa.jcp.expression.Value;
+import org.junit.Test;
 
 public class OperatorORTest extends AbstractOperatorTest {
 
@@ -59,6 +62,20 @@ public class OperatorORTest extends AbstractOperatorTest {
     assertExecution(Value.valueOf(3L), "1||2");
   }
 
+  @Test
+  public void testShortCircuit() throws Exception {
+    assertTrue(HANDLER.isShortCircuit());
+    assertEquals(Value.BOOLEAN_TRUE, HANDLER.findShortCircuitResult(Value.BOOLEAN_TRUE));
+    assertNull(HANDLER.findShortCircuitResult(Value.BOOLEAN_FALSE));
+    assertNull(HANDLER.findShortCircuitResult(Value.INT_ZERO));
+
+    assertExecution(Value.BOOLEAN_TRUE, "true || strlen(unknown_variable) > 3");
+    assertExecution(Value.BOOLEAN_TRUE, "true || false || strlen(unknown_variable) == 3");
+    assertExecution(Value.BOOLEAN_TRUE,
+        "true || !(strlen(unknown_variable) == 1 && strlen(unknown_variable) == 2)");
+    assertExecution(Value.valueOf(3L), "2 || 1");
+  }
+
   @Override
   public void testExecution_PreprocessorException() throws Exception {
     assertPreprocessorException("||");
@@ -66,6 +83,9 @@ public class OperatorORTest extends AbstractOperatorTest {
     assertPreprocessorException("\"test\"||true");
     assertPreprocessorException("true||1");
     assertPreprocessorException("1.2||1.1");
+    assertPreprocessorException("true || (1 > \"s\")");
+    assertPreprocessorException("true || strlen(1) > 3");
+    assertPreprocessorException("true || strlen(\"abc\", 1) > 3");
     assertPreprocessorException("||false");
   }
 }
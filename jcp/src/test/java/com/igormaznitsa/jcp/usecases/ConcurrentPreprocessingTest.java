@@ -0,0 +1,49 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.igormaznitsa.jcp.usecases;
+
+import static org.junit.Assert.assertEquals;
+
+import com.igormaznitsa.jcp.JcpPreprocessor;
+import com.igormaznitsa.jcp.containers.FileInfoContainer;
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+
+public class ConcurrentPreprocessingTest extends AbstractUseCaseTest {
+
+  @Override
+  protected void tuneContext(final PreprocessorContext context) {
+    context.setThreads(4);
+  }
+
+  @Override
+  public void check(PreprocessorContext context, JcpPreprocessor.Statistics stat) throws Exception {
+    assertEquals(0, stat.getCopied());
+    assertEquals(7, stat.getPreprocessed());
+    assertEquals(0, stat.getExcluded());
+
+    for (final FileInfoContainer container : context.findPreprocessedResources()) {
+      assertEquals(container.getSourceFile().getName().equals("mutator.txt"),
+          container.isGlobalStateMutator());
+      assertEquals(1, container.getGeneratedResources().size());
+    }
+  }
+
+}
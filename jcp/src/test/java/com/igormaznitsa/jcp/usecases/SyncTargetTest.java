@@ -0,0 +1,70 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.igormaznitsa.jcp.usecases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.igormaznitsa.jcp.JcpPreprocessor;
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class SyncTargetTest extends AbstractUseCaseTest {
+
+  private static final long OLD_TIME = 1_000_000_000L;
+
+  private void makeFile(final String path, final String text) {
+    final File file = new File(this.tmpResultFolder.getRoot(), path);
+    try {
+      Files.createDirectories(file.getParentFile().toPath());
+      Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    }
+    assertTrue(file.setLastModified(OLD_TIME));
+  }
+
+  @Override
+  protected void tuneContext(final PreprocessorContext context) {
+    context.setClearTarget(false);
+    context.setSyncTarget(true);
+    context.setDontOverwriteSameContent(true);
+
+    this.makeFile("res/data.dat", "some resource\n");
+    this.makeFile("stale.txt", "stale");
+    this.makeFile("res/stale.dat", "stale");
+    this.makeFile("old/folder/stale.txt", "stale");
+  }
+
+  @Override
+  public void check(PreprocessorContext context, JcpPreprocessor.Statistics stat) throws Exception {
+    assertEquals(0, stat.getCopied());
+    assertEquals(1, stat.getPreprocessed());
+
+    assertEquals(OLD_TIME, new File(this.tmpResultFolder.getRoot(), "res/data.dat").lastModified());
+    assertFalse(new File(this.tmpResultFolder.getRoot(), "old").exists());
+  }
+
+}
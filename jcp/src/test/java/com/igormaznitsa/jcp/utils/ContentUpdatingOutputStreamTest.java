@@ -0,0 +1,147 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ContentUpdatingOutputStreamTest {
+
+  private static final long OLD_TIME = 1_000_000_000L;
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static byte[] makeData(final int length, final int seed) {
+    final byte[] result = new byte[length];
+    for (int i = 0; i < length; i++) {
+      result[i] = (byte) (i * 31 + seed);
+    }
+    return result;
+  }
+
+  private boolean write(final File file, final byte[] data, final int portion) throws Exception {
+    final ContentUpdatingOutputStream stream = new ContentUpdatingOutputStream(file, 64);
+    try {
+      for (int i = 0; i < data.length; i += portion) {
+        if (portion == 1) {
+          stream.write(data[i]);
+        } else {
+          stream.write(data, i, Math.min(portion, data.length - i));
+        }
+      }
+    } finally {
+      stream.close();
+    }
+    return stream.isChanged();
+  }
+
+  private File makeFile(final byte[] data) throws Exception {
+    final File file = this.tempFolder.newFile();
+    Files.write(file.toPath(), data);
+    assertTrue(file.setLastModified(OLD_TIME));
+    return file;
+  }
+
+  @Test
+  public void testNonExistingFile() throws Exception {
+    final File file = new File(this.tempFolder.getRoot(), "new.bin");
+    final byte[] data = makeData(1000, 1);
+    assertTrue(write(file, data, 33));
+    assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+  }
+
+  @Test
+  public void testNonExistingFile_EmptyContent() throws Exception {
+    final File file = new File(this.tempFolder.getRoot(), "empty.bin");
+    assertTrue(write(file, new byte[0], 1));
+    assertTrue(file.isFile());
+    assertEquals(0L, file.length());
+  }
+
+  @Test
+  public void testSameContentNotTouched() throws Exception {
+    for (final int portion : new int[] {1, 7, 64, 1000, 5000}) {
+      final byte[] data = makeData(3000, 2);
+      final File file = makeFile(data);
+      assertFalse(write(file, data, portion));
+      assertEquals(OLD_TIME, file.lastModified());
+      assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+    }
+  }
+
+  @Test
+  public void testChangedInMiddle() throws Exception {
+    for (final int portion : new int[] {1, 7, 64, 1000, 5000}) {
+      final byte[] data = makeData(3000, 3);
+      final File file = makeFile(data);
+      final byte[] changed = data.clone();
+      changed[1500] = (byte) (changed[1500] + 1);
+      assertTrue(write(file, changed, portion));
+      assertArrayEquals(changed, Files.readAllBytes(file.toPath()));
+    }
+  }
+
+  @Test
+  public void testLongerAndShorterContent() throws Exception {
+    final byte[] data = makeData(3000, 4);
+
+    final byte[] longer = makeData(4000, 4);
+    File file = makeFile(data);
+    assertTrue(write(file, longer, 100));
+    assertArrayEquals(longer, Files.readAllBytes(file.toPath()));
+
+    final byte[] shorter = Arrays.copyOf(data, 2000);
+    file = makeFile(data);
+    assertTrue(write(file, shorter, 100));
+    assertArrayEquals(shorter, Files.readAllBytes(file.toPath()));
+
+    file = makeFile(data);
+    assertTrue(write(file, new byte[0], 1));
+    assertEquals(0L, file.length());
+  }
+
+  @Test
+  public void testAbortDoesNotTruncate() throws Exception {
+    final byte[] data = makeData(3000, 5);
+    final File file = makeFile(data);
+    final ContentUpdatingOutputStream stream = new ContentUpdatingOutputStream(file, 64);
+    stream.write(data, 0, 1000);
+    stream.abort();
+    stream.abort();
+    assertFalse(stream.isChanged());
+    assertEquals(OLD_TIME, file.lastModified());
+    assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+
+    stream.close();
+    assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+  }
+}
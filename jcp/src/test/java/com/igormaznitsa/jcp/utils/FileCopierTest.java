@@ -0,0 +1,88 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileCopierTest {
+
+  private static final long OLD_TIME = 1_000_000_000L;
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File makeFile(final String name, final String text) throws Exception {
+    final File file = this.tempFolder.newFile(name);
+    Files.write(file.toPath(), text.getBytes("UTF-8"));
+    assertTrue(file.setLastModified(OLD_TIME));
+    return file;
+  }
+
+  @Test
+  public void testCopyIntoNewFolders() throws Exception {
+    final File source = makeFile("source.txt", "Hello world");
+    final File target1 = new File(this.tempFolder.getRoot(), "a/b/c/target1.txt");
+    final File target2 = new File(this.tempFolder.getRoot(), "a/b/c/target2.txt");
+
+    final FileCopier copier = new FileCopier(false, false);
+    assertFalse(copier.copy(source, target1));
+    assertFalse(copier.copy(source, target2));
+
+    assertArrayEquals(Files.readAllBytes(source.toPath()), Files.readAllBytes(target1.toPath()));
+    assertArrayEquals(Files.readAllBytes(source.toPath()), Files.readAllBytes(target2.toPath()));
+    assertEquals(OLD_TIME, target1.lastModified());
+    assertEquals(OLD_TIME, target2.lastModified());
+  }
+
+  @Test
+  public void testCopyReplacesExistingFile() throws Exception {
+    final File source = makeFile("source.txt", "Hello world");
+    final File target = makeFile("target.txt", "Some long text which should be replaced");
+
+    assertFalse(new FileCopier(true, false).copy(source, target));
+    assertArrayEquals(Files.readAllBytes(source.toPath()), Files.readAllBytes(target.toPath()));
+  }
+
+  @Test
+  public void testHardLink() throws Exception {
+    final File source = makeFile("source.txt", "Hello world");
+    final File target = makeFile("target.txt", "Old text");
+
+    final FileCopier copier = new FileCopier(false, true);
+    final boolean linked = copier.copy(source, target);
+    assertEquals(linked, copier.isHardLinks());
+    assertArrayEquals(Files.readAllBytes(source.toPath()), Files.readAllBytes(target.toPath()));
+    if (linked) {
+      assertTrue(Files.isSameFile(source.toPath(), target.toPath()));
+      assertTrue(PreprocessorUtils.isFileContentEquals(source, target));
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.expression.Value;
+import java.io.File;
+import org.junit.Test;
+
+public class MacroTemplateTest {
+
+  private static PreprocessorContext makeContext(final boolean allowWhitespaces) {
+    final PreprocessorContext context = new PreprocessorContext(new File("."));
+    context.setAllowWhitespaces(allowWhitespaces);
+    context.setGlobalVariable("a", Value.valueOf(1L));
+    context.setGlobalVariable("b", Value.valueOf("/*$a$*/"));
+    context.setGlobalVariable("c", Value.valueOf("/*"));
+    return context;
+  }
+
+  @Test
+  public void testNoMacroses() {
+    final String text = "hello /* world */ $ $*/";
+    final MacroTemplate template = MacroTemplate.parse(text, false);
+    assertFalse(template.hasMacroses());
+    assertSame(text, template.expand(makeContext(false), new StringBuilder()));
+    assertSame(text, PreprocessorUtils.processMacroses(text, makeContext(false)));
+    assertSame(text, PreprocessorUtils.processMacroses(text, makeContext(true)));
+  }
+
+  @Test
+  public void testExpand() {
+    final PreprocessorContext context = makeContext(false);
+    final MacroTemplate template = MacroTemplate.parse("x=/*$a+1$*/;y=/*$a$*//*$\"z\"$*/!", false);
+    assertTrue(template.hasMacroses());
+    final StringBuilder buffer = new StringBuilder("garbage");
+    assertEquals("x=2;y=1z!", template.expand(context, buffer));
+    context.setGlobalVariable("a", Value.valueOf(5L));
+    assertEquals("x=6;y=5z!", template.expand(context, buffer));
+  }
+
+  @Test
+  public void testExpand_unclosedMacros() {
+    assertEquals("1 /*$a", PreprocessorUtils.processMacroses("/*$a$*/ /*$a", makeContext(false)));
+  }
+
+  @Test
+  public void testExpand_valueFormsNewMacros() {
+    final PreprocessorContext context = makeContext(false);
+    assertEquals("[1]", PreprocessorUtils.processMacroses("[/*$b$*/]", context));
+    assertEquals("1]", PreprocessorUtils.processMacroses("/*$c$*/$a$*/]", context));
+  }
+
+  @Test
+  public void testExpand_whitespaces() {
+    final PreprocessorContext context = makeContext(true);
+    assertEquals("1 2 /*$a$*/", PreprocessorUtils.processMacroses("/* $a$ */ /*$a+1$*/ /*$b$*/", context));
+  }
+}
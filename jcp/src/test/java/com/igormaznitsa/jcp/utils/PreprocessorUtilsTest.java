@@ -23,17 +23,82 @@ package com.igormaznitsa.jcp.utils;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStreamReader;
 import java.lang.reflect.Field;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class PreprocessorUtilsTest {
 
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private String[] readLines(final String text, final Charset charset,
+                             final AtomicBoolean endedByNextLine) throws Exception {
+    final File file = this.tempFolder.newFile();
+    Files.write(file.toPath(), text.getBytes(charset));
+    return PreprocessorUtils.readWholeTextFileIntoArray(file, charset, endedByNextLine);
+  }
+
+  @Test
+  public void testReadWholeTextFileIntoArray() throws Exception {
+    final AtomicBoolean endedByNextLine = new AtomicBoolean();
+    final String text = "one\r\ntwo\rthree\r\r\n\nfour\r";
+    final String[] expected = new String[] {"one", "two\rthree\r", "", "four"};
+
+    assertArrayEquals(expected, readLines(text, StandardCharsets.UTF_8, endedByNextLine));
+    assertFalse(endedByNextLine.get());
+    assertArrayEquals(expected, readLines(text, StandardCharsets.ISO_8859_1, endedByNextLine));
+    assertArrayEquals(expected, readLines(text, StandardCharsets.UTF_16, endedByNextLine));
+
+    assertArrayEquals(new String[] {"caf\u00e9", "\u4e2d"},
+        readLines("caf\u00e9\n\u4e2d\n", StandardCharsets.UTF_8, endedByNextLine));
+    assertTrue(endedByNextLine.get());
+    assertArrayEquals(new String[] {"caf\u00e9"},
+        readLines("caf\u00e9\n", StandardCharsets.ISO_8859_1, endedByNextLine));
+    assertArrayEquals(new String[0], readLines("", StandardCharsets.UTF_8, endedByNextLine));
+    assertFalse(endedByNextLine.get());
+  }
+
+  @Test
+  public void testIsFileContentEquals() throws Exception {
+    final byte[] data = new byte[200_000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i * 31);
+    }
+    final File file1 = this.tempFolder.newFile();
+    final File file2 = this.tempFolder.newFile();
+    final File missing = new File(this.tempFolder.getRoot(), "missing.bin");
+
+    Files.write(file1.toPath(), data);
+    Files.write(file2.toPath(), data);
+    assertTrue(PreprocessorUtils.isFileContentEquals(file1, file2));
+    assertTrue(PreprocessorUtils.isFileContentEquals(file1, file1));
+    assertFalse(PreprocessorUtils.isFileContentEquals(file1, missing));
+    assertFalse(PreprocessorUtils.isFileContentEquals(file1, this.tempFolder.getRoot()));
+
+    data[data.length - 1]++;
+    Files.write(file2.toPath(), data);
+    assertFalse(PreprocessorUtils.isFileContentEquals(file1, file2));
+
+    Files.write(file2.toPath(), new byte[] {1, 2, 3});
+    assertFalse(PreprocessorUtils.isFileContentEquals(file1, file2));
+    Files.write(file1.toPath(), new byte[0]);
+    Files.write(file2.toPath(), new byte[0]);
+    assertTrue(PreprocessorUtils.isFileContentEquals(file1, file2));
+  }
+
   @Test
   public void testReplaceStringPrefix() throws Exception {
     final String[] testData = new String[] {"--ae:123", "-homa-", "-hbd", "---Some", "-", "--"};
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+import org.junit.Test;
+
+public class ResettablePrinterTest {
+
+  @Test
+  public void testPrintAndGrow() {
+    final ResettablePrinter printer = new ResettablePrinter(1);
+    assertTrue(printer.isEmpty());
+    final StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      printer.print("line" + i);
+      printer.println("", "\n");
+      expected.append("line").append(i).append('\n');
+    }
+    printer.print("abcdef", 2, 4);
+    expected.append("cd");
+    assertFalse(printer.isEmpty());
+    assertEquals(expected.length(), printer.getSize());
+    assertEquals(expected.toString(), printer.getText());
+  }
+
+  @Test
+  public void testViewsAndReset() throws Exception {
+    final ResettablePrinter printer = new ResettablePrinter(16);
+    printer.println("Hello", "\r\n");
+    printer.print("\u041f\u0440\u0438\u0432\u0435\u0442");
+
+    final CharBuffer view = printer.asCharBuffer();
+    assertTrue(view.isReadOnly());
+    assertEquals(printer.getText(), view.toString());
+
+    assertEquals("prefix:" + printer.getText(),
+        printer.appendTo(new StringBuilder("prefix:")).toString());
+
+    final StringWriter writer = new StringWriter();
+    printer.writeBufferTo(writer);
+    assertEquals(printer.getText(), writer.toString());
+
+    printer.reset();
+    assertTrue(printer.isEmpty());
+    assertEquals("", printer.getText());
+    assertEquals(0, printer.asCharBuffer().length());
+  }
+}